@@ -0,0 +1,43 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)AsyncBroker.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* AsyncBroker: A Broker whose orders and cancels are handed off without
+* waiting on the broker, returning futures for the broker's responses so
+* that many orders may be in flight at once. AsyncBrokerAdapter provides
+* this for any synchronous Broker.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent submitAll() for a batch
+*******************************************************/
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncBroker
+	extends Broker
+	{
+	/**
+	* Marks the order SENT and queues it for the broker.
+	* @return a ticket whose futures complete on the broker's ack or
+	* reject, and on the fill or cancel of the order
+	*/
+	abstract public OrderTicket submit(OrderTracker aTracker);
+
+	/**
+	* Marks the orders SENT and queues them for the broker as one batch.
+	* @return a ticket for each order, in the order given
+	*/
+	abstract public List<OrderTicket> submitAll(Collection<? extends OrderTracker> aTrackers);
+
+	/**
+	* Cancels a soft order, or queues a cancel request for an order sent
+	* to the broker, even one that has not been acknowledged yet.
+	* @return a future that completes once the order is done: check its
+	* state, as a fill may have beaten the cancel
+	*/
+	abstract public CompletableFuture<OrderTracker> cancel(OrderTracker aTracker);
+	}
@@ -0,0 +1,239 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)AsyncBrokerAdapter.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* AsyncBrokerAdapter: Makes any synchronous Broker an AsyncBroker by
+* running its placeOrder() and cancelOrder() calls on an executor. By
+* default this is a single thread, which keeps the calls in the order they
+* were made. The plain placeOrder() and cancelOrder() are queued the same
+* way, so OrderTracker.send() and cancel() stop blocking the caller once a
+* Trader's broker is wrapped.
+*
+* A synchronous broker that returns from placeOrder() without reporting a
+* new state is taken to have accepted the order; one that throws has
+* rejected it.
+*
+* An order is only queued for placement if it moves to SENT, and a cancel
+* of an order whose placement is still queued drops the placement and
+* cancels the order here, so it never reaches the broker.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent batch placeOrders & cancelOrders queued as one task
+* 20261018 agent cancel() claims the state change through claimCancel()
+* 20261018 agent submitAll() returns the batch's tickets, delegates getOrderLatency()
+* 20261018 agent typed getOrderList()
+*******************************************************/
+import com.shanebow.util.SBLog;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class AsyncBrokerAdapter
+	implements AsyncBroker
+	{
+	public static final String MODULE="AsyncBroker.";
+
+	private final Broker   fBroker;
+	private final Executor fExecutor;
+
+	/** The orders whose placement is queued: guarded by this */
+	private final Set<OrderTracker> fQueued
+	             = Collections.newSetFromMap(new IdentityHashMap<OrderTracker,Boolean>());
+
+	public AsyncBrokerAdapter(Broker aBroker)
+		{
+		this(aBroker, Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+			@Override public Thread newThread(Runnable r)
+				{
+				Thread t = new Thread(r, MODULE + "sender");
+				t.setDaemon(true);
+				return t;
+				}
+			}));
+		}
+
+	public AsyncBrokerAdapter(Broker aBroker, Executor aExecutor)
+		{
+		fBroker = aBroker;
+		fExecutor = aExecutor;
+		}
+
+	public final Broker getBroker() { return fBroker; }
+
+	@Override public void setTime(long aTime) { fBroker.setTime(aTime); }
+	@Override public long time() { return fBroker.time(); }
+	@Override public boolean getLogOrders() { return fBroker.getLogOrders(); }
+	@Override public void setLogOrders(boolean on) { fBroker.setLogOrders(on); }
+	@Override public OrderList<? extends OrderTracker> getOrderList() { return fBroker.getOrderList(); }
+	@Override public OrderLatency getOrderLatency() { return fBroker.getOrderLatency(); }
+
+	@Override public void placeOrder(OrderTracker aTracker) { submit(aTracker); }
+	@Override public void cancelOrder(final OrderTracker aTracker)
+		{
+		if (dropQueued(aTracker))
+			return;
+		fExecutor.execute(new Runnable()
+			{
+			@Override public void run() { fBroker.cancelOrder(aTracker); }
+			});
+		}
+
+	/**
+	* Moves the order to SENT, unless already sent, and queues it
+	* @return false if it is not SENT, so must not be placed: an order
+	* whose cancel was requested on the way is cancelled here
+	*/
+	private boolean queue(OrderTracker aTracker)
+		{
+		aTracker.transition(OrderTracker.SENT); // unless already sent
+		byte state = aTracker.getState();
+		if (state == OrderTracker.CAN_REQ)
+			aTracker.transition(OrderTracker.CANCELED); // never reached the broker
+		if (state != OrderTracker.SENT)
+			return false;
+		synchronized (this) { fQueued.add(aTracker); }
+		return true;
+		}
+
+	/** @return true if the order's placement was still queued: it is dequeued */
+	private synchronized boolean dequeue(OrderTracker aTracker)
+		{
+		return fQueued.remove(aTracker);
+		}
+
+	/**
+	* Drops the queued placement of an order being cancelled
+	* @return true if it was queued, and the order is now cancelled
+	*/
+	private boolean dropQueued(OrderTracker aTracker)
+		{
+		if (!dequeue(aTracker))
+			return false;
+		aTracker.transition(OrderTracker.CANCELED);
+		return true;
+		}
+
+	/** Sends the orders to the wrapped broker as one batch */
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		submitAll(aTrackers);
+		}
+
+	@Override public List<OrderTicket> submitAll(Collection<? extends OrderTracker> aTrackers)
+		{
+		List<OrderTicket> all = new ArrayList<OrderTicket>(aTrackers.size());
+		final List<OrderTracker> queued = new ArrayList<OrderTracker>(aTrackers.size());
+		final List<OrderTicket> tickets = new ArrayList<OrderTicket>(aTrackers.size());
+		for (OrderTracker ot : aTrackers)
+			{
+			OrderTicket ticket = new OrderTicket(ot);
+			all.add(ticket);
+			if (queue(ot))
+				{
+				queued.add(ot);
+				tickets.add(ticket);
+				}
+			}
+		if (queued.isEmpty())
+			return all;
+		fExecutor.execute(new Runnable()
+			{
+			@Override public void run()
+				{
+				List<OrderTracker> batch = new ArrayList<OrderTracker>(queued.size());
+				for (OrderTracker ot : queued)
+					if (dequeue(ot)) // not dropped by a cancel
+						batch.add(ot);
+				if (batch.isEmpty())
+					return;
+				try
+					{
+					fBroker.placeOrders(batch);
+					for (OrderTicket ticket : tickets)
+						if (ticket.order().getState() == OrderTracker.SENT)
+							ticket.acknowledged();
+					}
+				catch (RuntimeException e)
+					{
+					SBLog.format(MODULE + "placeOrders failed: %s", e);
+					for (OrderTicket ticket : tickets)
+						if (ticket.order().getState() == OrderTracker.SENT)
+							{
+							ticket.order().setStatus("Error", e.toString());
+							ticket.rejected(e);
+							ticket.order().setState(OrderTracker.ERROR);
+							}
+					}
+				}
+			});
+		return all;
+		}
+
+	/** Sends the cancel requests to the wrapped broker as one batch */
+	@Override public void cancelOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		final List<OrderTracker> batch = new ArrayList<OrderTracker>(aTrackers.size());
+		for (OrderTracker ot : aTrackers)
+			if (!dropQueued(ot))
+				batch.add(ot);
+		if (batch.isEmpty())
+			return;
+		fExecutor.execute(new Runnable()
+			{
+			@Override public void run() { fBroker.cancelOrders(batch); }
+			});
+		}
+
+	@Override public OrderTicket submit(final OrderTracker aTracker)
+		{
+		final OrderTicket ticket = new OrderTicket(aTracker);
+		if (!queue(aTracker))
+			return ticket;
+		fExecutor.execute(new Runnable()
+			{
+			@Override public void run()
+				{
+				if (!dequeue(aTracker)) // dropped by a cancel
+					return;
+				try
+					{
+					fBroker.placeOrder(aTracker);
+					if (aTracker.getState() == OrderTracker.SENT)
+						ticket.acknowledged();
+					}
+				catch (RuntimeException e)
+					{
+					SBLog.format(MODULE + "placeOrder %s failed: %s", aTracker, e);
+					aTracker.setStatus("Error", e.toString());
+					ticket.rejected(e);
+					aTracker.setState(OrderTracker.ERROR);
+					}
+				}
+			});
+		return ticket;
+		}
+
+	@Override public CompletableFuture<OrderTracker> cancel(final OrderTracker aTracker)
+		{
+		OrderTicket ticket = new OrderTicket(aTracker);
+		switch (aTracker.claimCancel())
+			{
+			case OrderTracker.CANCELED: aTracker.leg().remove(aTracker); // was soft
+			                            break;
+			case OrderTracker.CAN_REQ:  cancelOrder(aTracker);
+			                            break;
+			}                           // else done, or cancel already requested
+		return ticket.done();
+		}
+	}
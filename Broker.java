@@ -14,8 +14,16 @@ package com.wormtrader.broker;
 * 20120510 rts added getOrderList: AT/CT can see/cancel orders
 * 20121002 rts cancelOrder takes OrderTracker rather than order id
 * 20121017 rts eliminated placeMktOrder
+* 20261018 agent added TYPE_xxx codes for the order types
+* 20261018 agent added TYPE_OTHER for the types brokers supply
+* 20261018 agent added batch placeOrders, cancelOrders & cancelAll
+* 20261018 agent added getOrderLatency
+* 20261018 agent added placeGroup for OCO & bracket OrderGroups
+* 20261018 agent getOrderList() is typed: a list of OrderTrackers
 *******************************************************/
 import com.wormtrader.positions.PositionLeg;
+import java.util.Collection;
+import java.util.function.Predicate;
 
 public interface Broker
 	{
@@ -25,6 +33,16 @@ public interface Broker
 	public static final String STP_ORDER="STP";
 	public static final String[] ORDER_TYPES = {MKT_ORDER, LMT_ORDER, STP_ORDER};
 
+	/** Order type codes used by OrderTracker: index into ORDER_TYPES */
+	public static final byte TYPE_MKT=(byte)0;
+	public static final byte TYPE_LMT=(byte)1;
+	public static final byte TYPE_STP=(byte)2;
+	/**
+	* Any other type a broker supplies, such as TRAIL or STP LMT: the order
+	* keeps the type's name, and the broker works it
+	*/
+	public static final byte TYPE_OTHER=(byte)3;
+
 	abstract public void setTime(long aTime);
 	abstract long time();
 
@@ -32,5 +50,53 @@ public interface Broker
 	abstract public boolean getLogOrders();
 	abstract public void setLogOrders(boolean on);
 	abstract public void cancelOrder(OrderTracker aTracker);
-	abstract public OrderList getOrderList();
+	abstract public OrderList<? extends OrderTracker> getOrderList();
+
+	/**
+	* Places several orders at once: brokers that can should send them as a
+	* single batch and update the order list once
+	*/
+	default public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		for (OrderTracker ot : aTrackers)
+			placeOrder(ot);
+		}
+
+	/**
+	* Asks the broker to cancel several orders that are already in the
+	* CAN_REQ state, as cancelOrder() does for one
+	*/
+	default public void cancelOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		for (OrderTracker ot : aTrackers)
+			cancelOrder(ot);
+		}
+
+	/**
+	* Cancels every order in the order list accepted by the filter in one
+	* pass, for instance to flatten a leg or a strategy: see OrderFilters
+	* @return the number of orders cancelled or with a cancel requested
+	*/
+	default public int cancelAll(Predicate<? super OrderTracker> aFilter)
+		{
+		return getOrderList().cancelAll(aFilter, this);
+		}
+	
+	/**
+	* @return the time orders spend in each state: by default the
+	* transitions of every order in this JVM
+	*/
+	default public OrderLatency getOrderLatency()
+		{
+		return OrderLatency.ALL_ORDERS;
+		}
+
+	/**
+	* Places an OCO or bracket OrderGroup: by default the group manages its
+	* members' fills itself. Brokers with native groups may send it as one.
+	*/
+	default public void placeGroup(OrderGroup aGroup)
+		{
+		aGroup.place(this);
+		}
 	}
@@ -0,0 +1,50 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)BrokerFilter.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* BrokerFilter: A Broker that passes every call on to another broker, as
+* FilterInputStream does for streams. Subclasses override the calls they
+* need to pace, check or otherwise intercept, and filters may be stacked
+* in front of any Broker implementation.
+*
+* cancelAll() is not passed on: the default implementation calls this
+* filter's cancelOrders(), so that batch cancels go through the filter.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent typed getOrderList()
+*******************************************************/
+import java.util.Collection;
+
+public class BrokerFilter
+	implements Broker
+	{
+	protected final Broker fBroker;
+
+	public BrokerFilter(Broker aBroker) { fBroker = aBroker; }
+
+	/** @return the broker that this filter passes calls on to */
+	public final Broker getBroker() { return fBroker; }
+
+	@Override public void setTime(long aTime) { fBroker.setTime(aTime); }
+	@Override public long time() { return fBroker.time(); }
+	@Override public boolean getLogOrders() { return fBroker.getLogOrders(); }
+	@Override public void setLogOrders(boolean on) { fBroker.setLogOrders(on); }
+	@Override public OrderList<? extends OrderTracker> getOrderList() { return fBroker.getOrderList(); }
+	@Override public OrderLatency getOrderLatency() { return fBroker.getOrderLatency(); }
+
+	@Override public void placeOrder(OrderTracker aTracker) { fBroker.placeOrder(aTracker); }
+	@Override public void cancelOrder(OrderTracker aTracker) { fBroker.cancelOrder(aTracker); }
+
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		fBroker.placeOrders(aTrackers);
+		}
+
+	@Override public void cancelOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		fBroker.cancelOrders(aTrackers);
+		}
+	}
@@ -0,0 +1,160 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)BrokerSession.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* BrokerSession: The context that an order lives in: its clock, the broker
+* it is sent to, its log and latency statistics. An OrderTracker captures
+* the session that is current on the creating thread, and uses it from
+* then on, so that orders never reach for process wide state.
+*
+* The GLOBAL session is current on any thread that has not bound another:
+* it keeps the original behaviour of taking the time from Trader.time()
+* and the broker from the leg's trader. A backtest instead creates a
+* session for its own SimBroker and runs inside it with call() or run(),
+* and any number of backtests can then run side by side, for instance on
+* a fork join pool with runAll().
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent typed getOrderList()
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import com.wormtrader.positions.Trader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+public class BrokerSession
+	{
+	/** The session of orders created outside of any other */
+	public static final BrokerSession GLOBAL
+		= new BrokerSession(null, OrderLog.DEFAULT, OrderLatency.ALL_ORDERS);
+
+	private static final ThreadLocal<BrokerSession> CURRENT
+		= new ThreadLocal<BrokerSession>();
+
+	/** @return the session bound to this thread, or GLOBAL if none */
+	public static BrokerSession current()
+		{
+		BrokerSession session = CURRENT.get();
+		return (session == null)? GLOBAL : session;
+		}
+
+	private final Broker       fBroker; // null for the GLOBAL session
+	private final OrderLog     fLog;
+	private final OrderLatency fLatency;
+
+	/**
+	* A session for orders sent to aBroker, timed by aBroker's clock, that
+	* logs to the default OrderLog and records its latency in the broker's
+	* own OrderLatency, or in statistics of its own if the broker keeps none
+	*/
+	public BrokerSession(Broker aBroker)
+		{
+		this(aBroker, OrderLog.DEFAULT, latencyOf(aBroker));
+		}
+
+	private static OrderLatency latencyOf(Broker aBroker)
+		{
+		OrderLatency latency = aBroker.getOrderLatency();
+		return (latency == OrderLatency.ALL_ORDERS)? new OrderLatency() : latency;
+		}
+
+	public BrokerSession(Broker aBroker, OrderLog aLog, OrderLatency aLatency)
+		{
+		fBroker = aBroker;
+		fLog = aLog;
+		fLatency = aLatency;
+		}
+
+	public final boolean isGlobal() { return fBroker == null; }
+
+	/** @return the current time on this session's clock */
+	public long time()
+		{
+		return (fBroker == null)? Trader.time() : fBroker.time();
+		}
+
+	/** @return the broker to which orders on aLeg are sent */
+	public Broker brokerFor(PositionLeg aLeg)
+		{
+		return (fBroker == null)? aLeg.getTrader().getBroker() : fBroker;
+		}
+
+	/** @return the session's broker, or null for the GLOBAL session */
+	public final Broker getBroker() { return fBroker; }
+
+	/** @return the broker's order list, or null for the GLOBAL session */
+	public final OrderList<? extends OrderTracker> getOrderList()
+		{
+		return (fBroker == null)? null : fBroker.getOrderList();
+		}
+
+	public final OrderLog getLog() { return fLog; }
+
+	/**
+	* @return the latency of the transitions of this session's orders: for
+	* the GLOBAL session, this is OrderLatency.ALL_ORDERS
+	*/
+	public final OrderLatency getLatency() { return fLatency; }
+
+	/**
+	* Runs aJob with this session current on the calling thread, then
+	* restores whichever session was current before.
+	*/
+	public final <V> V call(Callable<V> aJob)
+		throws Exception
+		{
+		BrokerSession previous = CURRENT.get();
+		CURRENT.set(this);
+		try { return aJob.call(); }
+		finally { restore(previous); }
+		}
+
+	public final void run(Runnable aJob)
+		{
+		BrokerSession previous = CURRENT.get();
+		CURRENT.set(this);
+		try { aJob.run(); }
+		finally { restore(previous); }
+		}
+
+	private static void restore(BrokerSession aPrevious)
+		{
+		if (aPrevious == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(aPrevious);
+		}
+
+	/**
+	* Runs aJob once for each session, each inside its own session, in
+	* parallel on the pool: for instance one backtest per set of parameters.
+	* @return the results in the order of the sessions
+	*/
+	public static <S extends BrokerSession, V> List<V> runAll(ForkJoinPool aPool,
+		List<S> aSessions, final Function<? super S, V> aJob)
+		{
+		List<ForkJoinTask<V>> tasks = new ArrayList<ForkJoinTask<V>>(aSessions.size());
+		for (final S session : aSessions)
+			tasks.add(aPool.submit(new Callable<V>()
+				{
+				@Override public V call() throws Exception
+					{
+					return session.call(new Callable<V>()
+						{
+						@Override public V call() { return aJob.apply(session); }
+						});
+					}
+				}));
+		List<V> results = new ArrayList<V>(tasks.size());
+		for (ForkJoinTask<V> task : tasks)
+			results.add(task.join());
+		return results;
+		}
+	}
@@ -0,0 +1,447 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)CoalescingTableModel.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* CoalescingTableModel: A table model that can be changed from any thread
+* (typically the broker's callbacks) without flooding the EDT. When a
+* publish rate is set, the events fired by the subclass are collected
+* rather than sent, and a swing timer publishes them on the EDT at most
+* once per frame. The table then sees the rows through a view kept by
+* this class, which only changes on the EDT:
+*  - rows inserted or deleted are kept as a list of steps, adjacent ones
+*    merged, and each insert keeps the rows it inserted. Publishing
+*    replays the steps onto the view, firing a row insert or delete event
+*    for each, so the table keeps its selection and a row sorter sees a
+*    row count that matches every event.
+*  - updated rows are tracked in a bit set, moved along by the inserts
+*    and deletes, and sent as one update event per run of rows, runs
+*    close to each other sharing an event.
+* Once the steps are replayed, the view is checked against the subclass's
+* rows; should they differ, or should a frame bring too many steps, the
+* view is reloaded and the table told that all of its data changed.
+*
+* With a rate of zero (the default) events are fired right away on the
+* calling thread as usual, and not even created while nobody is listening,
+* as is the case for a broker's order list in a headless backtest.
+*
+* The changes are guarded by the model's own lock, so a subclass that
+* synchronizes its changes on itself is never seen half way through one.
+*
+* Changes made between beginBatch() and endBatch() are also collected,
+* and at a rate of zero are sent when the batch ends: the updated rows
+* one event per run, any insert or delete as a data changed event.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent added beginBatch/endBatch
+* 20261018 agent no event is created for a model with no listeners
+*******************************************************/
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+
+public abstract class CoalescingTableModel
+	extends AbstractTableModel
+	{
+	public static final int DEFAULT_FPS = 30;
+	private static final int MAX_STEPS = 64;  // inserts & deletes a frame, or reload
+	private static final int MAX_RUNS = 32;   // update events a frame
+	private static final int NEAR = 8;        // updated rows this close share an event
+
+	/** The changes collected between two publishes */
+	private static final class Changes
+		{
+		final BitSet fDirty = new BitSet(); // rows updated, in current row numbers
+		boolean   fReset;                   // all the data changed
+		int       fSteps;                   // inserts and deletes, in order
+		boolean[] fInsert = new boolean[MAX_STEPS];
+		int[]     fFirst = new int[MAX_STEPS];
+		int[]     fLast = new int[MAX_STEPS];
+		Object[]  fRows = new Object[16];   // rows inserted by each insert step, in order
+		int       fNumRows;
+
+		boolean isEmpty() { return !fReset && fSteps == 0 && fDirty.isEmpty(); }
+
+		void reset()
+			{
+			clear();
+			fReset = true;
+			}
+
+		void clear()
+			{
+			fDirty.clear();
+			fReset = false;
+			fSteps = 0;
+			Arrays.fill(fRows, 0, fNumRows, null);
+			fNumRows = 0;
+			}
+		}
+
+	private Changes      fPending = new Changes();
+	private Changes      fPublishing = new Changes(); // only touched on the EDT
+	private int          fBatchDepth;          // nesting of beginBatch()
+	private volatile int fHz;
+	private Timer        fTimer;
+
+	/** The rows seen by the table when coalescing: only touched on the EDT */
+	private Object[]     fView = new Object[16];
+	private int          fViewSize;
+	private Object[]     fSnapshot = new Object[16];
+	private int          fSnapshotSize;
+
+	/**
+	* Sets the maximum number of change sets per second sent to the table's
+	* listeners, or zero to send every event as soon as it is fired
+	*/
+	public final void setPublishRate(int aHz)
+		{
+		synchronized (this)
+			{
+			if (fTimer != null)
+				fTimer.stop();
+			fTimer = null;
+			fHz = Math.max(0, aHz);
+			if (fHz > 0)
+				{
+				fTimer = new Timer(1000 / fHz, new ActionListener()
+					{
+					@Override public void actionPerformed(ActionEvent e) { publish(); }
+					});
+				fTimer.setCoalesce(true);
+				fPending.reset(); // the table needs a first view
+				fTimer.start();
+				}
+			}
+		if (aHz <= 0) // publish anything collected at the old rate
+			javax.swing.SwingUtilities.invokeLater(new Runnable()
+				{
+				@Override public void run() { publish(); }
+				});
+		}
+
+	public final int getPublishRate() { return fHz; }
+
+	/** @return true if the table sees the rows through the view */
+	protected final boolean isCoalescing() { return fHz > 0; }
+
+	/** @return the number of rows now: called holding this model's lock */
+	protected abstract int currentRowCount();
+
+	/** @return the row now at r: called holding this model's lock */
+	protected abstract Object currentRow(int r);
+
+	/**
+	* Copies the first aCount rows now into aRows: called holding this
+	* model's lock, once per frame when coalescing. Override if the rows
+	* can be copied faster than one currentRow() at a time.
+	*/
+	protected void copyRows(Object[] aRows, int aCount)
+		{
+		for (int r = 0; r < aCount; r++)
+			aRows[r] = currentRow(r);
+		}
+
+	/** @return the number of rows the table sees when coalescing: on the EDT */
+	protected final int viewSize() { return fViewSize; }
+
+	/** @return the row the table sees at r when coalescing, or null: on the EDT */
+	protected final Object viewRow(int r) { return (r < fViewSize)? fView[r] : null; }
+
+	/** @return true if an event would reach nobody, so need not be made */
+	private boolean unheard()
+		{
+		return fHz == 0 && listenerList.getListenerCount() == 0;
+		}
+
+	@Override public void fireTableDataChanged()
+		{ if (!unheard()) super.fireTableDataChanged(); }
+	@Override public void fireTableRowsInserted(int firstRow, int lastRow)
+		{ if (!unheard()) super.fireTableRowsInserted(firstRow, lastRow); }
+	@Override public void fireTableRowsUpdated(int firstRow, int lastRow)
+		{ if (!unheard()) super.fireTableRowsUpdated(firstRow, lastRow); }
+	@Override public void fireTableRowsDeleted(int firstRow, int lastRow)
+		{ if (!unheard()) super.fireTableRowsDeleted(firstRow, lastRow); }
+
+	@Override public void fireTableChanged(TableModelEvent e)
+		{
+		synchronized (this)
+			{
+			if (fTimer != null)
+				{
+				collect(e);
+				if (!fTimer.isRunning())
+					fTimer.start();
+				return;
+				}
+			if (fBatchDepth > 0
+			||  !fPending.isEmpty()) // waiting on a publish
+				{
+				collect(e);
+				return;
+				}
+			}
+		super.fireTableChanged(e);
+		}
+
+	/**
+	* Collects the events fired until the matching endBatch(), so that a
+	* bulk operation reaches the table as a single change.
+	*/
+	public final synchronized void beginBatch() { ++fBatchDepth; }
+
+	/**
+	* Ends a batch: unless coalescing, where the changes wait for the next
+	* frame, the outermost endBatch() fires them.
+	*/
+	public final void endBatch()
+		{
+		List<TableModelEvent> events;
+		synchronized (this)
+			{
+			if (--fBatchDepth > 0 || fTimer != null)
+				return;
+			events = takeEvents();
+			}
+		for (TableModelEvent event : events)
+			super.fireTableChanged(event);
+		}
+
+	/**
+	* @return the events for the collected changes, for a table that sees
+	* the rows themselves: called holding the lock
+	*/
+	private List<TableModelEvent> takeEvents()
+		{
+		List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+		Changes changes = fPending;
+		if (changes.fReset || changes.fSteps > 0)
+			events.add(new TableModelEvent(this));
+		else
+			for (int r = changes.fDirty.nextSetBit(0); r >= 0; )
+				{
+				int end = runEnd(changes.fDirty, r, events.size());
+				events.add(new TableModelEvent(this, r, end - 1));
+				r = changes.fDirty.nextSetBit(end);
+				}
+		changes.clear();
+		return events;
+		}
+
+	/**
+	* @return the end (exclusive) of the update event starting at row r:
+	* takes in the runs within NEAR rows, or every run left once aEvents
+	* events are MAX_RUNS - 1
+	*/
+	private static int runEnd(BitSet aDirty, int r, int aEvents)
+		{
+		if (aEvents >= MAX_RUNS - 1)
+			return aDirty.length();
+		int end = aDirty.nextClearBit(r);
+		for (int next; (next = aDirty.nextSetBit(end)) >= 0 && next - end < NEAR; )
+			end = aDirty.nextClearBit(next);
+		return end;
+		}
+
+	/** Adds an event to the pending changes: called holding the lock */
+	private void collect(TableModelEvent e)
+		{
+		Changes changes = fPending;
+		if (changes.fReset)
+			return;
+		int first = e.getFirstRow();
+		int last = e.getLastRow();
+		if (first < 0 || last == Integer.MAX_VALUE || last < first)
+			changes.reset(); // header or all rows changed
+		else if (e.getType() == TableModelEvent.UPDATE)
+			changes.fDirty.set(first, last + 1);
+		else if (fTimer == null) // the table reads the rows: no view to keep
+			changes.reset();
+		else if (e.getType() == TableModelEvent.INSERT)
+			inserted(changes, first, last);
+		else
+			deleted(changes, first, last);
+		}
+
+	private void inserted(Changes c, int aFirst, int aLast)
+		{
+		int n = aLast - aFirst + 1;
+		BitSet dirty = c.fDirty;
+		for (int r = dirty.previousSetBit(dirty.length() - 1); r >= aFirst;
+		         r = dirty.previousSetBit(r - 1))
+			{
+			dirty.clear(r);
+			dirty.set(r + n);
+			}
+		if (c.fNumRows + n > c.fRows.length)
+			c.fRows = Arrays.copyOf(c.fRows, Math.max(2 * c.fRows.length, c.fNumRows + n));
+		int s = c.fSteps - 1;
+		if (s >= 0 && c.fInsert[s]
+		&&  aFirst >= c.fFirst[s] && aFirst <= c.fLast[s] + 1) // into the last insert
+			{
+			int at = c.fNumRows - (c.fLast[s] - c.fFirst[s] + 1) + (aFirst - c.fFirst[s]);
+			System.arraycopy(c.fRows, at, c.fRows, at + n, c.fNumRows - at);
+			for (int i = 0; i < n; i++)
+				c.fRows[at + i] = currentRow(aFirst + i);
+			c.fNumRows += n;
+			c.fLast[s] += n;
+			return;
+			}
+		if (!step(c, true, aFirst, aLast))
+			return;
+		for (int i = 0; i < n; i++)
+			c.fRows[c.fNumRows++] = currentRow(aFirst + i);
+		}
+
+	private void deleted(Changes c, int aFirst, int aLast)
+		{
+		int n = aLast - aFirst + 1;
+		BitSet dirty = c.fDirty;
+		dirty.clear(aFirst, aLast + 1);
+		for (int r = dirty.nextSetBit(aLast + 1); r >= 0; r = dirty.nextSetBit(r + 1))
+			{
+			dirty.clear(r);
+			dirty.set(r - n);
+			}
+		int s = c.fSteps - 1;
+		if (s >= 0 && !c.fInsert[s]
+		&&  aFirst <= c.fFirst[s] && c.fFirst[s] <= aLast + 1) // around the last delete
+			{
+			c.fLast[s] = aLast + (c.fLast[s] - c.fFirst[s] + 1);
+			c.fFirst[s] = aFirst;
+			return;
+			}
+		step(c, false, aFirst, aLast);
+		}
+
+	/** @return false if there were too many steps, so the view is to be reloaded */
+	private static boolean step(Changes c, boolean aInsert, int aFirst, int aLast)
+		{
+		if (c.fSteps == MAX_STEPS)
+			{
+			c.reset();
+			return false;
+			}
+		c.fInsert[c.fSteps] = aInsert;
+		c.fFirst[c.fSteps] = aFirst;
+		c.fLast[c.fSteps++] = aLast;
+		return true;
+		}
+
+	/** Sends the collected changes to the table: runs on the EDT */
+	private void publish()
+		{
+		Changes changes;
+		List<TableModelEvent> events = null;
+		synchronized (this)
+			{
+			if (fBatchDepth > 0 && fTimer == null)
+				return; // endBatch() will send them
+			if (fPending.isEmpty())
+				{
+				if (fTimer != null)
+					fTimer.stop();
+				return;
+				}
+			if (fTimer == null) // no longer coalescing
+				events = takeEvents();
+			else
+				{
+				changes = fPending;
+				fPending = fPublishing;
+				fPublishing = changes;
+				fSnapshotSize = currentRowCount();
+				if (fSnapshotSize > fSnapshot.length)
+					fSnapshot = new Object[Math.max(fSnapshotSize, 2 * fSnapshot.length)];
+				copyRows(fSnapshot, fSnapshotSize);
+				}
+			}
+		if (events != null)
+			for (TableModelEvent event : events)
+				super.fireTableChanged(event);
+		else
+			replay(fPublishing);
+		}
+
+	/** Brings the view up to the snapshot, one step at a time: on the EDT */
+	private void replay(Changes c)
+		{
+		try
+			{
+			if (!c.fReset)
+				{
+				int rows = 0;
+				for (int s = 0; s < c.fSteps; s++)
+					{
+					int first = c.fFirst[s];
+					int n = c.fLast[s] - first + 1;
+					if (first > fViewSize || (!c.fInsert[s] && first + n > fViewSize))
+						{
+						c.fReset = true; // inconsistent events: reload
+						break;
+						}
+					if (c.fInsert[s])
+						{
+						if (fViewSize + n > fView.length)
+							fView = Arrays.copyOf(fView, Math.max(2 * fView.length, fViewSize + n));
+						System.arraycopy(fView, first, fView, first + n, fViewSize - first);
+						System.arraycopy(c.fRows, rows, fView, first, n);
+						rows += n;
+						fViewSize += n;
+						}
+					else
+						{
+						System.arraycopy(fView, first + n, fView, first, fViewSize - first - n);
+						Arrays.fill(fView, fViewSize - n, fViewSize, null);
+						fViewSize -= n;
+						}
+					super.fireTableChanged(new TableModelEvent(this, first, first + n - 1,
+					         TableModelEvent.ALL_COLUMNS,
+					         c.fInsert[s]? TableModelEvent.INSERT : TableModelEvent.DELETE));
+					}
+				}
+			if (c.fReset || !viewMatchesSnapshot())
+				{
+				if (fSnapshotSize > fView.length)
+					fView = new Object[fSnapshot.length];
+				System.arraycopy(fSnapshot, 0, fView, 0, fSnapshotSize);
+				if (fSnapshotSize < fViewSize)
+					Arrays.fill(fView, fSnapshotSize, fViewSize, null);
+				fViewSize = fSnapshotSize;
+				super.fireTableChanged(new TableModelEvent(this));
+				return;
+				}
+			BitSet dirty = c.fDirty;
+			int events = 0;
+			for (int r = dirty.nextSetBit(0); r >= 0 && r < fViewSize; )
+				{
+				int end = Math.min(runEnd(dirty, r, events++), fViewSize);
+				super.fireTableChanged(new TableModelEvent(this, r, end - 1));
+				r = dirty.nextSetBit(end);
+				}
+			}
+		finally
+			{
+			c.clear();
+			Arrays.fill(fSnapshot, 0, fSnapshotSize, null);
+			}
+		}
+
+	private boolean viewMatchesSnapshot()
+		{
+		if (fViewSize != fSnapshotSize)
+			return false;
+		for (int r = 0; r < fViewSize; r++)
+			if (fView[r] != fSnapshot[r])
+				return false;
+		return true;
+		}
+	}
@@ -14,6 +14,7 @@ package com.wormtrader.broker;
 * 20120808 rts save/restore bounds
 * 20120809 rts uses spinner for price
 * 20121017 rts showIt takes a reason, and fixed bug in sending reason
+* 20261018 agent hard orders go to the broker of the current BrokerSession
 *******************************************************/
 import com.wormtrader.broker.Broker;
 import com.wormtrader.dao.USDSpinner;
@@ -226,7 +227,7 @@ public final class DlgOrder
 			if (reason.isEmpty()) reason = null;
 			OrderTracker ot = new OrderTracker(leg, type, qty, lmt, aux, stop, reason);
 			if (dest.equals(HARD))
-				leg.getTrader().getBroker().placeOrder(ot);
+				ot.getSession().brokerFor(leg).placeOrder(ot);
 			else
 				leg.add(ot);
 			}
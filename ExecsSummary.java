@@ -8,6 +8,8 @@ package com.wormtrader.broker;
 * @author Rick Salamone
 * @version 1.00
 * 20130224 rts created
+* 20261018 agent cents are long: an int overflows at $21M
+* 20261018 agent dropped the unused adds: ExecsTally's stripes do the tallying
 *******************************************************/
 
 public final class ExecsSummary
@@ -15,14 +17,15 @@ public final class ExecsSummary
 	// Summary Data Fields
 	public int m_sldTrades = 0;
 	public int	m_sldQty = 0;
-	public int m_sldCents = 0;
+	public long m_sldCents = 0;
 	public int m_botTrades = 0;
 	public int	m_botQty = 0;
-	public int m_botCents = 0;
+	public long m_botCents = 0;
 
 	public int totalNumTrades() { return m_botTrades + m_sldTrades; }
 	public int totalQty() { return m_sldQty + m_botQty; }
-	public int netCents() { return m_sldCents - m_botCents; }
+	public long netCents() { return m_sldCents - m_botCents; }
+
 	public void reset()
 		{
 		m_sldTrades = 0;
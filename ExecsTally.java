@@ -0,0 +1,211 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)ExecsTally.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* ExecsTally: Thread safe tally of the day's executions, in total and
+* broken down by symbol and by strategy, that many fill threads can update
+* while the UI reads it.
+*
+* Each tally is striped: a fill updates the stripe picked by its thread,
+* so fills on different threads rarely contend, and a snapshot locks every
+* stripe before summing them so that it never sees half an execution. The
+* snapshots are ExecsSummary objects, whose cents are longs.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ExecsTally
+	{
+	private static final int STRIPES
+		= Integer.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1) * 2;
+
+	private final Tally fTotal = new Tally();
+	private final ConcurrentHashMap<String, Tally> fBySymbol
+	                                       = new ConcurrentHashMap<String, Tally>();
+	private final ConcurrentHashMap<Object, Tally> fByStrategy
+	                                       = new ConcurrentHashMap<Object, Tally>();
+
+	/**
+	* Tallies an execution of part or all of an order, under the symbol and
+	* strategy of its leg
+	* @param aQty signed quantity: positive for a buy
+	* @param aPrice execution price in cents
+	*/
+	public void record(OrderTracker aOrder, int aQty, int aPrice)
+		{
+		PositionLeg leg = aOrder.leg();
+		record(leg.getUnderlying(), leg.getStrategy(), aQty, aPrice);
+		}
+
+	/**
+	* Tallies an execution
+	* @param aSymbol the symbol or null if unknown
+	* @param aStrategy the strategy or null if unknown
+	* @param aQty signed quantity: positive for a buy
+	* @param aPrice execution price in cents
+	*/
+	public void record(String aSymbol, Object aStrategy, int aQty, int aPrice)
+		{
+		fTotal.add(aQty, aPrice);
+		if (aSymbol != null)
+			tally(fBySymbol, aSymbol).add(aQty, aPrice);
+		if (aStrategy != null)
+			tally(fByStrategy, aStrategy).add(aQty, aPrice);
+		}
+
+	private static <K> Tally tally(ConcurrentHashMap<K, Tally> aMap, K aKey)
+		{
+		Tally tally = aMap.get(aKey);
+		if (tally == null)
+			{
+			Tally created = new Tally();
+			tally = aMap.putIfAbsent(aKey, created);
+			if (tally == null)
+				tally = created;
+			}
+		return tally;
+		}
+
+	/** @return a consistent copy of the totals */
+	public ExecsSummary snapshot() { return fTotal.snapshot(); }
+
+	/** @return a consistent copy of the symbol's totals */
+	public ExecsSummary snapshot(String aSymbol)
+		{
+		Tally tally = fBySymbol.get(aSymbol);
+		return (tally == null)? new ExecsSummary() : tally.snapshot();
+		}
+
+	/** @return a consistent copy of the strategy's totals */
+	public ExecsSummary snapshotStrategy(Object aStrategy)
+		{
+		Tally tally = fByStrategy.get(aStrategy);
+		return (tally == null)? new ExecsSummary() : tally.snapshot();
+		}
+
+	/** @return a snapshot of each symbol's totals */
+	public Map<String, ExecsSummary> bySymbol() { return snapshots(fBySymbol); }
+
+	/** @return a snapshot of each strategy's totals */
+	public Map<Object, ExecsSummary> byStrategy() { return snapshots(fByStrategy); }
+
+	private static <K> Map<K, ExecsSummary> snapshots(Map<K, Tally> aMap)
+		{
+		Map<K, ExecsSummary> it = new HashMap<K, ExecsSummary>();
+		for (Map.Entry<K, Tally> e : aMap.entrySet())
+			it.put(e.getKey(), e.getValue().snapshot());
+		return it;
+		}
+
+	public void reset()
+		{
+		fTotal.reset();
+		fBySymbol.clear();
+		fByStrategy.clear();
+		}
+
+	/**
+	* A striped tally: each stripe is guarded by its own lock
+	*/
+	private static final class Tally
+		{
+		private final Stripe[] fStripes = new Stripe[STRIPES];
+
+		Tally()
+			{
+			for (int i = 0; i < STRIPES; i++)
+				fStripes[i] = new Stripe();
+			}
+
+		void add(int aQty, int aPrice)
+			{
+			Stripe stripe = fStripes[(int)Thread.currentThread().getId() & (STRIPES - 1)];
+			synchronized (stripe)
+				{
+				stripe.add(aQty, aPrice);
+				}
+			}
+
+		ExecsSummary snapshot()
+			{
+			ExecsSummary it = new ExecsSummary();
+			sum(0, it);
+			return it;
+			}
+
+		/** Locks stripes i and up, then sums them all */
+		private void sum(int i, ExecsSummary aSum)
+			{
+			if (i == STRIPES)
+				{
+				for (Stripe stripe : fStripes)
+					stripe.addTo(aSum);
+				return;
+				}
+			synchronized (fStripes[i])
+				{
+				sum(i + 1, aSum);
+				}
+			}
+
+		void reset()
+			{
+			for (Stripe stripe : fStripes)
+				synchronized (stripe)
+					{
+					stripe.reset();
+					}
+			}
+		}
+
+	/**
+	* One stripe of a tally, padded to keep stripes off each other's cache
+	* lines
+	*/
+	private static final class Stripe
+		{
+		private long sldTrades, sldQty, sldCents;
+		private long botTrades, botQty, botCents;
+		@SuppressWarnings("unused")
+		private long p1, p2, p3, p4, p5, p6, p7, p8;
+
+		void add(int aQty, int aPrice)
+			{
+			if (aQty > 0)
+				{
+				++botTrades;
+				botQty += aQty;
+				botCents += (long)aQty * aPrice;
+				}
+			else if (aQty < 0)
+				{
+				++sldTrades;
+				sldQty -= aQty;
+				sldCents -= (long)aQty * aPrice;
+				}
+			}
+
+		void addTo(ExecsSummary aSum)
+			{
+			aSum.m_sldTrades += (int)sldTrades;
+			aSum.m_sldQty += (int)sldQty;
+			aSum.m_sldCents += sldCents;
+			aSum.m_botTrades += (int)botTrades;
+			aSum.m_botQty += (int)botQty;
+			aSum.m_botCents += botCents;
+			}
+
+		void reset()
+			{
+			sldTrades = sldQty = sldCents = 0;
+			botTrades = botQty = botCents = 0;
+			}
+		}
+	}
@@ -0,0 +1,138 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)IntMap.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* IntMap: A map from int keys to objects that neither boxes its keys nor
+* allocates an entry per mapping, for the indexes on the order path such
+* as OrderList's index of orders by broker id. Open addressing with linear
+* probing; removal shifts the following entries back, so there are no
+* tombstones to slow the lookups down over a long run. Not synchronized.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.Arrays;
+
+final class IntMap<V>
+	{
+	private static final int MIN_CAPACITY = 16;
+
+	private int[]    fKeys;
+	private Object[] fValues; // null marks an empty slot
+	private int      fSize;
+
+	IntMap() { this(MIN_CAPACITY); }
+
+	IntMap(int aExpected)
+		{
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * aExpected)
+			capacity <<= 1;
+		fKeys = new int[capacity];
+		fValues = new Object[capacity];
+		}
+
+	private static int hash(int aKey)
+		{
+		int h = aKey * 0x9E3779B9;
+		return h ^ (h >>> 16);
+		}
+
+	/** @return the slot holding aKey, or the empty slot where it belongs */
+	private int slotOf(int aKey)
+		{
+		int mask = fKeys.length - 1;
+		int i = hash(aKey) & mask;
+		while (fValues[i] != null && fKeys[i] != aKey)
+			i = (i + 1) & mask;
+		return i;
+		}
+
+	int size() { return fSize; }
+
+	@SuppressWarnings("unchecked")
+	V get(int aKey) { return (V)fValues[slotOf(aKey)]; }
+
+	boolean containsKey(int aKey) { return fValues[slotOf(aKey)] != null; }
+
+	/** @param aValue must not be null */
+	@SuppressWarnings("unchecked")
+	V put(int aKey, V aValue)
+		{
+		int i = slotOf(aKey);
+		V old = (V)fValues[i];
+		fKeys[i] = aKey;
+		fValues[i] = aValue;
+		if (old == null && ++fSize > fKeys.length / 2)
+			rehash(2 * fKeys.length);
+		return old;
+		}
+
+	@SuppressWarnings("unchecked")
+	V remove(int aKey)
+		{
+		int i = slotOf(aKey);
+		V old = (V)fValues[i];
+		if (old != null)
+			deleteAt(i);
+		return old;
+		}
+
+	/** Removes the first mapping to aValue: a full scan */
+	boolean removeValue(Object aValue)
+		{
+		for (int i = 0; i < fValues.length; i++)
+			if (fValues[i] == aValue)
+				{
+				deleteAt(i);
+				return true;
+				}
+		return false;
+		}
+
+	void clear()
+		{
+		Arrays.fill(fValues, null);
+		fSize = 0;
+		}
+
+	/** Empties slot i, moving back any entry that probed past it */
+	private void deleteAt(int i)
+		{
+		int mask = fKeys.length - 1;
+		fValues[i] = null;
+		--fSize;
+		int j = i;
+		for (;;)
+			{
+			j = (j + 1) & mask;
+			if (fValues[j] == null)
+				return;
+			int home = hash(fKeys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) // i lies on j's probe path
+				{
+				fKeys[i] = fKeys[j];
+				fValues[i] = fValues[j];
+				fValues[j] = null;
+				i = j;
+				}
+			}
+		}
+
+	private void rehash(int aCapacity)
+		{
+		int[] keys = fKeys;
+		Object[] values = fValues;
+		fKeys = new int[aCapacity];
+		fValues = new Object[aCapacity];
+		for (int i = 0; i < keys.length; i++)
+			if (values[i] != null)
+				{
+				int slot = slotOf(keys[i]);
+				fKeys[slot] = keys[i];
+				fValues[slot] = values[i];
+				}
+		}
+	}
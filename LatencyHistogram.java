@@ -0,0 +1,132 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)LatencyHistogram.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* LatencyHistogram: A fixed size, lock free histogram of durations in
+* nanoseconds, cheap enough to record every order transition. Buckets are
+* log-linear: each power of two is split into 16 sub-buckets, so any value
+* is reported to within about 6% from 1 ns up to centuries, in under 1000
+* counters. Recording is a couple of shifts and an atomic increment, and
+* allocates nothing.
+*
+* Percentiles are computed from the counts at the time of the call, while
+* other threads may still be recording, so they are approximate in both
+* senses, which is all a latency report needs.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram
+	{
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray fCounts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong fCount = new AtomicLong();
+	private final AtomicLong fTotal = new AtomicLong();
+	private final AtomicLong fMax = new AtomicLong();
+
+	/** @return the bucket of a non-negative value */
+	private static int bucketOf(long aValue)
+		{
+		if (aValue < SUB_COUNT)
+			return (int)aValue;
+		int shift = 63 - Long.numberOfLeadingZeros(aValue) - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int)((aValue >>> shift) & (SUB_COUNT - 1));
+		}
+
+	/** @return the largest value that falls in the bucket */
+	private static long highestIn(int aBucket)
+		{
+		if (aBucket < SUB_COUNT)
+			return aBucket;
+		int shift = (aBucket >>> SUB_BITS) - 1;
+		long lowest = (long)(SUB_COUNT + (aBucket & (SUB_COUNT - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+		}
+
+	/** Records one duration: negative values are counted as zero */
+	public void record(long aNanos)
+		{
+		if (aNanos < 0)
+			aNanos = 0;
+		fCounts.incrementAndGet(bucketOf(aNanos));
+		fCount.incrementAndGet();
+		fTotal.addAndGet(aNanos);
+		long max;
+		while (aNanos > (max = fMax.get()) && !fMax.compareAndSet(max, aNanos))
+			;
+		}
+
+	public long count() { return fCount.get(); }
+	public long max() { return fMax.get(); }
+
+	public long mean()
+		{
+		long count = fCount.get();
+		return (count == 0)? 0 : fTotal.get() / count;
+		}
+
+	/**
+	* @param aPercent 0 to 100, for instance 99.9
+	* @return the value at or below which aPercent of the durations fall,
+	* to within the bucket resolution, or 0 if nothing is recorded
+	*/
+	public long percentile(double aPercent)
+		{
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += fCounts.get(i);
+		if (count == 0)
+			return 0;
+		long rank = (long)Math.ceil(count * Math.min(100.0, aPercent) / 100.0);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			if ((seen += fCounts.get(i)) >= rank)
+				return Math.min(highestIn(i), fMax.get());
+		return fMax.get();
+		}
+
+	public long p50()  { return percentile(50.0); }
+	public long p99()  { return percentile(99.0); }
+	public long p999() { return percentile(99.9); }
+
+	/** Clears the histogram: not atomic with respect to concurrent records */
+	public void reset()
+		{
+		for (int i = 0; i < BUCKETS; i++)
+			fCounts.set(i, 0);
+		fCount.set(0);
+		fTotal.set(0);
+		fMax.set(0);
+		}
+
+	/** @return the duration formatted in the most readable unit */
+	public static String format(long aNanos)
+		{
+		if (aNanos < 10000L)
+			return aNanos + "ns";
+		if (aNanos < 10000000L)
+			return (aNanos / 1000L) + "us";
+		if (aNanos < 10000000000L)
+			return (aNanos / 1000000L) + "ms";
+		return (aNanos / 1000000000L) + "s";
+		}
+
+	@Override public String toString()
+		{
+		return "n=" + count()
+		     + " p50=" + format(p50())
+		     + " p99=" + format(p99())
+		     + " p99.9=" + format(p999())
+		     + " max=" + format(max());
+		}
+	}
@@ -0,0 +1,29 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)LegResolver.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* LegResolver: Finds the PositionLeg for an underlying and option
+* description, for rebuilding orders from a file.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.LegsList;
+import com.wormtrader.positions.PositionLeg;
+
+public interface LegResolver
+	{
+	/** Looks the leg up in the LegsList, as DlgOrder does */
+	public static final LegResolver LEGS_LIST = new LegResolver()
+		{
+		@Override public PositionLeg find(String aUnderlying, String aOptDesc)
+			{
+			return LegsList.find(aUnderlying, aOptDesc);
+			}
+		};
+
+	/** @return the leg, or null if it is not known */
+	public PositionLeg find(String aUnderlying, String aOptDesc);
+	}
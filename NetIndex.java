@@ -0,0 +1,151 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)NetIndex.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* NetIndex: OrderList's index of its soft orders by the terms on which
+* they net (see OrderTracker.merge()): leg, type, limit, aux price and
+* initial stop. Open addressing with linear probing, like IntMap, with no
+* key object per order or per lookup: the hash is computed from the
+* order's terms when it is added and kept in the order's fNetHash, so an
+* order whose terms have since changed is still removed by identity from
+* where it was put. Re-key an order with remove() then add() each time
+* its terms change. Not synchronized.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.Arrays;
+
+final class NetIndex<T extends OrderTracker>
+	{
+	private static final int MIN_CAPACITY = 16;
+
+	private int[]          fHashes;
+	private OrderTracker[] fOrders; // null marks an empty slot
+	private int            fSize;
+
+	NetIndex()
+		{
+		fHashes = new int[MIN_CAPACITY];
+		fOrders = new OrderTracker[MIN_CAPACITY];
+		}
+
+	/** @return the hash of the order's netting terms as they are now */
+	static int hash(OrderTracker aOrder)
+		{
+		int h = System.identityHashCode(aOrder.leg());
+		h = 31 * h + aOrder.typeCode();
+		h = 31 * h + aOrder.getLmt();
+		h = 31 * h + aOrder.getAux();
+		h = 31 * h + aOrder.getInitialStop();
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+		}
+
+	/** @return true if the orders have the same netting terms now */
+	static boolean nets(OrderTracker a, OrderTracker b)
+		{
+		return a.leg() == b.leg() && a.typeCode() == b.typeCode()
+		    && a.getLmt() == b.getLmt() && a.getAux() == b.getAux()
+		    && a.getInitialStop() == b.getInitialStop()
+		    && (a.typeCode() != Broker.TYPE_OTHER || a.type().equals(b.type()));
+		}
+
+	int size() { return fSize; }
+
+	/**
+	* @return another order in the index with the same terms as aOrder
+	* has now, or null
+	*/
+	@SuppressWarnings("unchecked")
+	T find(OrderTracker aOrder)
+		{
+		int h = hash(aOrder);
+		int mask = fHashes.length - 1;
+		for (int i = h & mask; fOrders[i] != null; i = (i + 1) & mask)
+			if (fHashes[i] == h && fOrders[i] != aOrder && nets(fOrders[i], aOrder))
+				return (T)fOrders[i];
+		return null;
+		}
+
+	/** Indexes the order by its terms now: it must not be in the index */
+	void add(T aOrder)
+		{
+		int h = hash(aOrder);
+		int mask = fHashes.length - 1;
+		int i = h & mask;
+		while (fOrders[i] != null)
+			i = (i + 1) & mask;
+		fHashes[i] = h;
+		fOrders[i] = aOrder;
+		aOrder.fNetHash = h;
+		if (++fSize > fHashes.length / 2)
+			rehash(2 * fHashes.length);
+		}
+
+	/**
+	* Removes this very order, found from the hash it was added with
+	* @return false if it was not in the index
+	*/
+	boolean remove(OrderTracker aOrder)
+		{
+		int h = aOrder.fNetHash;
+		int mask = fHashes.length - 1;
+		for (int i = h & mask; fOrders[i] != null; i = (i + 1) & mask)
+			if (fOrders[i] == aOrder)
+				{
+				deleteAt(i);
+				return true;
+				}
+		return false;
+		}
+
+	void clear()
+		{
+		Arrays.fill(fOrders, null);
+		fSize = 0;
+		}
+
+	/** Empties slot i, moving back any entry that probed past it */
+	private void deleteAt(int i)
+		{
+		int mask = fHashes.length - 1;
+		fOrders[i] = null;
+		--fSize;
+		int j = i;
+		for (;;)
+			{
+			j = (j + 1) & mask;
+			if (fOrders[j] == null)
+				return;
+			int home = fHashes[j] & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) // i lies on j's probe path
+				{
+				fHashes[i] = fHashes[j];
+				fOrders[i] = fOrders[j];
+				fOrders[j] = null;
+				i = j;
+				}
+			}
+		}
+
+	private void rehash(int aCapacity)
+		{
+		int[] hashes = fHashes;
+		OrderTracker[] orders = fOrders;
+		fHashes = new int[aCapacity];
+		fOrders = new OrderTracker[aCapacity];
+		int mask = aCapacity - 1;
+		for (int k = 0; k < hashes.length; k++)
+			if (orders[k] != null)
+				{
+				int i = hashes[k] & mask;
+				while (fOrders[i] != null)
+					i = (i + 1) & mask;
+				fHashes[i] = hashes[k];
+				fOrders[i] = orders[k];
+				}
+		}
+	}
@@ -0,0 +1,372 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderBench.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderBench: Headless micro benchmarks of the order hot paths, to give a
+* baseline for judging changes to OrderTracker, OrderList & TriggerBook:
+*  - OrderList add/remove and insertInList at 10, 1k and 100k orders
+*  - OrderTracker triggered() and softTriggered() across a price sweep
+*  - TriggerBook ticks across the same sweep
+*  - OrderTracker merge()
+*  - OrderList getValueAt() for every column
+*  - TickReplay of a tick file through a SimBroker and the legs' soft
+*    orders, with the orders resting out of reach of the ticks
+* Each benchmark is warmed up then timed, and reports its throughput and
+* the bytes allocated per operation by the benchmark thread.
+*
+* The orders are spread over legs so that compareTo() and toString() cost
+* what they do in the apps: main() uses the legs in the LegsList for the
+* symbols on the command line, and builds a stand-in leg for any symbol
+* it does not find there (every symbol, in a headless JVM), or call run()
+* with the legs to use.
+*
+* usage: java com.wormtrader.broker.OrderBench [SYMBOL...]
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent TickReplay of a tick file
+*******************************************************/
+import com.wormtrader.positions.LegsList;
+import com.wormtrader.positions.PositionLeg;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OrderBench
+	{
+	public static final int[] SIZES = { 10, 1000, 100000 };
+	private static final long WARMUP_NANOS = 1000000000L;
+	private static final long MEASURE_NANOS = 2000000000L;
+	private static final int MID_PRICE = 10000; // cents
+	private static final int PRICE_RANGE = 500;  // cents either side
+	private static final int REPLAY_TICKS = 1 << 20;
+	private static final String[] DEFAULT_SYMBOLS = { "IBM", "AAPL", "MSFT" };
+
+	/** A benchmarked operation: runs some number of ops */
+	private interface Op
+		{
+		/** @return a value that depends on the work, so it is not optimized away */
+		public long run();
+		/** @return the number of operations done by each run() */
+		public int ops();
+		}
+
+	private final PositionLeg[] fLegs;
+	private final PrintStream   fOut;
+	private long fSink;
+
+	public OrderBench(PositionLeg[] aLegs, PrintStream aOut)
+		{
+		fLegs = aLegs;
+		fOut = aOut;
+		}
+
+	/**
+	* @return n sent orders, with ids starting at aFirstID, spread across
+	* the legs at prices around MID_PRICE, alternating buy and sell stops
+	* and limits. Being sent they never merge, so the list keeps its size.
+	*/
+	private List<OrderTracker> orders(int aFirstID, int n)
+		{
+		List<OrderTracker> it = new ArrayList<OrderTracker>(n);
+		for (int i = 0; i < n; i++)
+			{
+			PositionLeg leg = fLegs[i % fLegs.length];
+			String type = ((i & 2) == 0)? Broker.STP_ORDER : Broker.LMT_ORDER;
+			int qty = ((i & 1) == 0)? 100 : -100;
+			int lmt = MID_PRICE - PRICE_RANGE + (i * 7919) % (2 * PRICE_RANGE);
+			it.add(new OrderTracker(aFirstID + i, leg, type, qty, lmt, 0, 0, "bench"));
+			}
+		return it;
+		}
+
+	private static long allocatedBytes()
+		{
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)mx)
+			             .getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+		}
+
+	private void measure(String aName, int aSize, Op aOp)
+		{
+		long end = System.nanoTime() + WARMUP_NANOS;
+		while (System.nanoTime() < end)
+			fSink += aOp.run();
+		long ops = 0;
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		end = start + MEASURE_NANOS;
+		long now;
+		do
+			{
+			fSink += aOp.run();
+			ops += aOp.ops();
+			}
+		while ((now = System.nanoTime()) < end);
+		bytes = (bytes < 0)? -1 : allocatedBytes() - bytes;
+		double perSec = ops * 1e9 / (now - start);
+		fOut.format("%-28s %7d %14.0f ops/s %10.1f B/op%n", aName, aSize, perSec,
+		            (bytes < 0)? Double.NaN : (double)bytes / ops);
+		}
+
+	/** Runs every benchmark at each of the SIZES */
+	public void run()
+		{
+		fOut.format("%-28s %7s %20s %15s%n", "Benchmark", "Orders", "Throughput", "Alloc");
+		for (int size : SIZES)
+			{
+			benchAddRemove(size);
+			benchInsert(size);
+			benchTriggered(size);
+			benchSoftTriggered(size);
+			benchTriggerBook(size);
+			benchGetValueAt(size);
+			benchTickReplay(size);
+			}
+		benchMerge();
+		fOut.println("(sink " + fSink + ")");
+		}
+
+	private void benchAddRemove(int n)
+		{
+		final List<OrderTracker> orders = orders(1, n);
+		final OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		measure("OrderList.add/remove", n, new Op()
+			{
+			@Override public long run()
+				{
+				for (OrderTracker ot : orders)
+					list.add(ot);
+				long size = list.size();
+				for (OrderTracker ot : orders)
+					list.remove(ot);
+				return size;
+				}
+			@Override public int ops() { return 2 * orders.size(); }
+			});
+		}
+
+	/** Inserts into and removes from a list already holding n orders */
+	private void benchInsert(int n)
+		{
+		final OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		for (OrderTracker ot : orders(1, n))
+			list.add(ot);
+		final List<OrderTracker> extra = orders(n + 1, 100);
+		measure("OrderList.insertInList", n, new Op()
+			{
+			@Override public long run()
+				{
+				for (OrderTracker ot : extra)
+					list.insertInList(ot);
+				for (OrderTracker ot : extra)
+					list.remove(ot);
+				return list.size();
+				}
+			@Override public int ops() { return 2 * extra.size(); }
+			});
+		}
+
+	private void benchTriggered(int n)
+		{
+		final List<OrderTracker> orders = orders(1, n);
+		measure("OrderTracker.triggered", n, new Op()
+			{
+			int price = MID_PRICE - PRICE_RANGE;
+			@Override public long run()
+				{
+				long hits = 0;
+				for (OrderTracker ot : orders)
+					if (ot.triggered(price))
+						++hits;
+				if (++price > MID_PRICE + PRICE_RANGE)
+					price = MID_PRICE - PRICE_RANGE;
+				return hits;
+				}
+			@Override public int ops() { return orders.size(); }
+			});
+		}
+
+	/**
+	* softTriggered() on soft orders over prices that never reach them, the
+	* common case for a leg's ladder of stops and limits
+	*/
+	private void benchSoftTriggered(int n)
+		{
+		final List<OrderTracker> orders = new ArrayList<OrderTracker>(n);
+		for (int i = 0; i < n; i++)
+			{
+			OrderTracker ot = new OrderTracker(fLegs[i % fLegs.length],
+			           Broker.STP_ORDER, 100, MID_PRICE + PRICE_RANGE + 1 + i, 0, 0, "bench");
+			orders.add(ot);
+			}
+		measure("OrderTracker.softTriggered", n, new Op()
+			{
+			int price = MID_PRICE - PRICE_RANGE;
+			@Override public long run()
+				{
+				long hits = 0;
+				for (OrderTracker ot : orders)
+					if (ot.softTriggered(price))
+						++hits;
+				if (++price > MID_PRICE + PRICE_RANGE)
+					price = MID_PRICE - PRICE_RANGE;
+				return hits;
+				}
+			@Override public int ops() { return orders.size(); }
+			});
+		}
+
+	/** Ticks across the sweep through a book that keeps every order */
+	private void benchTriggerBook(int n)
+		{
+		final TriggerBook<OrderTracker> book = new TriggerBook<OrderTracker>()
+			{
+			@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+				{
+				return false;
+				}
+			};
+		for (OrderTracker ot : orders(1, n))
+			book.add(ot);
+		measure("TriggerBook.trigger", n, new Op()
+			{
+			int price = MID_PRICE - PRICE_RANGE;
+			@Override public long run()
+				{
+				long hits = book.trigger(price);
+				if (++price > MID_PRICE + PRICE_RANGE)
+					price = MID_PRICE - PRICE_RANGE;
+				return hits;
+				}
+			@Override public int ops() { return 1; }
+			});
+		}
+
+	private void benchGetValueAt(int n)
+		{
+		final OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		for (OrderTracker ot : orders(1, n))
+			list.add(ot);
+		final int rows = Math.min(n, 1000); // about a screen or so's worth
+		final int cols = list.getColumnCount();
+		measure("OrderList.getValueAt", n, new Op()
+			{
+			@Override public long run()
+				{
+				long hash = 0;
+				for (int r = 0; r < rows; r++)
+					for (int c = 0; c < cols; c++)
+						{
+						Object value = list.getValueAt(r, c);
+						if (value != null)
+							hash += value.hashCode();
+						}
+				return hash;
+				}
+			@Override public int ops() { return rows * cols; }
+			});
+		}
+
+	/**
+	* Replays ticks sweeping each leg across the price range through a
+	* SimBroker resting n orders, and soft books holding n soft orders,
+	* all out of the sweep's reach so that the book sizes stay constant
+	*/
+	private void benchTickReplay(int n)
+		{
+		File csv = null;
+		File bin = null;
+		try
+			{
+			csv = File.createTempFile("OrderBench", ".csv");
+			bin = File.createTempFile("OrderBench", ".wttk");
+			try (PrintWriter out = new PrintWriter(csv, "UTF-8"))
+				{
+				for (int i = 0; i < REPLAY_TICKS; i++)
+					{
+					int cents = MID_PRICE - PRICE_RANGE + (int)((i * 7919L) % (2 * PRICE_RANGE));
+					out.format("%d,%s,%d.%02d,%d%n", i / 4, fLegs[i % fLegs.length].toString(),
+					           cents / 100, cents % 100, 100);
+					}
+				}
+			TickFile.convert(csv, bin);
+			try (TickFile ticks = new TickFile(bin))
+				{
+				benchTickReplay(n, ticks);
+				}
+			}
+		catch (IOException e)
+			{
+			fOut.println("TickReplay: " + e);
+			}
+		finally
+			{
+			if (csv != null) csv.delete();
+			if (bin != null) bin.delete();
+			}
+		}
+
+	private void benchTickReplay(int n, TickFile aTicks)
+		{
+		final SimBroker sim = new SimBroker();
+		final TickReplay replay = new TickReplay(aTicks, sim);
+		int symbols = aTicks.getSymbolCount();
+		for (int s = 0; s < symbols; s++)
+			replay.setLeg(s, fLegs[s]);
+		for (int i = 0; i < n; i++)
+			{
+			int s = i % symbols;
+			int qty = ((i & 1) == 0)? 100 : -100;
+			int away = (2 + i % 100) * ((qty > 0)? -1 : 1); // buy below, sell above
+			int edge = (qty > 0)? MID_PRICE - PRICE_RANGE : MID_PRICE + PRICE_RANGE;
+			sim.placeOrder(new OrderTracker(fLegs[s], Broker.LMT_ORDER, qty, edge + away, 0, 0, "bench"));
+			replay.add(new OrderTracker(fLegs[s], Broker.LMT_ORDER, qty, edge + away, 0, 0, "bench"));
+			}
+		measure("TickReplay.replay", n, new Op()
+			{
+			@Override public long run()
+				{
+				replay.seek(Long.MIN_VALUE);
+				return replay.replay();
+				}
+			@Override public int ops() { return REPLAY_TICKS; }
+			});
+		}
+
+	private void benchMerge()
+		{
+		final OrderTracker a = new OrderTracker(fLegs[0], Broker.LMT_ORDER,
+		                                        100, MID_PRICE, 0, 0, "bench");
+		final OrderTracker b = new OrderTracker(fLegs[0], Broker.LMT_ORDER,
+		                                        100, MID_PRICE, 0, 0, "bench");
+		measure("OrderTracker.merge", 2, new Op()
+			{
+			@Override public long run()
+				{
+				long merged = a.merge(b)? 1 : 0;
+				a.setQty(100);
+				return merged;
+				}
+			@Override public int ops() { return 1; }
+			});
+		}
+
+	public static void main(String[] args)
+		{
+		String[] symbols = (args.length == 0)? DEFAULT_SYMBOLS : args;
+		PositionLeg[] legs = new PositionLeg[symbols.length];
+		for (int i = 0; i < symbols.length; i++)
+			if ((legs[i] = LegsList.find(symbols[i], "")) == null)
+				legs[i] = new PositionLeg(symbols[i]);
+		new OrderBench(legs, System.out).run();
+		}
+	}
@@ -0,0 +1,71 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderFilters.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderFilters: Commonly used order predicates for Broker.cancelAll() and
+* the OrderList batch operations.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.util.function.Predicate;
+
+public final class OrderFilters
+	{
+	private OrderFilters() {}
+
+	/** Accepts every order */
+	public static final Predicate<OrderTracker> ALL = new Predicate<OrderTracker>()
+		{
+		@Override public boolean test(OrderTracker ot) { return true; }
+		};
+
+	/** Accepts the orders that are at the broker or partially filled */
+	public static final Predicate<OrderTracker> WORKING = new Predicate<OrderTracker>()
+		{
+		@Override public boolean test(OrderTracker ot)
+			{
+			return ot.isAtBroker() || ot.getState() == OrderTracker.PART_FILL;
+			}
+		};
+
+	/** Accepts the orders for the specified leg */
+	public static Predicate<OrderTracker> forLeg(final PositionLeg aLeg)
+		{
+		return new Predicate<OrderTracker>()
+			{
+			@Override public boolean test(OrderTracker ot) { return ot.leg() == aLeg; }
+			};
+		}
+
+	/** Accepts the orders for any leg of the specified strategy */
+	public static Predicate<OrderTracker> forStrategy(final Object aStrategy)
+		{
+		return new Predicate<OrderTracker>()
+			{
+			@Override public boolean test(OrderTracker ot)
+				{
+				return ot.leg().getStrategy() == aStrategy;
+				}
+			};
+		}
+
+	/** Accepts the orders in any of the specified states */
+	public static Predicate<OrderTracker> inState(byte... aStates)
+		{
+		int mask = 0;
+		for (byte state : aStates)
+			mask |= 1 << state;
+		final int states = mask;
+		return new Predicate<OrderTracker>()
+			{
+			@Override public boolean test(OrderTracker ot)
+				{
+				return (states & (1 << ot.getState())) != 0;
+				}
+			};
+		}
+	}
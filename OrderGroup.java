@@ -0,0 +1,340 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderGroup.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderGroup: Orders that act on each other's fills, without a trip
+* through the strategy:
+*  - OCO, one cancels others: the first fill on any member cancels the
+*    rest of the members
+*  - bracket: an entry order whose fills each place a protective stop at
+*    the entry's initial stop and, if given, a profit target, the two of
+*    them OCO. The stop is placed by the group, so the entry's initial
+*    stop is cleared for the leg not to place a second one.
+* The group listens to its orders' state changes and acts on the thread
+* and in the call that reported the fill: a SimBroker fill places the
+* stop before tick() returns (a TriggerBook defers the new orders to the
+* end of the tick), and a live broker's fill callback sends it at once.
+*
+* A bracket entry that fills in parts places a stop and target for each
+* part. A partial fill on a stop or target shrinks its partner by the
+* shares filled, through setQty(), and a complete fill cancels it.
+*
+* Place a group with Broker.placeGroup(), so that a broker that supports
+* native OCO or bracket orders can send them as such.
+*
+* A member leaves the group as soon as it is done (filled, cancelled or
+* rejected), so the group holds no reference to an order that an
+* OrderPool may recycle: getOrders() lists the members still working.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent partial fill of a stop or target shrinks its partner
+*******************************************************/
+import static com.wormtrader.broker.Broker.LMT_ORDER;
+import static com.wormtrader.broker.Broker.STP_ORDER;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderGroup
+	implements OrderStateListener
+	{
+	public static final String MODULE="OrderGroup.";
+
+	/** Group kinds */
+	public static final byte OCO=(byte)1;
+	public static final byte BRACKET=(byte)2;
+
+	private final byte         fKind;
+	private OrderTracker       fEntry;  // bracket only: null once done
+	private final int          fStop;   // cents, bracket only: 0 for none
+	private final int          fTarget; // cents, bracket only: 0 for none
+	private int                fProtected; // entry shares given a stop & target
+	private volatile Broker    fBroker;
+
+	/** The group's orders not yet done, children included, in the order added */
+	private final List<OrderTracker> fOrders = new ArrayList<OrderTracker>();
+
+	/**
+	* The members of an OCO set, and for a bracket's stop and target the
+	* entry shares they protect, less those filled by members that left
+	*/
+	private static final class OcoSet
+		{
+		final List<OrderTracker> fMembers;
+		int fShares; // 0 for an OCO group: its first fill cancels the rest
+
+		OcoSet(int aSize, int aShares)
+			{
+			fMembers = new ArrayList<OrderTracker>(aSize);
+			fShares = aShares;
+			}
+
+		/** @return the shares still open: fShares less the members' fills */
+		int open()
+			{
+			int open = fShares;
+			for (int i = fMembers.size(); --i >= 0; )
+				open -= Math.abs(fMembers.get(i).getFilled());
+			return open;
+			}
+		}
+
+	/**
+	* Each working member's OCO set, shared by the members of the set: the
+	* members to cancel or shrink when it fills
+	*/
+	private final Map<OrderTracker,OcoSet> fSets
+	                         = new IdentityHashMap<OrderTracker,OcoSet>();
+
+	/**
+	* @return a group in which the first fill on any member cancels the
+	* others
+	*/
+	public static OrderGroup oco(OrderTracker... aMembers)
+		{
+		OrderGroup it = new OrderGroup(OCO, null, 0);
+		synchronized (it) { it.join(0, aMembers); }
+		return it;
+		}
+
+	/**
+	* @param aEntry the entry order: its initial stop is the stop price
+	* @param aTarget the limit price of the profit target, or 0 for none
+	* @return a bracket that protects each fill of the entry
+	*/
+	public static OrderGroup bracket(OrderTracker aEntry, int aTarget)
+		{
+		OrderGroup it = new OrderGroup(BRACKET, aEntry, aTarget);
+		synchronized (it) { it.fOrders.add(aEntry); }
+		aEntry.addStateListener(it);
+		return it;
+		}
+
+	private OrderGroup(byte aKind, OrderTracker aEntry, int aTarget)
+		{
+		fKind = aKind;
+		fEntry = aEntry;
+		fTarget = aTarget;
+		fStop = (aEntry == null)? 0 : aEntry.getInitialStop();
+		if (aEntry != null)
+			aEntry.setInitialStop(0); // the group places the stop
+		}
+
+	public final byte getKind() { return fKind; }
+
+	/** @return the entry order of a bracket, or null once it is done */
+	public final synchronized OrderTracker getEntry() { return fEntry; }
+
+	/**
+	* @return the group's orders not yet done, including the stops and
+	* targets placed so far
+	*/
+	public final synchronized List<OrderTracker> getOrders()
+		{
+		return Collections.unmodifiableList(new ArrayList<OrderTracker>(fOrders));
+		}
+
+	/**
+	* Makes the members an OCO set: holding the lock
+	* @param aShares the entry shares a bracket's stop and target protect,
+	* or 0 for the first fill to cancel the others
+	*/
+	private void join(int aShares, OrderTracker... aMembers)
+		{
+		OcoSet set = new OcoSet(aMembers.length, aShares);
+		for (OrderTracker ot : aMembers)
+			{
+			set.fMembers.add(ot);
+			fOrders.add(ot);
+			fSets.put(ot, set);
+			ot.addStateListener(this);
+			}
+		}
+
+	/** Drops a member that is done from the group: holding the lock */
+	private void leave(OrderTracker aOrder)
+		{
+		for (int i = fOrders.size(); --i >= 0; )
+			if (fOrders.get(i) == aOrder)
+				fOrders.remove(i);
+		OcoSet set = fSets.remove(aOrder);
+		if (set != null)
+			{
+			List<OrderTracker> members = set.fMembers;
+			for (int i = members.size(); --i >= 0; )
+				if (members.get(i) == aOrder)
+					members.remove(i);
+			if (set.fShares != 0) // its fills no longer counted by open()
+				set.fShares -= Math.abs(aOrder.getFilled());
+			}
+		if (aOrder == fEntry)
+			fEntry = null;
+		}
+
+	/**
+	* Places the group's orders that are not yet sent: the entry of a
+	* bracket, or the members of an OCO. Called by Broker.placeGroup().
+	*/
+	public void place(Broker aBroker)
+		{
+		fBroker = aBroker;
+		List<OrderTracker> soft = new ArrayList<OrderTracker>();
+		synchronized (this)
+			{
+			if (fKind == BRACKET)
+				{
+				if (fEntry != null && fEntry.isSoft())
+					soft.add(fEntry);
+				}
+			else for (OrderTracker ot : fOrders)
+				if (ot.isSoft())
+					soft.add(ot);
+			}
+		aBroker.placeOrders(soft);
+		}
+
+	/** Cancels every working order in the group, entry included */
+	public void cancel()
+		{
+		List<OrderTracker> all;
+		synchronized (this)
+			{
+			all = new ArrayList<OrderTracker>(fOrders);
+			fSets.clear();
+			}
+		for (OrderTracker ot : all)
+			cancel(ot);
+		}
+
+	/** @return true once no order in the group can fill any more */
+	public final synchronized boolean isDone() { return fOrders.isEmpty(); }
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		boolean fill = (aTo == OrderTracker.PART_FILL || aTo == OrderTracker.FILLED);
+		boolean done = (aTo == OrderTracker.FILLED || aTo == OrderTracker.CANCELED
+		             || aTo == OrderTracker.ERROR);
+		if (done)
+			aOrder.removeStateListener(this);
+		if (!fill && !done)
+			return;
+		OrderTracker[] protection = null;
+		OrderTracker[] others = null;
+		int[] shrinkTo = null;
+		synchronized (this)
+			{
+			if (aOrder == fEntry)
+				{
+				if (fill)
+					protection = protect(aOrder);
+				}
+			else if (fill)
+				{
+				OcoSet set = fSets.get(aOrder);
+				if (set != null)
+					{
+					others = set.fMembers.toArray(new OrderTracker[set.fMembers.size()]);
+					int open = set.open();
+					if (set.fShares == 0 || aTo == OrderTracker.FILLED || open <= 0)
+						for (OrderTracker ot : others) // the others go
+							fSets.remove(ot);
+					else // a partial stop or target fill: the others shrink
+						{
+						shrinkTo = new int[others.length];
+						for (int i = 0; i < others.length; i++)
+							shrinkTo[i] = Math.abs(others[i].getFilled()) + open;
+						}
+					}
+				}
+			if (done) // cancelled or rejected: the others stay
+				leave(aOrder);
+			}
+		if (protection != null)
+			{
+			Broker broker = brokerFor(aOrder);
+			for (OrderTracker ot : protection) // the stop first: it limits the loss
+				broker.placeOrder(ot);
+			}
+		if (shrinkTo != null)
+			{
+			for (int i = 0; i < others.length; i++)
+				if (others[i] != aOrder)
+					shrink(others[i], shrinkTo[i]);
+			}
+		else if (others != null)
+			for (OrderTracker ot : others)
+				if (ot != aOrder)
+					cancel(ot);
+		}
+
+	/**
+	* Reduces a working order to aShares in all, filled shares included, so
+	* that it covers no more than its partner left open
+	*/
+	private static void shrink(OrderTracker aOrder, int aShares)
+		{
+		int qty = aOrder.qty();
+		if (aShares < Math.abs(qty) && aOrder.isCancelable())
+			aOrder.setQty((qty > 0)? aShares : -aShares);
+		}
+
+	/**
+	* Makes a stop and target for the entry's shares filled since the last
+	* call, the two of them OCO: holding the lock
+	* @return the orders to place, stop first, or null for none
+	*/
+	private OrderTracker[] protect(OrderTracker aEntry)
+		{
+		OrderTracker stop = null;
+		OrderTracker target = null;
+		int filled = Math.abs(aEntry.getFilled());
+		int shares = filled - fProtected;
+		if (shares <= 0)
+			return null;
+		fProtected = filled;
+		int qty = (aEntry.qty() > 0)? -shares : shares;
+		String reason = aEntry.getReason();
+		if (fStop != 0)
+			stop = new OrderTracker(aEntry.leg(), STP_ORDER, qty, fStop, 0, 0, reason);
+		if (fTarget != 0)
+			target = new OrderTracker(aEntry.leg(), LMT_ORDER, qty, fTarget, 0, 0, reason);
+		OrderTracker[] orders = (stop != null && target != null)? new OrderTracker[] { stop, target }
+		                      : (stop != null)? new OrderTracker[] { stop }
+		                      : (target != null)? new OrderTracker[] { target } : null;
+		if (orders != null)
+			join(shares, orders);
+		return orders;
+		}
+
+	private Broker brokerFor(OrderTracker aOrder)
+		{
+		Broker broker = fBroker;
+		return (broker != null)? broker : aOrder.getSession().brokerFor(aOrder.leg());
+		}
+
+	/**
+	* Cancels a soft order, or asks the broker to cancel one that is working
+	* or on its way there
+	*/
+	private void cancel(OrderTracker aOrder)
+		{
+		switch (aOrder.claimCancel())
+			{
+			case OrderTracker.CANCELED: aOrder.leg().remove(aOrder);
+			                            break;
+			case OrderTracker.CAN_REQ:  brokerFor(aOrder).cancelOrder(aOrder);
+			                            break;
+			}
+		}
+
+	@Override public synchronized String toString()
+		{
+		return ((fKind == OCO)? "OCO " : "Bracket ") + fOrders.size() + " orders"
+		     + ((fKind == OCO)? "" : " protected " + fProtected);
+		}
+	}
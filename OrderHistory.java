@@ -0,0 +1,394 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderHistory.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderHistory: A compact, append only store of finished orders for
+* analysing a simulation after the run. Rather than keeping millions of
+* OrderTrackers, each with its leg, strings and a dozen fields, the
+* history keeps one primitive column per field, 43 bytes an order:
+*  - id, qty, filled, lmt, aux and initial stop as ints, time as a long
+*  - state, act and type as bytes, with the name of each rare order of
+*    TYPE_OTHER kept aside by row
+*  - the leg and the reason as int codes into dictionaries, so each
+*    distinct leg or reason is held once
+* The columns live on the heap, or off it in direct buffers when the
+* history should not weigh on the collector.
+*
+* archive() moves the FILLED, CANCELED and rejected orders out of an
+* OrderList, which may then release them to its OrderPool. Scans visit
+* the rows that pass a filter without creating any objects, and the
+* aggregations run over the columns themselves.
+*
+* Adds and scans hold the history's lock; the per row getters do not, so
+* use them from the thread adding orders, or once the run is done.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+public class OrderHistory
+	{
+	public static final String MODULE="OrderHistory.";
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** Assigns each distinct value a small int code, in order of arrival */
+	private static final class Dictionary<V>
+		{
+		private final Map<V,Integer> fCodes;
+		private final List<V> fValues = new ArrayList<V>();
+
+		Dictionary(Map<V,Integer> aCodes) { fCodes = aCodes; }
+
+		int encode(V aValue)
+			{
+			Integer code = fCodes.get(aValue);
+			if (code == null)
+				{
+				code = fValues.size();
+				fValues.add(aValue);
+				fCodes.put(aValue, code);
+				}
+			return code;
+			}
+
+		int codeOf(V aValue)
+			{
+			Integer code = fCodes.get(aValue);
+			return (code == null)? -1 : code;
+			}
+
+		V decode(int aCode) { return fValues.get(aCode); }
+		int size() { return fValues.size(); }
+		void clear() { fCodes.clear(); fValues.clear(); }
+		}
+
+	private final boolean fDirect;
+	private int fCapacity;
+	private volatile int fSize;
+
+	private IntBuffer  fID;
+	private LongBuffer fTime;
+	private IntBuffer  fQty;
+	private IntBuffer  fFilled;
+	private IntBuffer  fLmt;
+	private IntBuffer  fAux;
+	private IntBuffer  fIStop;
+	private IntBuffer  fLeg;
+	private IntBuffer  fReason;
+	private ByteBuffer fState;
+	private ByteBuffer fAct;
+	private ByteBuffer fType;
+
+	private final Dictionary<PositionLeg> fLegs
+		= new Dictionary<PositionLeg>(new IdentityHashMap<PositionLeg,Integer>());
+	private final Dictionary<String> fReasons
+		= new Dictionary<String>(new HashMap<String,Integer>());
+	private final IntMap<String> fOtherTypes = new IntMap<String>(); // by row
+
+	public OrderHistory() { this(DEFAULT_CAPACITY, false); }
+
+	/**
+	* @param aCapacity the orders to make room for at first: the columns
+	* double as needed
+	* @param aDirect true to keep the columns in direct buffers, off the heap
+	*/
+	public OrderHistory(int aCapacity, boolean aDirect)
+		{
+		fDirect = aDirect;
+		fCapacity = Math.max(16, aCapacity);
+		allocate(fCapacity);
+		}
+
+	public final boolean isDirect() { return fDirect; }
+	public final int size() { return fSize; }
+
+	/** @return the bytes held by the columns, whether used yet or not */
+	public final synchronized long getBytes()
+		{
+		return (long)fCapacity * (8 * 4 + 8 + 3);
+		}
+
+	private ByteBuffer bytes(int aBytes)
+		{
+		return fDirect? ByteBuffer.allocateDirect(aBytes).order(ByteOrder.nativeOrder())
+		              : ByteBuffer.allocate(aBytes);
+		}
+
+	private IntBuffer ints(IntBuffer aOld, int aCapacity)
+		{
+		IntBuffer it = fDirect? bytes(4 * aCapacity).asIntBuffer()
+		                      : IntBuffer.allocate(aCapacity);
+		if (aOld != null)
+			{
+			IntBuffer used = aOld.duplicate();
+			used.position(0);
+			used.limit(fSize);
+			it.put(used);
+			}
+		return it;
+		}
+
+	private LongBuffer longs(LongBuffer aOld, int aCapacity)
+		{
+		LongBuffer it = fDirect? bytes(8 * aCapacity).asLongBuffer()
+		                       : LongBuffer.allocate(aCapacity);
+		if (aOld != null)
+			{
+			LongBuffer used = aOld.duplicate();
+			used.position(0);
+			used.limit(fSize);
+			it.put(used);
+			}
+		return it;
+		}
+
+	private ByteBuffer bytes(ByteBuffer aOld, int aCapacity)
+		{
+		ByteBuffer it = bytes(aCapacity);
+		if (aOld != null)
+			{
+			ByteBuffer used = aOld.duplicate();
+			used.position(0);
+			used.limit(fSize);
+			it.put(used);
+			}
+		return it;
+		}
+
+	/** Makes or grows every column to the capacity, keeping the rows */
+	private void allocate(int aCapacity)
+		{
+		fID = ints(fID, aCapacity);
+		fTime = longs(fTime, aCapacity);
+		fQty = ints(fQty, aCapacity);
+		fFilled = ints(fFilled, aCapacity);
+		fLmt = ints(fLmt, aCapacity);
+		fAux = ints(fAux, aCapacity);
+		fIStop = ints(fIStop, aCapacity);
+		fLeg = ints(fLeg, aCapacity);
+		fReason = ints(fReason, aCapacity);
+		fState = bytes(fState, aCapacity);
+		fAct = bytes(fAct, aCapacity);
+		fType = bytes(fType, aCapacity);
+		fCapacity = aCapacity;
+		}
+
+	/**
+	* Appends the order as it is now: the history keeps no reference to it
+	* @return the order's row
+	*/
+	public final synchronized int add(OrderTracker aOrder)
+		{
+		int r = fSize;
+		if (r == fCapacity)
+			{
+			if (fCapacity > Integer.MAX_VALUE / 16)
+				throw new IllegalStateException(MODULE + "full at " + r + " orders");
+			allocate(2 * fCapacity);
+			}
+		fID.put(r, aOrder.id());
+		fTime.put(r, aOrder.time());
+		fQty.put(r, aOrder.qty());
+		fFilled.put(r, aOrder.getFilled());
+		fLmt.put(r, aOrder.getLmt());
+		fAux.put(r, aOrder.getAux());
+		fIStop.put(r, aOrder.getInitialStop());
+		fLeg.put(r, fLegs.encode(aOrder.leg()));
+		fReason.put(r, fReasons.encode(aOrder.getReason()));
+		fState.put(r, aOrder.getState());
+		fAct.put(r, aOrder.act());
+		fType.put(r, aOrder.typeCode());
+		if (aOrder.typeCode() == Broker.TYPE_OTHER)
+			fOtherTypes.put(r, String.valueOf(aOrder.type()));
+		fSize = r + 1;
+		return r;
+		}
+
+	/**
+	* Moves every finished order (FILLED, CANCELED or rejected) out of the
+	* list and into this history, as a single change to the list's table
+	* @return the number of orders archived
+	*/
+	public final int archive(OrderList<?> aList)
+		{
+		int archived = 0;
+		aList.beginBatch();
+		try
+			{
+			synchronized (aList)
+				{
+				List<? extends OrderTracker> orders = aList.getAll();
+				for (int r = orders.size(); r-- > 0; )
+					{
+					byte state = orders.get(r).getState();
+					if (state != OrderTracker.FILLED && state != OrderTracker.CANCELED
+					&&  state != OrderTracker.ERROR)
+						continue;
+					add(orders.get(r));
+					aList.removeRow(r); // the row is copied: may now be pooled
+					++archived;
+					}
+				}
+			}
+		finally { aList.endBatch(); }
+		return archived;
+		}
+
+	/** Empties the history, keeping its columns for reuse */
+	public final synchronized void clear()
+		{
+		fSize = 0;
+		fLegs.clear();
+		fReasons.clear();
+		fOtherTypes.clear();
+		}
+
+	public final int   id(int r)          { return fID.get(r); }
+	public final long  time(int r)        { return fTime.get(r); }
+	public final int   qty(int r)         { return fQty.get(r); }
+	public final int   filled(int r)      { return fFilled.get(r); }
+	public final int   lmt(int r)         { return fLmt.get(r); }
+	public final int   aux(int r)         { return fAux.get(r); }
+	public final int   initialStop(int r) { return fIStop.get(r); }
+	public final byte  state(int r)       { return fState.get(r); }
+	public final byte  act(int r)         { return fAct.get(r); }
+	public final byte  typeCode(int r)    { return fType.get(r); }
+	public final synchronized String type(int r)
+		{
+		byte code = typeCode(r);
+		return (code == Broker.TYPE_OTHER)? fOtherTypes.get(r) : Broker.ORDER_TYPES[code];
+		}
+	public final int   legCode(int r)     { return fLeg.get(r); }
+	public final int   reasonCode(int r)  { return fReason.get(r); }
+	public final synchronized PositionLeg leg(int r) { return fLegs.decode(fLeg.get(r)); }
+	public final synchronized String reason(int r) { return fReasons.decode(fReason.get(r)); }
+
+	/** @return the leg's code, for filtering on legCode(), or -1 if it has no orders here */
+	public final synchronized int codeOf(PositionLeg aLeg) { return fLegs.codeOf(aLeg); }
+	/** @return the reason's code, for filtering on reasonCode(), or -1 */
+	public final synchronized int codeOf(String aReason) { return fReasons.codeOf(aReason); }
+	public final synchronized PositionLeg legOf(int aCode) { return fLegs.decode(aCode); }
+	public final synchronized String reasonOf(int aCode) { return fReasons.decode(aCode); }
+	public final synchronized int legCount() { return fLegs.size(); }
+	public final synchronized int reasonCount() { return fReasons.size(); }
+
+	/**
+	* Recreates the order in a row, in its final state, for inspection: it
+	* is a new, detached tracker which no broker knows
+	*/
+	public final synchronized OrderTracker get(int r)
+		{
+		OrderTracker it = new OrderTracker(id(r), leg(r), typeCode(r), act(r),
+			qty(r), lmt(r), aux(r), initialStop(r), reason(r), time(r));
+		if (typeCode(r) == Broker.TYPE_OTHER)
+			it.setType(type(r));
+		it.restore(state(r), id(r), qty(r), filled(r), "???", "", null);
+		return it;
+		}
+
+	/**
+	* Calls the action with each row that passes the filter, in the order
+	* the rows were added
+	* @return the number of rows visited
+	*/
+	public final synchronized int forEach(IntPredicate aFilter, IntConsumer aAction)
+		{
+		int visited = 0;
+		for (int r = 0, size = fSize; r < size; r++)
+			if (aFilter.test(r))
+				{
+				aAction.accept(r);
+				++visited;
+				}
+		return visited;
+		}
+
+	/** @return the rows that pass the filter */
+	public final synchronized int[] select(IntPredicate aFilter)
+		{
+		int[] rows = new int[16];
+		int n = 0;
+		for (int r = 0, size = fSize; r < size; r++)
+			if (aFilter.test(r))
+				{
+				if (n == rows.length)
+					rows = java.util.Arrays.copyOf(rows, 2 * n);
+				rows[n++] = r;
+				}
+		return java.util.Arrays.copyOf(rows, n);
+		}
+
+	/** @return the number of orders in each state, indexed by state */
+	public final synchronized int[] countByState()
+		{
+		int[] counts = new int[OrderTracker.STATE_DESC.length];
+		for (int r = 0, size = fSize; r < size; r++)
+			++counts[fState.get(r)];
+		return counts;
+		}
+
+	/** @return the signed shares filled for each leg, indexed by leg code */
+	public final synchronized long[] filledByLeg()
+		{
+		long[] shares = new long[fLegs.size()];
+		for (int r = 0, size = fSize; r < size; r++)
+			shares[fLeg.get(r)] += fFilled.get(r);
+		return shares;
+		}
+
+	/** @return the orders of each reason, indexed by reason code */
+	public final synchronized int[] countByReason()
+		{
+		int[] counts = new int[fReasons.size()];
+		for (int r = 0, size = fSize; r < size; r++)
+			++counts[fReason.get(r)];
+		return counts;
+		}
+
+	/** @return the total of the filled shares, bought less sold, of the rows that pass */
+	public final synchronized long sumFilled(IntPredicate aFilter)
+		{
+		long sum = 0;
+		for (int r = 0, size = fSize; r < size; r++)
+			if (aFilter.test(r))
+				sum += fFilled.get(r);
+		return sum;
+		}
+
+	/** @return the first row created at or after the time, assuming rows were added in time order */
+	public final synchronized int firstAtOrAfter(long aTime)
+		{
+		int lo = 0;
+		int hi = fSize;
+		while (lo < hi)
+			{
+			int mid = (lo + hi) >>> 1;
+			if (fTime.get(mid) < aTime)
+				lo = mid + 1;
+			else
+				hi = mid;
+			}
+		return lo;
+		}
+
+	@Override public synchronized String toString()
+		{
+		return "OrderHistory " + fSize + " orders, " + fLegs.size() + " legs, "
+		     + fReasons.size() + " reasons, " + (getBytes() >> 10) + "K"
+		     + (fDirect? " direct" : "");
+		}
+	}
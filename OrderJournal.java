@@ -0,0 +1,460 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderJournal.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderJournal: An append only binary journal of the orders in an
+* OrderList and of every change to their state, so that the broker side
+* of the orders (ids, fills, status, TIF) survives a restart. Records are
+* written through a memory mapped file and forced to disk periodically by
+* a daemon thread, or on sync() and close(). On startup replay() rebuilds
+* the OrderList from the journal in a single pass.
+*
+* Each record is [int length][byte kind][int seq] followed by the kind's
+* fields; the length is written last, so a record torn by a crash of the
+* process reads as the end of the journal: the OS still writes out the
+* pages of the mapped file. A power loss or OS crash before the sync
+* thread has forced them gives no such guarantee, since the pages may
+* reach the disk in any order: up to one sync interval of records may
+* be lost or torn. Strings are a short byte count (-1 for null) followed
+* by their UTF-8 bytes.
+*
+* On startup the journal is mapped read only and its records are walked
+* in place, so a large journal is never copied onto the heap.
+*
+* Replayed orders are plain OrderTrackers, whatever their class was.
+* The CREATED and MODIFIED records of an order of TYPE_OTHER end with
+* the name of its type. A MODIFIED record is written for every change to
+* an order's terms, which the journal hears of as its state listener, and
+* ends with the initial stop: older records without it leave it as is.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent records read in place from a read only map
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import com.shanebow.util.SBLog;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class OrderJournal
+	implements OrderStateListener, Closeable
+	{
+	public static final String MODULE="OrderJournal.";
+	public static final long DEFAULT_SYNC_MILLIS = 1000;
+	private static final int CHUNK = 4 << 20; // bytes mapped at a time
+
+	/** Record kinds */
+	private static final byte CREATED=(byte)1;
+	private static final byte STATE=(byte)2;
+	private static final byte MODIFIED=(byte)3;
+	private static final byte REMOVED=(byte)4;
+	private static final byte CLEARED=(byte)5;
+
+	private final RandomAccessFile fFile;
+	private final FileChannel      fChannel;
+	private MappedByteBuffer fBuffer;  // maps the file from fBase
+	private long             fBase;
+	private int              fNextSeq = 1;
+	private volatile boolean fDirty;
+	private volatile boolean fClosed;
+
+	/**
+	* Opens the journal, creating the file if need be, and positions it
+	* after the last complete record. Call replay() before journaling any
+	* new orders.
+	*/
+	public OrderJournal(File aFile, final long aSyncMillis)
+		throws IOException
+		{
+		fFile = new RandomAccessFile(aFile, "rw");
+		fChannel = fFile.getChannel();
+		long end = 0;
+		ByteBuffer in = mapAll();
+		while (in.remaining() >= 4)
+			{
+			int length = in.getInt(in.position());
+			if (length <= 0 || length > in.remaining())
+				break;
+			in.position(in.position() + length);
+			end += length;
+			}
+		map(end, CHUNK);
+		if (aSyncMillis > 0)
+			{
+			Thread syncer = new Thread(MODULE + "sync")
+				{
+				@Override public void run()
+					{
+					while (!fClosed)
+						{
+						try { Thread.sleep(aSyncMillis); }
+						catch (InterruptedException e) { return; }
+						sync();
+						}
+					}
+				};
+			syncer.setDaemon(true);
+			syncer.start();
+			}
+		}
+
+	public OrderJournal(File aFile) throws IOException
+		{
+		this(aFile, DEFAULT_SYNC_MILLIS);
+		}
+
+	/** @return the whole file mapped read only, to walk its records in place */
+	private ByteBuffer mapAll()
+		throws IOException
+		{
+		long size = fChannel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(MODULE + " journal too large: " + size);
+		return fChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+	private void map(long aBase, int aSize)
+		throws IOException
+		{
+		if (fBuffer != null)
+			fBuffer.force();
+		fBase = aBase;
+		fBuffer = fChannel.map(FileChannel.MapMode.READ_WRITE, aBase, aSize);
+		}
+
+	/** Forces the records written so far to disk */
+	public void sync()
+		{
+		if (!fDirty)
+			return;
+		synchronized (this)
+			{
+			fDirty = false;
+			if (!fClosed)
+				fBuffer.force();
+			}
+		}
+
+	@Override public synchronized void close()
+		throws IOException
+		{
+		if (fClosed)
+			return;
+		fBuffer.force();
+		fClosed = true;
+		fChannel.close();
+		fFile.close();
+		}
+
+	/**
+	* Rebuilds the orders recorded in this journal and adds the ones that
+	* were still in the list to aOrders, which is normally empty. Orders
+	* whose leg cannot be found are skipped. New orders are numbered after
+	* the replayed ones, which are journaled from here on.
+	* @return the number of orders added to the list
+	*/
+	public int replay(OrderList<OrderTracker> aOrders, LegResolver aResolver)
+		throws IOException
+		{
+		Map<Integer, OrderTracker> listed = new LinkedHashMap<Integer, OrderTracker>();
+		Map<Integer, OrderTracker> all = new HashMap<Integer, OrderTracker>();
+		synchronized (this)
+			{
+			read(listed, all, aResolver);
+			}
+		List<OrderTracker> orders = new ArrayList<OrderTracker>(listed.values());
+		for (OrderTracker ot : orders)
+			ot.addStateListener(this);
+		aOrders.beginBatch();
+		try
+			{
+			for (OrderTracker ot : orders)
+				aOrders.insertInList(ot);
+			}
+		finally { aOrders.endBatch(); }
+		return orders.size();
+		}
+
+	private void read(Map<Integer, OrderTracker> listed,
+		Map<Integer, OrderTracker> all, LegResolver aResolver)
+		throws IOException
+		{
+		ByteBuffer in = mapAll();
+		in.limit((int)(fBase + fBuffer.position()));
+		while (in.remaining() >= 4)
+			{
+			int start = in.position();
+			int length = in.getInt();
+			if (length <= 0)
+				break;
+			byte kind = in.get();
+			int seq = in.getInt();
+			fNextSeq = Math.max(fNextSeq, seq + 1);
+			OrderTracker ot = all.get(seq);
+			switch (kind)
+				{
+				case CREATED:  ot = readCreated(in, aResolver);
+				               if (ot != null)
+				                 {
+				                 ot.fJournalSeq = seq;
+				                 all.put(seq, ot);
+				                 listed.put(seq, ot);
+				                 }
+				               break;
+
+				case STATE:    byte state = in.get();
+				               int id = in.getInt();
+				               int qty = in.getInt();
+				               int filled = in.getInt();
+				               String tif = getString(in);
+				               String status = getString(in);
+				               String whyHeld = getString(in);
+				               if (ot != null)
+				                 ot.restore(state, id, qty, filled, tif, status, whyHeld);
+				               break;
+
+				case MODIFIED: byte type = in.get();
+				               int mqty = in.getInt();
+				               int lmt = in.getInt();
+				               int aux = in.getInt();
+				               String reason = getString(in);
+				               String typeName = (type == Broker.TYPE_OTHER)? getString(in)
+				                               : Broker.ORDER_TYPES[type];
+				               boolean hasStop = in.position() < start + length;
+				               int istop = hasStop? in.getInt() : 0;
+				               if (ot != null)
+				                 {
+				                 ot.modify(typeName, mqty, lmt, aux);
+				                 ot.setReason(reason);
+				                 if (hasStop)
+				                   ot.setInitialStop(istop);
+				                 }
+				               break;
+
+				case REMOVED:  listed.remove(seq);
+				               break;
+
+				case CLEARED:  listed.clear();
+				               break;
+				}
+			in.position(start + length);
+			}
+		}
+
+	private OrderTracker readCreated(ByteBuffer in, LegResolver aResolver)
+		{
+		long time = in.getLong();
+		int id = in.getInt();
+		byte type = in.get();
+		byte act = in.get();
+		int qty = in.getInt();
+		int lmt = in.getInt();
+		int aux = in.getInt();
+		int istop = in.getInt();
+		String underlying = getString(in);
+		String optDesc = getString(in);
+		String reason = getString(in);
+		String typeName = (type == Broker.TYPE_OTHER)? getString(in) : null;
+		PositionLeg leg = aResolver.find(underlying, optDesc);
+		if (leg == null)
+			{
+			SBLog.format(MODULE + "replay: leg not found %s %s", underlying, optDesc);
+			return null;
+			}
+		OrderTracker it = new OrderTracker(id, leg, type, act, qty, lmt, aux, istop, reason, time);
+		if (type == Broker.TYPE_OTHER)
+			it.setType(typeName);
+		return it;
+		}
+
+	/**
+	* Journals a new order in the list, and listens for its state changes
+	*/
+	public void created(OrderTracker aOrder)
+		{
+		synchronized (this)
+			{
+			if (aOrder.fJournalSeq != 0 || fClosed)
+				return;
+			aOrder.fJournalSeq = fNextSeq++;
+			PositionLeg leg = aOrder.leg();
+			byte[] underlying = utf8(leg.getUnderlying());
+			byte[] optDesc = utf8(leg.getOptDesc());
+			byte[] reason = utf8(aOrder.getReason());
+			boolean other = (aOrder.typeCode() == Broker.TYPE_OTHER);
+			byte[] typeName = other? utf8(aOrder.type()) : null;
+			int start = begin(CREATED, aOrder, 30 + size(underlying) + size(optDesc)
+			                  + size(reason) + (other? size(typeName) : 0));
+			fBuffer.putLong(aOrder.time());
+			fBuffer.putInt(aOrder.id());
+			fBuffer.put(aOrder.typeCode());
+			fBuffer.put(aOrder.act());
+			fBuffer.putInt(aOrder.qty());
+			fBuffer.putInt(aOrder.getLmt());
+			fBuffer.putInt(aOrder.getAux());
+			fBuffer.putInt(aOrder.getInitialStop());
+			put(underlying);
+			put(optDesc);
+			put(reason);
+			if (other)
+				put(typeName);
+			end(start);
+			}
+		aOrder.addStateListener(this);
+		stateChanged(aOrder, aOrder.getState(), aOrder.getState());
+		}
+
+	/**
+	* Journals the order's state as it is now, under the journal's lock,
+	* not aTo: transitions that race each other to the journal may arrive
+	* out of order, and the last record written must be the latest state
+	*/
+	@Override public synchronized void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		if (aOrder.fJournalSeq == 0 || fClosed)
+			return;
+		byte[] tif = utf8(aOrder.getTIF());
+		byte[] status = utf8(aOrder.statusOnly());
+		byte[] whyHeld = utf8(aOrder.whyHeld());
+		int start = begin(STATE, aOrder, 13 + size(tif) + size(status) + size(whyHeld));
+		fBuffer.put(aOrder.getState());
+		fBuffer.putInt(aOrder.id());
+		fBuffer.putInt(aOrder.qty());
+		fBuffer.putInt(aOrder.getFilled());
+		put(tif);
+		put(status);
+		put(whyHeld);
+		end(start);
+		}
+
+	@Override public void orderModified(OrderTracker aOrder) { modified(aOrder); }
+
+	/**
+	* Journals a change to the order's type, quantity, prices, initial stop
+	* or reason: called by orderModified() for the orders journaled
+	*/
+	public synchronized void modified(OrderTracker aOrder)
+		{
+		if (aOrder.fJournalSeq == 0 || fClosed)
+			return;
+		byte[] reason = utf8(aOrder.getReason());
+		boolean other = (aOrder.typeCode() == Broker.TYPE_OTHER);
+		byte[] typeName = other? utf8(aOrder.type()) : null;
+		int start = begin(MODIFIED, aOrder, 17 + size(reason) + (other? size(typeName) : 0));
+		fBuffer.put(aOrder.typeCode());
+		fBuffer.putInt(aOrder.qty());
+		fBuffer.putInt(aOrder.getLmt());
+		fBuffer.putInt(aOrder.getAux());
+		put(reason);
+		if (other)
+			put(typeName);
+		fBuffer.putInt(aOrder.getInitialStop());
+		end(start);
+		}
+
+	/**
+	* Journals the removal of the order from the list, and stops listening
+	* to it
+	*/
+	public void removed(OrderTracker aOrder)
+		{
+		aOrder.removeStateListener(this);
+		synchronized (this)
+			{
+			if (aOrder.fJournalSeq == 0 || fClosed)
+				return;
+			end(begin(REMOVED, aOrder, 0));
+			}
+		}
+
+	/** Journals the clearing of the list for a new run */
+	public synchronized void cleared()
+		{
+		if (fClosed)
+			return;
+		ensure(13); // leave room for a zero length to mark the end
+		int start = fBuffer.position();
+		fBuffer.putInt(0);
+		fBuffer.put(CLEARED);
+		fBuffer.putInt(0);
+		end(start);
+		}
+
+	/**
+	* Starts a record of 9 + aBody bytes: reserves room for the length,
+	* written by end(), and makes sure the whole record fits in the mapped
+	* chunk
+	*/
+	private int begin(byte aKind, OrderTracker aOrder, int aBody)
+		{
+		ensure(9 + aBody + 4);
+		int start = fBuffer.position();
+		fBuffer.putInt(0);
+		fBuffer.put(aKind);
+		fBuffer.putInt(aOrder.fJournalSeq);
+		return start;
+		}
+
+	private void end(int aStart)
+		{
+		fBuffer.putInt(aStart, fBuffer.position() - aStart);
+		fDirty = true;
+		}
+
+	/** Maps the next chunk of the file if fewer than aBytes remain */
+	private void ensure(int aBytes)
+		{
+		if (fBuffer.remaining() >= aBytes)
+			return;
+		try { map(fBase + fBuffer.position(), Math.max(CHUNK, 2 * aBytes)); }
+		catch (IOException e) { throw new IllegalStateException(MODULE + e, e); }
+		}
+
+	private static byte[] utf8(String s)
+		{
+		if (s == null)
+			return null;
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		return (bytes.length <= Short.MAX_VALUE)? bytes
+		     : utf8(s.substring(0, s.length() / 2));
+		}
+
+	private static int size(byte[] aString)
+		{
+		return 2 + ((aString == null)? 0 : aString.length);
+		}
+
+	private void put(byte[] aString)
+		{
+		if (aString == null)
+			{
+			fBuffer.putShort((short)-1);
+			return;
+			}
+		fBuffer.putShort((short)aString.length);
+		fBuffer.put(aString);
+		}
+
+	private static String getString(ByteBuffer in)
+		{
+		int length = in.getShort();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
@@ -0,0 +1,90 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderLatency.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderLatency: How long orders spend in each state, kept as one
+* LatencyHistogram per legal transition. The duration recorded for a
+* transition from A to B is the time the order spent in A: so SOFT to
+* SENT is the time a soft order waited to trigger, SENT to OPEN is the
+* broker's ack time and CAN_REQ to CANCELED is how long a cancel took to
+* be confirmed.
+*
+* Every OrderTracker reports its transitions to the OrderLatency of its
+* BrokerSession: ALL_ORDERS for orders created outside of any session,
+* which is what Broker.getOrderLatency() returns unless a broker keeps its
+* own. An instance may also be added as a state listener to a chosen set
+* of orders, for instance those of one strategy.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static com.wormtrader.broker.OrderTracker.STATE_DESC;
+
+public final class OrderLatency
+	implements OrderStateListener
+	{
+	private static final int STATES = STATE_DESC.length;
+
+	/** Fed by the orders of the GLOBAL BrokerSession while enabled */
+	public static final OrderLatency ALL_ORDERS = new OrderLatency();
+
+	private final LatencyHistogram[] fHistograms
+	                                 = new LatencyHistogram[STATES * STATES];
+	private volatile boolean fEnabled = true;
+
+	public OrderLatency()
+		{
+		for (byte from = 0; from < STATES; from++)
+			for (byte to = 0; to < STATES; to++)
+				if (OrderTracker.isLegal(from, to))
+					fHistograms[from * STATES + to] = new LatencyHistogram();
+		}
+
+	public final boolean isEnabled() { return fEnabled; }
+	public final void setEnabled(boolean on) { fEnabled = on; }
+
+	/** Records aNanos spent in state aFrom before moving to aTo */
+	public final void record(byte aFrom, byte aTo, long aNanos)
+		{
+		if (!fEnabled)
+			return;
+		LatencyHistogram histogram = fHistograms[aFrom * STATES + aTo];
+		if (histogram != null)
+			histogram.record(aNanos);
+		}
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		record(aFrom, aTo, aOrder.getDwellNanos());
+		}
+
+	/**
+	* @return the histogram for the transition, or null if the transition
+	* is not legal
+	*/
+	public final LatencyHistogram get(byte aFrom, byte aTo)
+		{
+		return fHistograms[aFrom * STATES + aTo];
+		}
+
+	public final void reset()
+		{
+		for (LatencyHistogram histogram : fHistograms)
+			if (histogram != null)
+				histogram.reset();
+		}
+
+	/** @return one line per transition seen, for the log */
+	@Override public String toString()
+		{
+		StringBuilder it = new StringBuilder();
+		for (int i = 0; i < fHistograms.length; i++)
+			if (fHistograms[i] != null && fHistograms[i].count() > 0)
+				it.append(STATE_DESC[i / STATES]).append("->")
+				  .append(STATE_DESC[i % STATES]).append(": ")
+				  .append(fHistograms[i]).append('\n');
+		return it.toString();
+		}
+	}
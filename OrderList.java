@@ -4,23 +4,39 @@ package com.wormtrader.broker;
 * Copyright  2012-2013 by Richard T. Salamone, Jr. All rights reserved.
 *
 * OrderList: A list of orders maintained by a Broker object that
-* extends AbstractTableModel for display in a JTable.
+* extends AbstractTableModel for display in a JTable. When a publish rate
+* is set the table sees a snapshot of the rows, refreshed on the EDT each
+* time the changes made by the broker's threads are published.
 *
 * @version 1.00
 * @author Rick Salamone
 * 20120509 rts created by generalizing ATOrders
 * 20130307 rts attempts to merge duplicate (soft) orders
+* 20261018 agent binary search for row placement & hash index on broker id
+* 20261018 agent coalesced table events published on the EDT
+* 20261018 agent getAll() read only, row reads locked when not coalescing
+* 20261018 agent added addAll & cancelAll batch operations
+* 20261018 agent optional OrderJournal of the orders and their changes
+* 20261018 agent optional OrderPool recycles removed FILLED/CANCELED orders
+* 20261018 agent id index is an IntMap: no boxing or entry per order
+* 20261018 agent soft orders netted through a NetIndex on their terms, re-keyed on modify
+* 20261018 agent OrderListListeners told of each change, e.g. by OrderView
+* 20261018 agent listens to its orders: each change updates the row & listeners
+* 20261018 agent cells cached per order until its version changes
 *******************************************************/
 import com.wormtrader.positions.PositionLeg;
 import com.shanebow.ui.table.DollarCellRenderer;
 import com.shanebow.ui.table.SideCellRenderer;
 import com.shanebow.util.SBFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
-import javax.swing.table.AbstractTableModel;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 public class OrderList<T extends OrderTracker>
-	extends AbstractTableModel
+	extends CoalescingTableModel
 	{
 	public static final String MODULE="OrderList.";
 	public static final String FILLED="Filled";
@@ -64,15 +80,188 @@ public class OrderList<T extends OrderTracker>
 			}
 		}
 
-	private List<T> fOrders = new Vector<T>();
-public List<T> getAll() { return fOrders; }
+	/**
+	* The rows, sorted in descending order by leg then by limit price, with
+	* orders at the same leg and price in the order they were added. All
+	* changes are made while holding this OrderList's lock.
+	*/
+	private final List<T> fOrders = new ArrayList<T>();
+	private final List<T> fReadOnly = Collections.unmodifiableList(fOrders);
+
+	/** Index of the orders that have been sent to the broker by their id */
+	private final IntMap<T> fByID = new IntMap<T>();
+
+	/**
+	* The soft orders in the list by the terms on which they merge, so that
+	* a new soft order finds the one it nets with in O(1). An order is
+	* re-keyed each time its terms are modified and dropped once it is no
+	* longer soft, as fRowListener hears of it.
+	*/
+	private final NetIndex<T> fSoftIndex = new NetIndex<T>();
+
+	private volatile OrderJournal fJournal;
+
+	/**
+	* Journals the orders added to and removed from this list, and every
+	* change of their state, from now on. See OrderJournal.replay().
+	*/
+	public final void setJournal(OrderJournal aJournal) { fJournal = aJournal; }
+	public final OrderJournal getJournal() { return fJournal; }
+
+	private volatile OrderPool fPool;
+
+	/**
+	* Releases the FILLED and CANCELED orders removed from this list to the
+	* pool from now on: the caller of remove() must then be done with the
+	* order it gets back. See OrderPool.
+	*/
+	public final void setPool(OrderPool aPool) { fPool = aPool; }
+	public final OrderPool getPool() { return fPool; }
+
+	private final List<OrderListListener<? super T>> fListeners
+	                  = new CopyOnWriteArrayList<OrderListListener<? super T>>();
+
+	/**
+	* Listens to each order while it is in the list, so that a transition
+	* or modification updates its row and the OrderListListeners without
+	* the broker calling updated(): a modification that moves the order
+	* out of the row order also moves its row.
+	*/
+	private final OrderStateListener fRowListener = new OrderStateListener()
+		{
+		@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+			{
+			rowChanged(aOrder, false);
+			}
+
+		@Override public void orderModified(OrderTracker aOrder)
+			{
+			rowChanged(aOrder, true);
+			}
+		};
+
+	@SuppressWarnings("unchecked")
+	private synchronized void rowChanged(OrderTracker aOrder, boolean aModified)
+		{
+		T order = (T)aOrder;
+		int r = rowOf(order);
+		if (r < 0)
+			return;
+		if (aModified || !order.isSoft())
+			fSoftIndex.remove(order);
+		if (aModified && order.isSoft())
+			fSoftIndex.add(order); // under its new terms
+		if (aModified && !inPlace(r))
+			{
+			fOrders.remove(r);
+			fireTableRowsDeleted(r, r);
+			r = upperBound(order.leg(), order.getLmt());
+			fOrders.add(r, order);
+			fireTableRowsInserted(r, r);
+			}
+		else
+			fireTableRowsUpdated(r, r);
+		fireChanged(order);
+		}
+
+	/** @return true if the row is still in order with its neighbours */
+	private boolean inPlace(int r)
+		{
+		T order = fOrders.get(r);
+		PositionLeg leg = order.leg();
+		int lmt = order.getLmt();
+		return (r == 0 || !isAfter(fOrders.get(r - 1), leg, lmt))
+		    && (r == fOrders.size() - 1 || !isBefore(fOrders.get(r + 1), leg, lmt));
+		}
+
+	/**
+	* The listener is told of every order added, removed or updated from
+	* now on, while this list's lock is held.
+	*/
+	public final void addOrderListListener(OrderListListener<? super T> aListener)
+		{
+		fListeners.add(aListener);
+		}
+
+	public final void removeOrderListListener(OrderListListener<? super T> aListener)
+		{
+		fListeners.remove(aListener);
+		}
+
+	// indexed loops: no iterator per change
+	private void fireAdded(T aOrder)
+		{
+		for (int i = 0; i < fListeners.size(); i++)
+			fListeners.get(i).orderAdded(aOrder);
+		}
+
+	private void fireRemoved(T aOrder)
+		{
+		for (int i = 0; i < fListeners.size(); i++)
+			fListeners.get(i).orderRemoved(aOrder);
+		}
+
+	private void fireChanged(T aOrder)
+		{
+		for (int i = 0; i < fListeners.size(); i++)
+			fListeners.get(i).orderChanged(aOrder);
+		}
+
+	/**
+	* @return a read only view of the list of orders: synchronize on this
+	* OrderList while iterating over it
+	*/
+public List<T> getAll() { return fReadOnly; }
+
+	@Override protected final int currentRowCount() { return fOrders.size(); }
+	@Override protected final Object currentRow(int r) { return fOrders.get(r); }
+
+	/**
+	* @return the order displayed in the specified table row, which is
+	* not necessarily getRow(r) while changes are waiting to be published
+	*/
+	@SuppressWarnings("unchecked")
+	public final T getDisplayedRow(int r)
+		{
+		if (!isCoalescing())
+			synchronized (this) { return (r < fOrders.size())? fOrders.get(r) : null; }
+		return (T)viewRow(r);
+		}
 
 	public Object getValueAt(int r, int c)
 		{
 T order = null;
-		try { order = fOrders.get(r); }
-		catch (Exception e) { return e.toString(); }
+		try { order = getDisplayedRow(r); }
+		catch (Exception e) { return ""; } // row removed since the table asked
 if (order == null) return "";
+		return valueOf(order, c);
+		}
+
+	/**
+	* @return the order's value for the specified column: shared with
+	* OrderView. The cells are formatted once per change of the order, so
+	* repainting an unchanged row allocates nothing. Called on the EDT.
+	*/
+	static Object valueOf(OrderTracker order, int c)
+		{
+		if (c < 0 || c >= columnNames.length)
+			return null;
+		int version = order.getVersion();
+		Object[] cells = order.fCells;
+		if (cells == null || order.fCellsVersion != version)
+			{
+			if (cells == null)
+				cells = new Object[columnNames.length];
+			for (int col = 0; col < cells.length; col++)
+				cells[col] = format(order, col);
+			order.fCells = cells;
+			order.fCellsVersion = version;
+			}
+		return cells[c];
+		}
+
+	private static Object format(OrderTracker order, int c)
+		{
 		switch (c)
 			{
 			case COL_STATE: 
@@ -121,74 +310,321 @@ catch(Exception e) { return "" + order.getState(); }
 
 	public final int    getColumnCount() { return columnNames.length; }
 	public final String getColumnName(int c) { return columnNames[c]; }
-	public final int    getRowCount()   { return fOrders.size(); }
-	public final T      getRow(int row) { return fOrders.get(row); }
+	public final int    getRowCount()
+		{
+		if (isCoalescing())
+			return viewSize();
+		synchronized (this) { return fOrders.size(); }
+		}
+	public final synchronized T getRow(int row) { return fOrders.get(row); }
 
-	public final int size() { return fOrders.size(); }
-	public final T remove(T aLegOrder)
+	public final synchronized int size() { return fOrders.size(); }
+	public final synchronized T remove(T aLegOrder)
 		{
-		for ( int r = fOrders.size(); r > 0; )
-			if ( fOrders.get(--r).equals(aLegOrder))
-				return removeRow(r);
-		return null;
+		int r = indexOf(aLegOrder);
+		return (r < 0)? null : removeRow(r);
 		}
 
-	public final T removeRow(int r)
+	public final synchronized T removeRow(int r)
 		{
 		T it = fOrders.remove(r);
+		it.removeStateListener(fRowListener);
+		unindex(it);
+		fSoftIndex.remove(it);
+		OrderJournal journal = fJournal;
+		if (journal != null)
+			journal.removed(it);
 		fireTableRowsDeleted(r,r);
+		fireRemoved(it);
+		OrderPool pool = fPool;
+		if (pool != null)
+			pool.release(it);
 		return it;
 		}
 
 	/** clear() is required by the simulator for new runs, restart */
-	public final void clear()
+	public final synchronized void clear()
 		{
 		int lastRow = fOrders.size() - 1;
+		fByID.clear();
+		fSoftIndex.clear();
+		OrderJournal journal = fJournal;
+		if (journal != null)
+			{
+			journal.cleared();
+			for (T it : fOrders)
+				it.removeStateListener(journal);
+			}
+		for (int i = 0; i < fListeners.size(); i++)
+			fListeners.get(i).listCleared();
 		if (lastRow < 0) return;
+		for (T it : fOrders)
+			it.removeStateListener(fRowListener);
+		OrderPool pool = fPool;
+		if (pool != null)
+			for (T it : fOrders)
+				pool.release(it);
 		fOrders.clear();
 		fireTableRowsDeleted(0,lastRow);
 		}
 
-	public final boolean add(T aLegOrder)
+	public final synchronized boolean add(T aLegOrder)
 		{
-		if (fOrders.contains(aLegOrder))
+		if (aLegOrder.isSent() && fByID.containsKey(aLegOrder.id()))
+			return false; // duplicate entry sent by broker
+		int r = rowOf(aLegOrder, false);
+		if (r >= 0)
+			{
+			index(fOrders.get(r)); // a soft order that has since been sent
 			return false;
+			}
 		insertInList(aLegOrder);
 		return true;
 		}
 
 	/**
-	* Inserts a OrderTracker object into the list sorted by symbol
-	* Tries to merge orders that are same type and prices which may
-	* result in an order being updated or even deleted.
-	*/
-	protected final void insertInList(T aLegOrder)
-		{
-		int row;
-		int size = fOrders.size();		      // loop thru rows to insert new
-		for ( row = 0; row < size; row++ ) // order sorted by symbol and ignore
-			{												    // duplicate entries sent by broker
-			OrderTracker test = fOrders.get(row);
-			int comparison = test.leg().compareTo(aLegOrder.leg());
-			if ( comparison < 0 )
-				break;
-			if ( comparison == 0 ) // same leg
+	* Adds several orders with a single table update
+	* @return the number of orders added
+	*/
+	public final int addAll(Collection<? extends T> aLegOrders)
+		{
+		int added = 0;
+		beginBatch();
+		try
+			{
+			synchronized (this)
 				{
-				int lmt = aLegOrder.getLmt();
-				if ( aLegOrder.getLmt() > test.getLmt())
-					break;
-				if (test.merge(aLegOrder)) // duplicate price, type, etc
+				for (T order : aLegOrders)
+					if (add(order))
+						++added;
+				}
+			}
+		finally { endBatch(); }
+		return added;
+		}
+
+	/**
+	* Cancels every order accepted by the filter in one pass over the list:
+	* soft orders are cancelled, removed and dropped by their legs, while
+	* the orders at the broker are sent to it as one cancelOrders() batch.
+	* The table sees a single update.
+	* @return the number of orders cancelled or with a cancel requested
+	*/
+	public final int cancelAll(Predicate<? super T> aFilter, Broker aBroker)
+		{
+		List<T> soft = new ArrayList<T>();
+		List<T> hard = new ArrayList<T>();
+		beginBatch();
+		try
+			{
+			synchronized (this)
+				{
+				for (int r = fOrders.size(); r-- > 0; )
 					{
-					if (test.qty() == 0)
-						removeRow(row);
-					else
-						fireTableCellUpdated(row, COL_QTY);
-					return;
+					T order = fOrders.get(r);
+					if (!order.isCancelable() || !aFilter.test(order))
+						continue;
+					switch (order.claimCancel())
+						{
+						case OrderTracker.CANCELED: soft.add(order);
+						                            removeRow(r);
+						                            break;
+						case OrderTracker.CAN_REQ:  hard.add(order); // row updated as listener
+						                            break;
+						}
 					}
-				// continue cause price is less or equal and not duplicate
 				}
+			for (T order : soft)
+				order.leg().remove(order);
+			if (!hard.isEmpty())
+				aBroker.cancelOrders(hard);
+			}
+		finally { endBatch(); }
+		return soft.size() + hard.size();
+		}
+
+	/**
+	* @return the order that was sent to the broker with the specified id,
+	* or null if it is not in the list
+	*/
+	public final synchronized T find(int aHardID)
+		{
+		return fByID.get(aHardID);
+		}
+
+	/**
+	* @return the row of the specified order using the same notion of
+	* equality as OrderTracker.equals(): the broker id for sent orders,
+	* identity for soft orders, or -1 if the order is not in the list
+	*/
+	public final synchronized int indexOf(T aLegOrder)
+		{
+		if (aLegOrder.isSent())
+			{
+			T it = fByID.get(aLegOrder.id());
+			if (it != null)
+				return rowOf(it);
+			}
+		return rowOf(aLegOrder);
+		}
+
+	/**
+	* Brokers that assign an order's id after adding it to the list must
+	* call this so the order can be found by its id.
+	*/
+	public final synchronized void reindex(T aLegOrder)
+		{
+		fByID.removeValue(aLegOrder);
+		if (rowOf(aLegOrder) >= 0)
+			index(aLegOrder);
+		}
+
+	/**
+	* Notifies the table that the specified order's state, fill or status
+	* has changed
+	*/
+	public final synchronized void updated(T aLegOrder)
+		{
+		int r = indexOf(aLegOrder);
+		if (r < 0)
+			return;
+		fireTableRowsUpdated(r, r);
+		fireChanged(fOrders.get(r));
+		}
+
+	private void index(T aLegOrder)
+		{
+		if (aLegOrder.isSent())
+			fByID.put(aLegOrder.id(), aLegOrder);
+		}
+
+	private void unindex(T aLegOrder)
+		{
+		if (aLegOrder.isSent() && fByID.get(aLegOrder.id()) == aLegOrder)
+			fByID.remove(aLegOrder.id());
+		}
+
+	/**
+	* @return true if the row belongs before an order for the specified leg
+	* and price: rows are in descending order by leg then limit
+	*/
+	private static boolean isBefore(OrderTracker aRow, PositionLeg aLeg, int aLmt)
+		{
+		int comparison = aRow.leg().compareTo(aLeg);
+		return (comparison > 0)
+		    || (comparison == 0 && aRow.getLmt() > aLmt);
+		}
+
+	private static boolean isAfter(OrderTracker aRow, PositionLeg aLeg, int aLmt)
+		{
+		int comparison = aRow.leg().compareTo(aLeg);
+		return (comparison < 0)
+		    || (comparison == 0 && aRow.getLmt() < aLmt);
+		}
+
+	/** @return the first row that is not before the leg and price */
+	private int lowerBound(PositionLeg aLeg, int aLmt)
+		{
+		int lo = 0;
+		int hi = fOrders.size();
+		while (lo < hi)
+			{
+			int mid = (lo + hi) >>> 1;
+			if (isBefore(fOrders.get(mid), aLeg, aLmt))
+				lo = mid + 1;
+			else
+				hi = mid;
+			}
+		return lo;
+		}
+
+	/** @return the first row that is after the leg and price */
+	private int upperBound(PositionLeg aLeg, int aLmt)
+		{
+		int lo = 0;
+		int hi = fOrders.size();
+		while (lo < hi)
+			{
+			int mid = (lo + hi) >>> 1;
+			if (isAfter(fOrders.get(mid), aLeg, aLmt))
+				hi = mid;
+			else
+				lo = mid + 1;
+			}
+		return lo;
+		}
+
+	private int rowOf(T aLegOrder) { return rowOf(aLegOrder, true); }
+
+	/**
+	* @return the row holding this very order, or -1: searches the rows at
+	* the order's leg and price, then if aScanAll, all rows in case its
+	* price was modified after it was added
+	*/
+	private int rowOf(T aLegOrder, boolean aScanAll)
+		{
+		PositionLeg leg = aLegOrder.leg();
+		int lmt = aLegOrder.getLmt();
+		for (int r = lowerBound(leg, lmt), end = upperBound(leg, lmt); r < end; r++)
+			if (fOrders.get(r) == aLegOrder)
+				return r;
+		if (aScanAll)
+			for (int r = fOrders.size(); r-- > 0; )
+				if (fOrders.get(r) == aLegOrder)
+					return r;
+		return -1;
+		}
+
+	/**
+	* Inserts a OrderTracker object into the list sorted by symbol
+	* Tries to merge orders that are same type and prices which may
+	* result in an order being updated or even deleted: a soft order finds
+	* the soft order with the same terms through the netting index, and a
+	* buy and sell that offset each other exactly are both cancelled.
+	*/
+	protected final synchronized void insertInList(T aLegOrder)
+		{
+		if (aLegOrder.isSoft() && netted(aLegOrder))
+			return;
+		PositionLeg leg = aLegOrder.leg();
+		int end = upperBound(leg, aLegOrder.getLmt());
+		fOrders.add(end,aLegOrder);
+		aLegOrder.addStateListener(fRowListener);
+		index(aLegOrder);
+		if (aLegOrder.isSoft())
+			fSoftIndex.add(aLegOrder);
+		OrderJournal journal = fJournal;
+		if (journal != null)
+			journal.created(aLegOrder);
+		fireTableRowsInserted(end, end);
+		fireAdded(aLegOrder);
+		}
+
+	/**
+	* Merges a soft order into the soft order with the same terms, if any.
+	* A buy and sell that offset each other are both cancelled, and
+	* dropped by their leg.
+	* @return true if merged, so the order is not to be added
+	*/
+	private boolean netted(T aLegOrder)
+		{
+		T test = fSoftIndex.find(aLegOrder);
+		if (test == null)
+			return false;
+		int row = rowOf(test, false);
+		if (row < 0 || !test.merge(aLegOrder)) // sent by another thread meanwhile
+			{
+			fSoftIndex.remove(test);
+			return false;
+			}
+		if (test.qty() == 0) // offsetting orders
+			{
+			test.compareAndSetState(test.getState(), OrderTracker.CANCELED);
+			aLegOrder.compareAndSetState(aLegOrder.getState(), OrderTracker.CANCELED);
+			removeRow(row);
+			test.leg().remove(test);
+			aLegOrder.leg().remove(aLegOrder);
 			}
-		fOrders.add(row,aLegOrder);
-		fireTableRowsInserted(row, row);
+		return true; // else the merge updated the row through fRowListener
 		}
 	}
@@ -0,0 +1,29 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderListListener.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderListListener: Notified of each order added to, removed from or
+* changed in an OrderList, so that other structures such as an OrderView
+* can be kept up to date one order at a time. Called while the list's
+* lock is held, on the thread making the change: implementations must be
+* quick and must not call back into the list from another thread.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+
+public interface OrderListListener<T extends OrderTracker>
+	{
+	/** A new row: not called for an order merged into another */
+	public void orderAdded(T aOrder);
+
+	public void orderRemoved(T aOrder);
+
+	/** The order's state, quantity, fill or status may have changed */
+	public void orderChanged(T aOrder);
+
+	/** Every order was removed at once */
+	public void listCleared();
+	}
@@ -0,0 +1,234 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderLog.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderLog: Order tracing that is cheap enough to leave on while trading.
+* The calling thread only copies a format string reference and a few long
+* arguments into a slot of a fixed size, lock free ring; a daemon thread
+* drains the ring and does the formatting through SBLog. Nothing is
+* formatted, boxed or allocated by the caller, and a caller is never
+* blocked: if the ring is full the record is dropped and counted.
+*
+* An order is logged as it is when the call is made: its id, quantity,
+* state, filled quantity and price are copied into the slot as longs,
+* and only its leg is kept by reference, so a later change to the order,
+* or its recycling by an OrderPool, does not change the record. Text is
+* kept as the String given.
+*
+* The format must be a constant (it is kept by reference until drained)
+* and its conversions must match the arguments: %d for a long, %s for an
+* order or text, which follow the longs.
+*
+* Callers check isEnabled() first, as OrderTracker.log() does, so that a
+* disabled trace costs a volatile read. The drain thread sleeps until a
+* record is written.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.shanebow.util.SBFormat;
+import com.shanebow.util.SBLog;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public final class OrderLog
+	{
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/** The log used by orders outside of any BrokerSession */
+	public static final OrderLog DEFAULT = new OrderLog(DEFAULT_CAPACITY);
+
+	/** Record shapes: number of longs, plus an order and/or text after them */
+	private static final byte ORDER = (byte)0x10;
+	private static final byte VARARGS = (byte)0x20;
+	private static final byte TEXT = (byte)0x40;
+
+	/** Longs per slot: three arguments, then the order's */
+	private static final int LONGS = 8;
+	private static final int ID = 3;
+	private static final int QTY = 4;
+	private static final int STATE = 5;
+	private static final int FILLED = 6;
+	private static final int PRICE = 7;
+
+	private final int          fMask;
+	private final AtomicLongArray fSeqs; // slot is free to write at pos, full at pos + 1
+	private final String[]     fFormats;
+	private final Object[]     fObjects; // the order's leg, or the varargs
+	private final String[]     fTexts;
+	private final long[]       fLongs;   // LONGS per slot
+	private final byte[]       fShapes;
+	private final AtomicLong   fHead = new AtomicLong(); // next position to write
+	private long               fTail;                    // next position to drain
+	private final AtomicLong   fDropped = new AtomicLong();
+	private volatile boolean   fEnabled;
+	private volatile Thread    fDrainer;
+	private volatile boolean   fSleeping; // the drainer is parked, or about to be
+
+	/** @param aCapacity number of records held, rounded up to a power of 2 */
+	public OrderLog(int aCapacity)
+		{
+		int capacity = Integer.highestOneBit(Math.max(2, aCapacity - 1)) << 1;
+		fMask = capacity - 1;
+		fSeqs = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			fSeqs.set(i, i);
+		fFormats = new String[capacity];
+		fObjects = new Object[capacity];
+		fTexts = new String[capacity];
+		fLongs = new long[LONGS * capacity];
+		fShapes = new byte[capacity];
+		}
+
+	public boolean isEnabled() { return fEnabled; }
+	public void setEnabled(boolean on) { fEnabled = on; }
+
+	/** @return the number of records dropped because the ring was full */
+	public long getDropped() { return fDropped.get(); }
+
+	public void log(String aFormat) { put(aFormat, (byte)0, 0, 0, 0, null, null, null); }
+	public void log(String aFormat, long a) { put(aFormat, (byte)1, a, 0, 0, null, null, null); }
+	public void log(String aFormat, long a, long b) { put(aFormat, (byte)2, a, b, 0, null, null, null); }
+	public void log(String aFormat, long a, long b, long c) { put(aFormat, (byte)3, a, b, c, null, null, null); }
+	public void log(String aFormat, OrderTracker o) { put(aFormat, ORDER, 0, 0, 0, o, null, null); }
+	public void log(String aFormat, long a, OrderTracker o) { put(aFormat, (byte)(ORDER|1), a, 0, 0, o, null, null); }
+	public void log(String aFormat, long a, long b, OrderTracker o) { put(aFormat, (byte)(ORDER|2), a, b, 0, o, null, null); }
+	public void log(String aFormat, String aText) { put(aFormat, TEXT, 0, 0, 0, null, aText, null); }
+	public void log(String aFormat, OrderTracker o, String aText) { put(aFormat, (byte)(ORDER|TEXT), 0, 0, 0, o, aText, null); }
+
+	/**
+	* For legacy callers: the array is kept as is until drained, so its
+	* elements must not change, as boxed numbers and strings do not
+	*/
+	public void logArgs(String aFormat, Object[] aArgs) { put(aFormat, VARARGS, 0, 0, 0, null, null, aArgs); }
+
+	private void put(String aFormat, byte aShape, long a, long b, long c,
+		OrderTracker aOrder, String aText, Object[] aArgs)
+		{
+		long pos;
+		int slot;
+		for (;;)
+			{
+			pos = fHead.get();
+			slot = (int)pos & fMask;
+			long seq = fSeqs.get(slot);
+			if (seq < pos) // not drained yet: the ring is full
+				{
+				fDropped.incrementAndGet();
+				return;
+				}
+			if (seq == pos && fHead.compareAndSet(pos, pos + 1))
+				break;
+			}
+		int at = LONGS * slot;
+		fFormats[slot] = aFormat;
+		fTexts[slot] = aText;
+		fLongs[at] = a;
+		fLongs[at + 1] = b;
+		fLongs[at + 2] = c;
+		if (aOrder != null)
+			{
+			fObjects[slot] = aOrder.leg();
+			fLongs[at + ID] = aOrder.id();
+			fLongs[at + QTY] = aOrder.qty();
+			fLongs[at + STATE] = aOrder.getState();
+			fLongs[at + FILLED] = aOrder.getFilled();
+			fLongs[at + PRICE] = aOrder.getLmt();
+			}
+		else
+			fObjects[slot] = aArgs;
+		fShapes[slot] = aShape;
+		fSeqs.set(slot, pos + 1); // publish, ordered before reading fSleeping
+		Thread drainer = fDrainer;
+		if (drainer == null)
+			startDrainer();
+		else if (fSleeping)
+			LockSupport.unpark(drainer);
+		}
+
+	private synchronized void startDrainer()
+		{
+		if (fDrainer != null)
+			return;
+		Thread drainer = new Thread(new Runnable()
+			{
+			@Override public void run()
+				{
+				for (;;)
+					{
+					if (drain() > 0)
+						continue;
+					fSleeping = true; // then look again: a writer that missed
+					if (!hasWork())   // the flag has published its record
+						LockSupport.park(OrderLog.this);
+					fSleeping = false;
+					}
+				}
+			}, "OrderLog");
+		drainer.setDaemon(true);
+		drainer.start();
+		fDrainer = drainer;
+		}
+
+	/** @return true if the next record to drain has been written */
+	private synchronized boolean hasWork()
+		{
+		return fSeqs.get((int)fTail & fMask) == fTail + 1;
+		}
+
+	/**
+	* Formats the records written so far: called by the drain thread, or by
+	* anyone wanting the log up to date, for instance at shutdown
+	* @return the number of records formatted
+	*/
+	public synchronized int drain()
+		{
+		int count = 0;
+		for (;;)
+			{
+			int slot = (int)fTail & fMask;
+			if (fSeqs.get(slot) != fTail + 1)
+				return count;
+			String format = fFormats[slot];
+			Object[] args = args(slot);
+			fFormats[slot] = null;
+			fObjects[slot] = null;
+			fTexts[slot] = null;
+			fSeqs.lazySet(slot, fTail + fMask + 1); // free for the next lap
+			++fTail;
+			++count;
+			try { SBLog.format(format, args); }
+			catch (RuntimeException e) { SBLog.format("OrderLog bad format '%s': %s", format, e); }
+			}
+		}
+
+	private Object[] args(int slot)
+		{
+		byte shape = fShapes[slot];
+		if (shape == VARARGS)
+			return (Object[])fObjects[slot];
+		int at = LONGS * slot;
+		int longs = shape & 0x0F;
+		boolean order = (shape & ORDER) != 0;
+		boolean text = (shape & TEXT) != 0;
+		Object[] args = new Object[longs + (order? 1 : 0) + (text? 1 : 0)];
+		int n = 0;
+		for (; n < longs; n++)
+			args[n] = fLongs[at + n];
+		if (order)
+			{
+			long state = fLongs[at + STATE];
+			args[n++] = String.format("Order(%d) %s %d/%d %s @%s", fLongs[at + ID],
+				(state >= 0 && state < OrderTracker.STATE_DESC.length)?
+				         OrderTracker.STATE_DESC[(int)state] : "?",
+				fLongs[at + FILLED], fLongs[at + QTY], fObjects[slot],
+				SBFormat.toDollarString((int)fLongs[at + PRICE]));
+			}
+		if (text)
+			args[n] = fTexts[slot];
+		return args;
+		}
+	}
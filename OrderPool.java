@@ -0,0 +1,145 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderPool.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderPool: Recycles OrderTrackers for simulations that create and
+* discard orders by the million, so that a backtest in steady state
+* allocates next to nothing per order. It is opt in: an OrderList given a
+* pool releases the FILLED and CANCELED orders removed from it, and
+* acquire() hands them out again as new soft orders.
+*
+* A released order is reused, so nothing may keep a reference to it once
+* it is done: use a pool only where the strategy drops its orders when
+* they fill or cancel, as the simulated strategies do. Only plain
+* OrderTrackers are pooled, never subclasses. As a guard against the
+* references that do linger, an order that still has a state listener
+* when it is released (a TifScheduler, an OrderGroup, a view...) is not
+* taken back, and is left to the garbage collector; and each recycling
+* bumps the order's getGeneration(), so that code which must hold on to
+* a pooled order can tell that it has since become another order.
+*
+* intern() shares the copies of the strings that the pool's orders keep,
+* such as their reasons and statuses, so that the many orders with the
+* same reason hold one String between them. Orders that are not pooled
+* keep their strings as given. When the pool has interned MAX_INTERNED
+* strings it starts again with an empty table, so a run that makes up
+* new strings as it goes still shares the current ones.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class OrderPool
+	{
+	public static final int DEFAULT_CAPACITY = 4096;
+	public static final int MAX_INTERNED = 8192;
+
+	private final Map<String,String> fInterned = new HashMap<String,String>();
+	private final OrderTracker[] fFree;
+	private int fSize;
+	private long fCreated;
+	private long fReused;
+	private long fRefused;
+
+	/**
+	* @return the pool's shared copy of aString, which is aString itself if
+	* it is the first seen
+	*/
+	public synchronized String intern(String aString)
+		{
+		if (aString == null)
+			return null;
+		String it = fInterned.get(aString);
+		if (it != null)
+			return it;
+		if (fInterned.size() >= MAX_INTERNED)
+			fInterned.clear();
+		fInterned.put(aString, aString);
+		return aString;
+		}
+
+	public OrderPool() { this(DEFAULT_CAPACITY); }
+
+	/** @param aCapacity the most free orders kept, beyond which they are dropped */
+	public OrderPool(int aCapacity)
+		{
+		fFree = new OrderTracker[aCapacity];
+		}
+
+	/**
+	* @return a soft order, recycled if one is free, exactly as if created
+	* with the OrderTracker constructor taking the same arguments
+	* @param aType TYPE_MKT, TYPE_LMT or TYPE_STP
+	* @throws IllegalArgumentException for any other type code
+	*/
+	public OrderTracker acquire(PositionLeg aLeg, byte aType, int aQty,
+		int aLmt, int aAux, int aIStop, String aReason)
+		{
+		OrderTracker.checkType(aType);
+		OrderTracker it = null;
+		synchronized (this)
+			{
+			if (fSize > 0)
+				{
+				it = fFree[--fSize];
+				fFree[fSize] = null;
+				it.fInPool = false;
+				++fReused;
+				}
+			else ++fCreated;
+			}
+		if (it == null)
+			{
+			it = new OrderTracker(aLeg, Broker.ORDER_TYPES[aType], aQty,
+			                      aLmt, aAux, aIStop, intern(aReason));
+			it.fPool = this;
+			}
+		else
+			it.recycle(aLeg, aType, aQty, aLmt, aAux, aIStop, intern(aReason));
+		return it;
+		}
+
+	/**
+	* Returns an order to the pool if it came from it, is done, and no
+	* state listener still holds it
+	* @return true if the order was taken back
+	*/
+	public boolean release(OrderTracker aOrder)
+		{
+		byte state = aOrder.getState();
+		if (aOrder.fPool != this
+		||  (state != OrderTracker.FILLED && state != OrderTracker.CANCELED))
+			return false;
+		synchronized (this)
+			{
+			if (fSize == fFree.length || aOrder.fInPool) // full, or released twice
+				return false;
+			if (aOrder.hasStateListeners()) // still referenced: not safe to reuse
+				{
+				++fRefused;
+				return false;
+				}
+			aOrder.fInPool = true;
+			fFree[fSize++] = aOrder;
+			}
+		return true;
+		}
+
+	public synchronized int getFree() { return fSize; }
+	public synchronized long getCreated() { return fCreated; }
+	public synchronized long getReused() { return fReused; }
+
+	/** @return the orders not taken back because a listener still held them */
+	public synchronized long getRefused() { return fRefused; }
+
+	@Override public synchronized String toString()
+		{
+		return "OrderPool free " + fSize + " created " + fCreated + " reused " + fReused
+		     + " refused " + fRefused;
+		}
+	}
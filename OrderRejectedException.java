@@ -0,0 +1,26 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderRejectedException.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderRejectedException: Completes an OrderTicket's futures when the
+* broker rejects the order (ERROR state) or could not be sent the order.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+
+public class OrderRejectedException
+	extends Exception
+	{
+	private final OrderTracker fOrder;
+
+	public OrderRejectedException(OrderTracker aOrder, Throwable aCause)
+		{
+		super("Rejected: " + aOrder.getStatus(), aCause);
+		fOrder = aOrder;
+		}
+
+	public final OrderTracker getOrder() { return fOrder; }
+	}
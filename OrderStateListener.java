@@ -0,0 +1,31 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderStateListener.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderStateListener: Notified each time an OrderTracker moves from one
+* state to another, and optionally each time its terms are modified.
+* Called on the thread that made the change, after it is visible, so
+* implementations should be quick.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent orderModified() for changes to the order's terms
+*******************************************************/
+
+public interface OrderStateListener
+	{
+	/**
+	* @param aOrder the order whose state changed
+	* @param aFrom the previous state, OrderTracker.SIGNAL...ERROR
+	* @param aTo the new state
+	*/
+	public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo);
+
+	/**
+	* The order's type, quantity, prices, initial stop or reason changed,
+	* including by a merge: does nothing by default
+	*/
+	default public void orderModified(OrderTracker aOrder) {}
+	}
@@ -0,0 +1,64 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderStateMulticaster.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderStateMulticaster: Chains OrderStateListeners in the manner of the
+* AWTEventMulticaster, so an order holds a single immutable listener
+* reference no matter how many are interested in it.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent forwards orderModified()
+*******************************************************/
+
+public final class OrderStateMulticaster
+	implements OrderStateListener
+	{
+	private final OrderStateListener a;
+	private final OrderStateListener b;
+
+	private OrderStateMulticaster(OrderStateListener a, OrderStateListener b)
+		{
+		this.a = a;
+		this.b = b;
+		}
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		a.stateChanged(aOrder, aFrom, aTo);
+		b.stateChanged(aOrder, aFrom, aTo);
+		}
+
+	@Override public void orderModified(OrderTracker aOrder)
+		{
+		a.orderModified(aOrder);
+		b.orderModified(aOrder);
+		}
+
+	/** @return a listener that notifies both a and b */
+	public static OrderStateListener add(OrderStateListener a, OrderStateListener b)
+		{
+		if (a == null) return b;
+		if (b == null) return a;
+		return new OrderStateMulticaster(a, b);
+		}
+
+	/** @return the chain l without (the first occurrence of) old */
+	public static OrderStateListener remove(OrderStateListener l, OrderStateListener old)
+		{
+		if (l == old || l == null)
+			return null;
+		if (!(l instanceof OrderStateMulticaster))
+			return l;
+		OrderStateMulticaster m = (OrderStateMulticaster)l;
+		if (m.a == old) return m.b;
+		if (m.b == old) return m.a;
+		OrderStateListener a2 = remove(m.a, old);
+		OrderStateListener b2 = remove(m.b, old);
+		if (a2 == m.a && b2 == m.b)
+			return l;
+		return add(a2, b2);
+		}
+	}
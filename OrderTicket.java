@@ -0,0 +1,97 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderTicket.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderTicket: Futures that follow an order at the broker, so a strategy
+* can react to the broker's responses rather than polling getState():
+*  acked()  completes when the broker accepts the order, or exceptionally
+*           with an OrderRejectedException if it rejects it
+*  filled() completes when the order is completely filled, or with a
+*           CancellationException if it is cancelled first
+*  done()   completes when the order is filled or its cancel confirmed,
+*           check getState() and getFilled() for the outcome
+* The futures are completed on the thread that changed the order's state,
+* so dependent actions should be quick or use the async variants.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent a cancel requested while SENT does not ack the order
+*******************************************************/
+import static com.wormtrader.broker.OrderTracker.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class OrderTicket
+	implements OrderStateListener
+	{
+	private final OrderTracker fOrder;
+	private final CompletableFuture<OrderTracker> fAcked
+	                                    = new CompletableFuture<OrderTracker>();
+	private final CompletableFuture<OrderTracker> fFilled
+	                                    = new CompletableFuture<OrderTracker>();
+	private final CompletableFuture<OrderTracker> fDone
+	                                    = new CompletableFuture<OrderTracker>();
+
+	/**
+	* Creates a ticket that follows the specified order from its current
+	* state on
+	*/
+	public OrderTicket(OrderTracker aOrder)
+		{
+		fOrder = aOrder;
+		aOrder.addStateListener(this);
+		byte state = aOrder.getState();
+		if (state > SENT)
+			stateChanged(aOrder, SENT, state);
+		}
+
+	public final OrderTracker order() { return fOrder; }
+	public final CompletableFuture<OrderTracker> acked()  { return fAcked; }
+	public final CompletableFuture<OrderTracker> filled() { return fFilled; }
+	public final CompletableFuture<OrderTracker> done()   { return fDone; }
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		switch (aTo)
+			{
+			case OPEN:
+			case PART_FILL: fAcked.complete(aOrder);
+			                break;
+
+			case CAN_REQ:   if (aFrom != SENT) // else not acked yet
+			                	fAcked.complete(aOrder);
+			                break;
+
+			case FILLED:    fAcked.complete(aOrder);
+			                fFilled.complete(aOrder);
+			                fDone.complete(aOrder);
+			                aOrder.removeStateListener(this);
+			                break;
+
+			case CANCELED:  fAcked.complete(aOrder);
+			                fFilled.completeExceptionally(
+			                           new CancellationException(aOrder.toString()));
+			                fDone.complete(aOrder);
+			                aOrder.removeStateListener(this);
+			                break;
+
+			case ERROR:     rejected(null);
+			                break;
+			}
+		}
+
+	/** The broker accepted the order without reporting a new state */
+	final void acknowledged() { fAcked.complete(fOrder); }
+
+	/** The order was rejected, or could not be sent to the broker */
+	final void rejected(Throwable aCause)
+		{
+		OrderRejectedException e = new OrderRejectedException(fOrder, aCause);
+		fAcked.completeExceptionally(e);
+		fFilled.completeExceptionally(e);
+		fDone.completeExceptionally(e);
+		fOrder.removeStateListener(this);
+		}
+	}
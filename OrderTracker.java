@@ -17,13 +17,33 @@ package com.wormtrader.broker;
 * 20130425 rts added isCancelable() and cancel() methods
 * 20130427 rts upgraded for signal processing rewrite
 * 20130505 rts vebose flag for logging
+* 20261018 agent added hashCode() consistent with equals()
+* 20261018 agent lock free state transitions validated against LEGAL table
+* 20261018 agent order type held as a Broker.TYPE_xxx code
+* 20261018 agent TYPE_OTHER keeps the name of types other than MKT, LMT, STP
+* 20261018 agent journal sequence number and replay constructor
+* 20261018 agent state listeners told of changes to the terms: orderModified()
+* 20261018 agent nanosecond timestamp of each transition for OrderLatency
+* 20261018 agent log through the OrderLog ring, primitive log overloads
+* 20261018 agent clock, broker, log & latency from the order's BrokerSession
+* 20261018 agent recycle() for OrderPool, strings interned by its pool, generation
+* 20261018 agent a SENT order is cancelable: its cancel goes to the broker
+* 20261018 agent exposure last booked by the RiskEngine
+* 20261018 agent price of the last fill: setFilled(int,int), getFillPrice()
+* 20261018 agent merge() keeps each reason once
+* 20261018 agent fNetHash for OrderList's NetIndex
+* 20261018 agent version stamp bumped on every change, for cached table cells
+* 20261018 agent queue place for SimBroker's partial fill model
+* 20261018 agent expiry time for GTD orders, TifScheduler timer
+* 20261018 agent send(Broker) for a replay's broker
 *******************************************************/
-import static com.wormtrader.broker.Broker.STP_ORDER;
-import static com.wormtrader.broker.Broker.LMT_ORDER;
-import static com.wormtrader.broker.Broker.MKT_ORDER;
+import static com.wormtrader.broker.Broker.ORDER_TYPES;
+import static com.wormtrader.broker.Broker.TYPE_STP;
+import static com.wormtrader.broker.Broker.TYPE_LMT;
+import static com.wormtrader.broker.Broker.TYPE_MKT;
+import static com.wormtrader.broker.Broker.TYPE_OTHER;
 import com.wormtrader.broker.Broker;
 import com.wormtrader.positions.PositionLeg;
-import com.wormtrader.positions.Trader;
 import com.shanebow.util.SBDate;
 import com.shanebow.util.SBFormat;
 import com.shanebow.util.SBLog;
@@ -33,6 +53,8 @@ import static java.awt.Color.BLUE;
 import static java.awt.Color.RED;
 import static java.awt.Color.MAGENTA;
 import java.awt.Color;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class OrderTracker
 	{
@@ -66,16 +88,49 @@ public class OrderTracker
 		{ "Disabled", "Soft", "Sent", "Open", "Canceling", "Canceled",
 		  "Partial", "Filled", "Rejected" };
 
+	/**
+	* LEGAL[from] has bit (1 << to) set for each state that an order may
+	* move to from state from. FILLED, CANCELED and ERROR are final. A fill
+	* may arrive after a cancel was requested, but nothing follows a fill.
+	* A soft order placed directly with the broker (as DlgOrder does) may
+	* skip SENT.
+	*/
+	private static final int[] LEGAL = new int[STATE_DESC.length];
+	private static void allow(byte from, byte... to)
+		{
+		for (byte state : to)
+			LEGAL[from] |= 1 << state;
+		}
+	static
+		{
+		allow(SIGNAL,    SOFT, SENT, OPEN, CANCELED, PART_FILL, FILLED, ERROR);
+		allow(SOFT,      SENT, OPEN, CANCELED, PART_FILL, FILLED, ERROR);
+		allow(SENT,      OPEN, CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR);
+		allow(OPEN,      CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR);
+		allow(CAN_REQ,   OPEN, CANCELED, PART_FILL, FILLED, ERROR);
+		allow(PART_FILL, CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR);
+		}
+
+	/** @return true if an order may move from state from to state to */
+	public static boolean isLegal(byte from, byte to)
+		{
+		return from >= 0 && from < LEGAL.length
+		    && to >= 0 && to < LEGAL.length
+		    && (LEGAL[from] & (1 << to)) != 0;
+		}
+
 	public boolean isAtBroker()
 		{
-		return fState == SENT || fState == OPEN || fState == CAN_REQ;
+		int state = fState;
+		return state == SENT || state == OPEN || state == CAN_REQ;
 		}
 
-	protected final PositionLeg fLeg;
+	protected PositionLeg fLeg;       // final except to recycle()
 	private int         fID;          // Broker id if sent, otherwise undefined
-	private final long  fTime;        // time order created
+	private long        fTime;        // time order created
 	private int         fQty;         // signed value!
-	private String      fType;        // MKT, LMT, STP
+	private byte        fType;        // TYPE_MKT, TYPE_LMT, TYPE_STP, TYPE_OTHER
+	private String      fTypeName;    // the type if TYPE_OTHER, otherwise null
 	private int         fLmt;         // limit price in cents
 	private int         fAux;         // aux price in cents
 	private int         fInitialStop; // stop order to be created when this order fills
@@ -87,10 +142,51 @@ public class OrderTracker
 	private String  fReason;
 
 	private int     fFilled;
+	private int     fFillPrice;   // cents, price of the last fill, or 0 if not known
 	private String  fTIF = "???";
+	private long    fExpiry;      // broker time a GTD order expires, or 0
 	private String  fStatus = "";
 	private String  fWhyHeld = null;
-	private byte    fState;
+	private volatile int fState;  // a byte state, changed only by CAS
+	private volatile OrderStateListener fListener;
+	private BrokerSession fSession = BrokerSession.current();
+	private long        fCreatedNanos = System.nanoTime();
+	private volatile long fStateNanos = fCreatedNanos; // entered current state
+	private volatile long fDwellNanos; // time spent in the previous state
+
+	private static final AtomicIntegerFieldUpdater<OrderTracker> STATE
+		= AtomicIntegerFieldUpdater.newUpdater(OrderTracker.class, "fState");
+
+	/** Bumped after every change to what the order displays */
+	private volatile int fVersion;
+	private static final AtomicIntegerFieldUpdater<OrderTracker> VERSION
+		= AtomicIntegerFieldUpdater.newUpdater(OrderTracker.class, "fVersion");
+
+	/** The table cells last formatted by OrderList, and the version they show */
+	Object[] fCells;
+	int      fCellsVersion;
+
+	/** This order's number in the OrderJournal, or 0 if not journaled */
+	int fJournalSeq;
+
+	/** The hash of its terms with which OrderList's NetIndex holds this order */
+	int fNetHash;
+
+	/** The pool this order is recycled through, if any */
+	OrderPool fPool;
+	boolean   fInPool; // true while free in fPool
+	int       fGeneration; // times recycled by fPool
+
+	/** What the RiskEngine last booked for this order */
+	int  fRiskFilled;   // filled shares counted in the position
+	int  fRiskOpen;     // unfilled shares counted as working
+	long fRiskNotional; // cents counted as working
+
+	/** SimBroker: this order's place in the queue at its price, or null */
+	PriceLevels.Place fQueuePlace;
+
+	/** The TifScheduler's timer for this order while it waits to expire */
+	TifScheduler.Timer fTifTimer;
 
 	/**
 	* Legacy Constructor which does not specify a reason or an initial stop.
@@ -127,7 +223,7 @@ public class OrderTracker
 		{
 		fID = aID;
 		fLeg = aLeg;
-		fType = aType;
+		setTypeName(aType);
 		fQty = aQty;
 		fLmt = aLmt;
 		fAux = aAux;
@@ -136,9 +232,109 @@ public class OrderTracker
 		fState = (fID <= SOFT_ID)? SOFT : SENT;
 		fInitialStop = aIStop;
 		fReason = aReason;
-		fTime = Trader.time();
+		fTime = fSession.time();
+		}
+
+	/**
+	* For OrderJournal replay: recreates an order as it was when created
+	*/
+	OrderTracker (int aID, PositionLeg aLeg, byte aType, byte aAct, int aQty,
+		int aLmt, int aAux, int aIStop, String aReason, long aTime)
+		{
+		fID = aID;
+		fLeg = aLeg;
+		fType = aType;
+		fAct = aAct;
+		fQty = aQty;
+		fLmt = aLmt;
+		fAux = aAux;
+		fInitialStop = aIStop;
+		fReason = aReason;
+		fTime = aTime;
+		fState = (fID <= SOFT_ID)? SOFT : SENT;
+		}
+
+	/**
+	* For OrderJournal replay: sets the journaled state without going
+	* through transition() or notifying any listener
+	*/
+	final void restore(byte aState, int aID, int aQty, int aFilled, String aTIF,
+		String aStatus, String aWhyHeld)
+		{
+		fState = aState;
+		fID = aID;
+		fQty = aQty;
+		fFilled = aFilled;
+		fTIF = aTIF;
+		fStatus = aStatus;
+		fWhyHeld = aWhyHeld;
+		changed();
+		}
+
+	/**
+	* For OrderPool: reinitializes a done order as a new soft order, as the
+	* soft order constructor would, in the session current on this thread
+	*/
+	final void recycle(PositionLeg aLeg, byte aType, int aQty, int aLmt,
+		int aAux, int aIStop, String aReason)
+		{
+		fSession = BrokerSession.current();
+		fListener = null;
+		++fGeneration;
+		fID = SOFT_ID;
+		fLeg = aLeg;
+		fType = aType;
+		fTypeName = null;
+		fQty = aQty;
+		fLmt = aLmt;
+		fAux = aAux;
+		fFilled = 0;
+		fAct = (aQty > 0)? ACT_BUY : ACT_SELL;
+		fInitialStop = aIStop;
+		fReason = aReason;
+		fTIF = "???";
+		fStatus = "";
+		fWhyHeld = null;
+		fJournalSeq = 0;
+		fFillPrice = 0;
+		fRiskFilled = fRiskOpen = 0;
+		fRiskNotional = 0;
+		fQueuePlace = null;
+		fExpiry = 0;
+		fTifTimer = null;
+		fTime = fSession.time();
+		fCreatedNanos = System.nanoTime();
+		fStateNanos = fCreatedNanos;
+		fDwellNanos = 0;
+		fState = SOFT;
+		changed();
 		}
 
+	/**
+	* @return a stamp that differs each time the order's state, quantity,
+	* prices, fill, status or reason has changed, so that anything derived
+	* from them can tell whether it is stale: read it before the fields
+	*/
+	public final int getVersion() { return fVersion; }
+
+	/** Marks the order changed: called after the change is made */
+	protected final void changed() { VERSION.incrementAndGet(this); }
+
+	/**
+	* Marks the order changed and tells the state listeners that its terms
+	* were modified: called after the change is made
+	*/
+	protected final void modified()
+		{
+		changed();
+		OrderStateListener listener = fListener;
+		if (listener != null)
+			listener.orderModified(this);
+		}
+
+	final String statusOnly() { return fStatus; }
+	final String whyHeld() { return fWhyHeld; }
+
 	/**
 	* For TradeSignal
 	*/
@@ -148,13 +344,13 @@ public class OrderTracker
 		fID = SOFT_ID;
 		fLeg = aLeg;
 		fAct = aAct;
-		fType = aType;
+		setTypeName(aType);
 		fLmt = aLmt;
 		fAux = 0;
 		fFilled = 0;
 		fInitialStop = 0;
 		fReason = aReason;
-		fTime = Trader.time();
+		fTime = fSession.time();
 		fState = (fID <= SOFT_ID)? SOFT : SENT;
 		if (fAct == ACT_STOP)
 			{
@@ -187,9 +383,25 @@ public class OrderTracker
 		}
 
 	public final int  getFilled() { return fFilled; }
+
+	/** @return the price in cents of the last fill, or 0 if not known */
+	public final int  getFillPrice() { return fFillPrice; }
+
+	/**
+	* Records a fill at aPrice cents: the price is set before the filled
+	* quantity and state, so that a state listener sees both
+	* @param aFilled the total filled so far, as for setFilled(int)
+	*/
+	public void setFilled(int aFilled, int aPrice)
+		{
+		fFillPrice = aPrice;
+		setFilled(aFilled);
+		}
+
 	public void setFilled(int aFilled)
 		{
 		fFilled = (aFilled * fQty < 0)? -aFilled : aFilled;
+		changed();
 		if (fFilled == fQty)
 			setState(FILLED);
 		else if (fFilled != 0)
@@ -197,8 +409,87 @@ public class OrderTracker
 		}
 
 	public final boolean     atLeastPartiallyFilled() { return fFilled != 0; }
-	public final byte        getState() { return fState; }
-	public       void        setState(byte state) { fState = state; }
+	public final byte        getState() { return (byte)fState; }
+
+	/**
+	* Moves the order to the specified state if that is a legal transition
+	* from its current state, otherwise leaves it unchanged: so a late
+	* status from the broker cannot undo a fill or a cancel.
+	*/
+	public       void        setState(byte state) { transition(state); }
+
+	/**
+	* Atomically moves the order from its current state to the specified
+	* state, retrying if another thread changes the state first.
+	* @return false if the transition is not legal from the current state
+	*/
+	public final boolean transition(byte aTo)
+		{
+		for (;;)
+			{
+			byte from = (byte)fState;
+			if (!isLegal(from, aTo))
+				return false;
+			if (STATE.compareAndSet(this, from, aTo))
+				{
+				stateChanged(from, aTo);
+				return true;
+				}
+			}
+		}
+
+	/**
+	* Moves the order to state aUpdate only if it is in state aExpect
+	* @return true if successful
+	*/
+	public final boolean compareAndSetState(byte aExpect, byte aUpdate)
+		{
+		if (!isLegal(aExpect, aUpdate)
+		||  !STATE.compareAndSet(this, aExpect, aUpdate))
+			return false;
+		stateChanged(aExpect, aUpdate);
+		return true;
+		}
+
+	/**
+	* Timestamps the transition and reports it to OrderLatency. Two threads
+	* that transition the order back to back may see each other's stamp
+	* late, skewing that one dwell time: a fair trade for no locking.
+	*/
+	private void stateChanged(byte aFrom, byte aTo)
+		{
+		long now = System.nanoTime();
+		long dwell = now - fStateNanos;
+		fStateNanos = now;
+		fDwellNanos = dwell;
+		changed();
+		fSession.getLatency().record(aFrom, aTo, dwell);
+		OrderStateListener listener = fListener;
+		if (listener != null)
+			listener.stateChanged(this, aFrom, aTo);
+		}
+
+	/** @return System.nanoTime() when the order was created */
+	public final long getCreatedNanos() { return fCreatedNanos; }
+
+	/** @return System.nanoTime() when the order entered its current state */
+	public final long getStateNanos() { return fStateNanos; }
+
+	/** @return nanoseconds that the order spent in its previous state */
+	public final long getDwellNanos() { return fDwellNanos; }
+
+	public final synchronized void addStateListener(OrderStateListener aListener)
+		{
+		fListener = OrderStateMulticaster.add(fListener, aListener);
+		}
+
+	public final synchronized void removeStateListener(OrderStateListener aListener)
+		{
+		fListener = OrderStateMulticaster.remove(fListener, aListener);
+		}
+
+	/** @return true while any state listener is registered */
+	final boolean hasStateListeners() { return fListener != null; }
 
 	public final byte        act()        { return fAct; }
 	public final String      action()     { return (fQty > 0)? "BUY" : "SELL"; }
@@ -206,20 +497,46 @@ public class OrderTracker
 	public final PositionLeg leg()        { return fLeg; }
 	public final int         qty()        { return fQty; }
 	public final long        time()       { return fTime; }
-	public final String      type()       { return fType; }
+	public final BrokerSession getSession() { return fSession; }
+	public final String      type()       { return (fType == TYPE_OTHER)? fTypeName : ORDER_TYPES[fType]; }
+	public final byte        typeCode()   { return fType; }
 	public final int         getLmt()     { return fLmt; }
 	public final int         getAux()     { return fAux; }
 
 	public final String      getTIF()     { return fTIF; }
 	public final void        setTIF(String aTIF) { fTIF = aTIF; }
 
-	public final void setID(int id) { fID = id; }
+	/** @return the broker time at which a GTD order expires, or 0 */
+	public final long        getExpiry()  { return fExpiry; }
+	/** Makes the order good till the specified broker time */
+	public final void        setExpiry(long aTime)
+		{
+		fTIF = TifScheduler.GTD;
+		fExpiry = aTime;
+		}
+
+	public final void setID(int id) { fID = id; changed(); }
 	public final void setStatus(String aStatus, String aWhyHeld)
 		{
-		fStatus = aStatus;
-		fWhyHeld = aWhyHeld;
+		fStatus = intern(aStatus);
+		fWhyHeld = intern(aWhyHeld);
+		changed();
 		}
 
+	/** @return the shared copy of the string if pooled, else the string */
+	private String intern(String aString)
+		{
+		OrderPool pool = fPool;
+		return (pool == null)? aString : pool.intern(aString);
+		}
+
+	/**
+	* @return the number of times this order has been recycled by its
+	* OrderPool: a reference to a pooled order taken along with its
+	* generation is to another order once the generation has changed
+	*/
+	public final int getGeneration() { return fGeneration; }
+
 	public boolean isPriorTo(OrderTracker aNother)
 		{
 		return (fTime < aNother.fTime);
@@ -239,36 +556,107 @@ public class OrderTracker
 	* @return true if this is a soft order and it should be triggered based on
 	* the specified price. Triggered means the leg should stop monitoring the
 	* order whether because it was sent to broker or cancelled.
+	* @see TriggerBook which indexes a leg's orders by price so that only
+	* the orders crossed by a tick are checked
 	*/
 	public boolean softTriggered(int aPrice)
 		{
-		return fState == SOFT
-		    && triggered(aPrice)
-		    && send();
+		if (fState != SOFT || !triggered(aPrice))
+			return false;
+		send();
+		return true; // sent, or cancelled while being triggered
 		}
 
+	/**
+	* Sends this soft order to the broker as a market order
+	* @return false if it was no longer soft: sent or cancelled by another
+	* thread
+	*/
 	public final boolean send()
 		{
-		setType(MKT_ORDER);
-		fLeg.getTrader().getBroker().placeOrder(this);
-		setState(SENT);
+		return send(fSession.brokerFor(fLeg));
+		}
+
+	/**
+	* Sends this soft order as a market order to the specified broker, such
+	* as a TickReplay's, rather than the session's broker for the leg
+	* @return false if it was no longer soft
+	*/
+	public final boolean send(Broker aBroker)
+		{
+		byte state = (byte)fState;
+		if (state >= SENT
+		|| !compareAndSetState(state, SENT)) // before placing: a broker
+			return false;                     // may ack or fill right away
+		setType(TYPE_MKT);
+		aBroker.placeOrder(this);
 		return true;
 		}
 
-	public void setType(String aType) { fType = aType; }
+	public void setType(String aType) { setTypeName(aType); modified(); }
+
+	/**
+	* @param aType TYPE_MKT, TYPE_LMT or TYPE_STP: set any other type by its
+	* name with setType(String)
+	* @throws IllegalArgumentException for any other code
+	*/
+	public void setType(byte aType)
+		{
+		fType = checkType(aType);
+		fTypeName = null;
+		modified();
+		}
+
+	/**
+	* @return the code if it is TYPE_MKT, TYPE_LMT or TYPE_STP
+	* @throws IllegalArgumentException otherwise: TYPE_OTHER has no name
+	*/
+	static byte checkType(byte aType)
+		{
+		if (aType < TYPE_MKT || aType >= ORDER_TYPES.length)
+			throw new IllegalArgumentException("Order type code " + aType
+			                  + " is not MKT, LMT or STP: set it by name");
+		return aType;
+		}
+
+	private void setTypeName(String aType)
+		{
+		fType = typeCode(aType);
+		fTypeName = (fType == TYPE_OTHER)? aType : null;
+		}
+
+	/**
+	* @return the Broker.TYPE_xxx code for the order type string, which
+	* need not be one of the interned Broker.xxx_ORDER constants: TYPE_OTHER
+	* for any type but MKT, LMT and STP, null included
+	*/
+	public static byte typeCode(String aType)
+		{
+		for (byte code = 0; code < ORDER_TYPES.length; code++)
+			if (ORDER_TYPES[code] == aType)
+				return code;
+		for (byte code = 0; code < ORDER_TYPES.length; code++)
+			if (ORDER_TYPES[code].equals(aType))
+				return code;
+		return TYPE_OTHER;
+		}
+
 	/**
 	* Intended for use by the simulator's broker
-	* @return true if this order is triggered at the specified price
+	* @return true if this order is triggered at the specified price: never
+	* for TYPE_OTHER, which only the broker knows how to work
 	*/
 	public boolean triggered(int price)
 		{
-		if (fType.equals(STP_ORDER))
+		if (fType == TYPE_OTHER)
+			return false;
+		if (fType == TYPE_STP)
 			{
 			if ((fQty > 0 && price < fLmt)
 			||  (fQty < 0 && price > fLmt))
 				return false;
 			}
-		else if (fType.equals(LMT_ORDER))
+		else if (fType == TYPE_LMT)
 			{
 			if ((fQty > 0 && price > fLmt)
 			||  (fQty < 0 && price < fLmt))
@@ -280,12 +668,14 @@ public class OrderTracker
 	public final void setQty(int qty)
 		{
 		fQty = qty;
+		modified();
 		}
 
 	public final void modify(int qty, int lmt)
 		{
-		setQty(qty);
+		fQty = qty;
 		fLmt = lmt;
+		modified();
 		}
 
 	public final void modify(String type, int qty, int lmt, int aux)
@@ -293,7 +683,8 @@ public class OrderTracker
 		fQty = qty;
 		fLmt = lmt;
 		fAux = aux;
-		fType = type;
+		setTypeName(type);
+		modified();
 		}
 
 	public final String getStatus()
@@ -314,7 +705,7 @@ public class OrderTracker
 	*/
 	public final String toCSV()
 		{
-		return fType + "," + fQty + "," + fLmt + "," + fAux
+		return type() + "," + fQty + "," + fLmt + "," + fAux
 		             + "," + fInitialStop + "," + fReason; }
 
 	public final String toolTip()
@@ -322,7 +713,7 @@ public class OrderTracker
 		String msg = "<font color=" + ((fQty > 0)? "BLUE>":"RED>" + ACT_DESC[fAct]);
 		if (fAct == ACT_BUY || fAct == ACT_SELL)
 			msg += Math.abs(fQty);
-		msg += "<br>" + fType + " $" + SBFormat.toDollarString(fLmt)
+		msg += "<br>" + type() + " $" + SBFormat.toDollarString(fLmt)
 		    + " " + STATE_DESC[fState];
 		return msg;
 		}
@@ -340,21 +731,52 @@ public class OrderTracker
 		     : aOther == this;
 		}
 
+	/**
+	* Consistent with equals(): the broker id once sent, otherwise identity.
+	* Since this changes when the order is sent, do not keep trackers in a
+	* hashed collection across a send(): OrderList indexes them by id.
+	*/
+	@Override public int hashCode()
+		{
+		return (fState >= SENT)? fID : System.identityHashCode(this);
+		}
+
 	public boolean merge(OrderTracker aOther)
 		{
 		if ((fState >= SENT)
 		||  (aOther.fState >= SENT)
 		||  (fType != aOther.fType)
+		||  (fType == TYPE_OTHER && !Objects.equals(fTypeName, aOther.fTypeName))
 		||  (fAux != aOther.fAux)
 		||  (fLmt != aOther.fLmt)
 		||  (fInitialStop != aOther.fInitialStop))
 			return false;
 		fQty += aOther.fQty;
-		if (fQty != 0 && !fReason.equals(aOther.fReason))
-			fReason += "/" + aOther.fReason;
+		if (fQty != 0)
+			fReason = intern(mergeReasons(fReason, aOther.fReason));
+		modified();
 		return true;
 		}
 
+	/**
+	* @return the reasons of two merged orders as one, "a/b", with each
+	* reason kept once however many times the orders merge
+	*/
+	static String mergeReasons(String aReasons, String aReason)
+		{
+		if (aReason == null || aReason.isEmpty() || aReason.equals(aReasons))
+			return aReasons;
+		if (aReasons == null || aReasons.isEmpty())
+			return aReason;
+		int len = aReason.length();
+		for (int at = aReasons.indexOf(aReason); at >= 0;
+		         at = aReasons.indexOf(aReason, at + 1))
+			if ((at == 0 || aReasons.charAt(at - 1) == '/')
+			&&  (at + len == aReasons.length() || aReasons.charAt(at + len) == '/'))
+				return aReasons;
+		return aReasons + "/" + aReason;
+		}
+
 	public boolean equals(int aHardID)
 		{
 		return (fState >= SENT) && (aHardID == this.fID);
@@ -364,18 +786,18 @@ public class OrderTracker
 		{
 		return (fReason==null)? "?" : fReason;
 		}
-	public final void setReason(String aReason) { fReason = aReason; }
+	public final void setReason(String aReason) { fReason = aReason; modified(); }
 
 	/**
 	* Initial stop placement when this order is executed (if opening order)
 	*/
 	public final int getInitialStop() { return fInitialStop; }
-	public final void setInitialStop(int cents) { fInitialStop = cents; }
+	public final void setInitialStop(int cents) { fInitialStop = cents; modified(); }
 
 	public final boolean isEnablable() { return (fState == SIGNAL); }
 	public final void enable()
 		{
-		if ( isEnablable()) setState(SOFT);
+		compareAndSetState(SIGNAL, SOFT);
 		}
 
 	/**
@@ -383,29 +805,79 @@ public class OrderTracker
 	*/
 	public final boolean isCancelable()
 		{
-		return (fState < SENT)
-		    || (fState == OrderTracker.OPEN)
-		    || (fState == OrderTracker.PART_FILL);
+		int state = fState;
+		return (state <= SENT)
+		    || (state == OrderTracker.OPEN)
+		    || (state == OrderTracker.PART_FILL);
 		}
 
+	/**
+	* Cancels a soft order, or asks the broker to cancel an open one. If
+	* a fill or a send races the cancel, whichever changes the state first
+	* wins and the other sees the new state.
+	* @return false if the order was not cancelable when the cancel ran
+	*/
 	public boolean cancel(boolean userInitiated)
 		{
-		if (fState < SENT)
+		switch (claimCancel())
 			{
-			setState(CANCELED);
-			if (userInitiated) fLeg.remove(this);
-			return true;
+			case CANCELED: if (userInitiated) fLeg.remove(this);
+			               return true;
+			case CAN_REQ:  fSession.brokerFor(fLeg).cancelOrder(this);
+			               return true;
+			default:       return false;
 			}
-		else if (fState == OPEN || fState == PART_FILL)
+		}
+
+	/**
+	* Makes the state change for a cancel without involving the leg or the
+	* broker, for cancel() and the batch cancels. A SENT order is on its way
+	* to the broker, so its cancel must follow it there: a broker that still
+	* holds the placement (such as PacedBroker's queue) drops both.
+	* @return CANCELED if this was a soft order, CAN_REQ if the broker must
+	* now be asked to cancel it, or -1 if it was not cancelable
+	*/
+	final byte claimCancel()
+		{
+		for (;;)
 			{
-			setState(CAN_REQ);
-			fLeg.getTrader().getBroker().cancelOrder(this);
-			return true;
+			byte state = (byte)fState;
+			if (state < SENT)
+				{
+				if (compareAndSetState(state, CANCELED))
+					return CANCELED;
+				}
+			else if (state == SENT || state == OPEN || state == PART_FILL)
+				{
+				if (compareAndSetState(state, CAN_REQ))
+					return CAN_REQ;
+				}
+			else return -1;
 			}
-		return false;
 		}
 
+	/**
+	* Turns on order tracing in every session's OrderLog: enabling the
+	* session's log is preferred
+	*/
 	public static boolean _verbose;
+
+	/**
+	* The log methods write to the session's OrderLog ring and return: the formatting
+	* is done on the log's own thread. When tracing is off they cost a
+	* flag check and, except for the varargs form, allocate nothing. The
+	* format must be a constant: use %d for the long arguments.
+	*/
+	protected final void log(String fmt)
+		{ OrderLog log = fSession.getLog(); if (_verbose || log.isEnabled()) log.log(fmt); }
+	protected final void log(String fmt, long a)
+		{ OrderLog log = fSession.getLog(); if (_verbose || log.isEnabled()) log.log(fmt, a); }
+	protected final void log(String fmt, long a, long b)
+		{ OrderLog log = fSession.getLog(); if (_verbose || log.isEnabled()) log.log(fmt, a, b); }
+	protected final void log(String fmt, long a, long b, long c)
+		{ OrderLog log = fSession.getLog(); if (_verbose || log.isEnabled()) log.log(fmt, a, b, c); }
+
+	/** Boxes its arguments before the flag is checked: prefer the others */
 	protected final void log(String fmt, Object... args)
-		{ if (_verbose) SBLog.format(fmt, args); }
+		{ OrderLog log = fSession.getLog(); if (_verbose || log.isEnabled()) log.logArgs(fmt, args); }
 	}
@@ -0,0 +1,433 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderView.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderView: A filtered, sorted table of the orders in an OrderList, such
+* as "working stops by distance to trigger" or "today's fills by time",
+* kept up to date one order at a time as an OrderListListener rather than
+* being rebuilt from the whole list on every change.
+*
+* The rows are kept sorted by a long key computed from each order when it
+* is added or changed, ties going to the order added first. They are the
+* entries of an AVL tree ordered on (key, sequence), each entry knowing
+* the size of its subtree, so that inserting or removing a row, finding
+* the row of an entry and the entry at a row are all O(log n). An index
+* from each order to its entry finds the entry of a changed order in O(1).
+*
+* Keys are taken from the orders as the list reports them: the list hears
+* of each change to its orders' state and terms, but a key built on
+* something else that changes, such as the distance to a moving market,
+* is only refreshed when the order is.
+*
+* Displays like OrderList, including the coalesced snapshots, with the
+* same columns. Call dispose() to stop following the list.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+public class OrderView<T extends OrderTracker>
+	extends CoalescingTableModel
+	implements OrderListListener<T>
+	{
+	public static final String MODULE="OrderView.";
+
+	/** Every order, by its state code */
+	public static final ToLongFunction<OrderTracker> BY_STATE
+		= new ToLongFunction<OrderTracker>()
+			{
+			@Override public long applyAsLong(OrderTracker aOrder) { return aOrder.getState(); }
+			};
+
+	/** Entries, exits and stops grouped by the order's act */
+	public static final ToLongFunction<OrderTracker> BY_ACT
+		= new ToLongFunction<OrderTracker>()
+			{
+			@Override public long applyAsLong(OrderTracker aOrder) { return aOrder.act(); }
+			};
+
+	/** Oldest first, by the broker time the order was created */
+	public static final ToLongFunction<OrderTracker> BY_TIME
+		= new ToLongFunction<OrderTracker>()
+			{
+			@Override public long applyAsLong(OrderTracker aOrder) { return aOrder.time(); }
+			};
+
+	/**
+	* Nearest first, by cents from the leg's last price to the limit (or
+	* the aux price of a stop): market orders come first
+	*/
+	public static final ToLongFunction<OrderTracker> BY_DISTANCE
+		= new ToLongFunction<OrderTracker>()
+			{
+			@Override public long applyAsLong(OrderTracker aOrder)
+				{
+				int trigger = (aOrder.getAux() != 0)? aOrder.getAux() : aOrder.getLmt();
+				if (trigger == 0)
+					return 0;
+				return Math.abs((long)aOrder.leg().getLast().cents() - trigger);
+				}
+			};
+
+	/** Alphabetically by the first 8 characters of the strategy's name */
+	public static final ToLongFunction<OrderTracker> BY_STRATEGY
+		= new ToLongFunction<OrderTracker>()
+			{
+			@Override public long applyAsLong(OrderTracker aOrder)
+				{
+				return prefix(String.valueOf(aOrder.leg().getStrategy()));
+				}
+			};
+
+	/**
+	* @return the key that sorts the other way: the complement reverses the
+	* order of every long without overflow
+	*/
+	public static <T> ToLongFunction<T> descending(final ToLongFunction<T> aKey)
+		{
+		return new ToLongFunction<T>()
+			{
+			@Override public long applyAsLong(T aOrder) { return ~aKey.applyAsLong(aOrder); }
+			};
+		}
+
+	/**
+	* @return the first 8 characters of the string packed one per byte, so
+	* that the longs compare as the strings do (for 8 bit characters)
+	*/
+	static long prefix(String aName)
+		{
+		long packed = 0;
+		for (int i = 0; i < 8; i++)
+			{
+			int c = (i < aName.length())? Math.min(aName.charAt(i), 0xFF) : 0;
+			packed = (packed << 8) | c;
+			}
+		return packed ^ Long.MIN_VALUE; // unsigned order as signed
+		}
+
+	/** One row: the order and where it sorts, a node of the row tree */
+	private static final class Entry<T>
+		{
+		final T    fOrder;
+		final long fSeq;
+		long       fKey;
+		Entry<T>   fLeft;
+		Entry<T>   fRight;
+		int        fSize;   // entries in this subtree
+		int        fHeight;
+
+		Entry(T aOrder, long aKey, long aSeq)
+			{
+			fOrder = aOrder;
+			fKey = aKey;
+			fSeq = aSeq;
+			}
+
+		/** @return negative if this entry sorts before (aKey, aSeq) */
+		int compareTo(long aKey, long aSeq)
+			{
+			return (fKey != aKey)? Long.compare(fKey, aKey) : Long.compare(fSeq, aSeq);
+			}
+		}
+
+	private final OrderList<T> fSource;
+	private final Predicate<? super T> fFilter;
+	private final ToLongFunction<? super T> fKey;
+	private Entry<T> fRoot;
+	private final Map<T,Entry<T>> fEntries = new IdentityHashMap<T,Entry<T>>();
+	private long fSeq;
+
+	/**
+	* Starts following the list with the orders in it now.
+	* @param aSource the list to follow
+	* @param aFilter accepts the orders to show
+	* @param aKey the rows are sorted in ascending order by this key
+	*/
+	public OrderView(OrderList<T> aSource, Predicate<? super T> aFilter,
+		ToLongFunction<? super T> aKey)
+		{
+		fSource = aSource;
+		fFilter = aFilter;
+		fKey = aKey;
+		synchronized (aSource)
+			{
+			for (T order : aSource.getAll())
+				orderAdded(order);
+			aSource.addOrderListListener(this);
+			}
+		}
+
+	/** Stops following the list: the view keeps the rows it has */
+	public final void dispose() { fSource.removeOrderListListener(this); }
+
+	public final OrderList<T> getSource() { return fSource; }
+
+	/** @return the row of the entry with this key and sequence, or -1 */
+	private int search(long aKey, long aSeq)
+		{
+		int r = 0;
+		for (Entry<T> e = fRoot; e != null; )
+			{
+			int comparison = e.compareTo(aKey, aSeq);
+			if (comparison < 0)
+				{
+				r += size(e.fLeft) + 1;
+				e = e.fRight;
+				}
+			else if (comparison > 0)
+				e = e.fLeft;
+			else
+				return r + size(e.fLeft);
+			}
+		return -1;
+		}
+
+	/** @return the entry at the row */
+	private Entry<T> entryAt(int r)
+		{
+		if (r < 0 || r >= size(fRoot))
+			throw new IndexOutOfBoundsException(MODULE + "row " + r + " of " + size(fRoot));
+		Entry<T> e = fRoot;
+		for (;;)
+			{
+			int left = size(e.fLeft);
+			if (r < left)
+				e = e.fLeft;
+			else if (r == left)
+				return e;
+			else
+				{
+				r -= left + 1;
+				e = e.fRight;
+				}
+			}
+		}
+
+	private void insert(Entry<T> aEntry)
+		{
+		aEntry.fLeft = aEntry.fRight = null;
+		aEntry.fSize = aEntry.fHeight = 1;
+		fRoot = insert(fRoot, aEntry);
+		int r = search(aEntry.fKey, aEntry.fSeq);
+		fireTableRowsInserted(r, r);
+		}
+
+	private void delete(Entry<T> aEntry)
+		{
+		int r = search(aEntry.fKey, aEntry.fSeq);
+		fRoot = remove(fRoot, aEntry.fKey, aEntry.fSeq);
+		fireTableRowsDeleted(r, r);
+		}
+
+	private static int size(Entry<?> e) { return (e == null)? 0 : e.fSize; }
+	private static int height(Entry<?> e) { return (e == null)? 0 : e.fHeight; }
+
+	private static void update(Entry<?> e)
+		{
+		e.fSize = size(e.fLeft) + size(e.fRight) + 1;
+		e.fHeight = Math.max(height(e.fLeft), height(e.fRight)) + 1;
+		}
+
+	private static <T> Entry<T> rotateRight(Entry<T> e)
+		{
+		Entry<T> left = e.fLeft;
+		e.fLeft = left.fRight;
+		left.fRight = e;
+		update(e);
+		update(left);
+		return left;
+		}
+
+	private static <T> Entry<T> rotateLeft(Entry<T> e)
+		{
+		Entry<T> right = e.fRight;
+		e.fRight = right.fLeft;
+		right.fLeft = e;
+		update(e);
+		update(right);
+		return right;
+		}
+
+	/** @return the subtree rooted at e, its heights back within one */
+	private static <T> Entry<T> balance(Entry<T> e)
+		{
+		update(e);
+		int skew = height(e.fLeft) - height(e.fRight);
+		if (skew > 1)
+			{
+			if (height(e.fLeft.fLeft) < height(e.fLeft.fRight))
+				e.fLeft = rotateLeft(e.fLeft);
+			return rotateRight(e);
+			}
+		if (skew < -1)
+			{
+			if (height(e.fRight.fRight) < height(e.fRight.fLeft))
+				e.fRight = rotateRight(e.fRight);
+			return rotateLeft(e);
+			}
+		return e;
+		}
+
+	private static <T> Entry<T> insert(Entry<T> e, Entry<T> aEntry)
+		{
+		if (e == null)
+			return aEntry;
+		if (e.compareTo(aEntry.fKey, aEntry.fSeq) < 0)
+			e.fRight = insert(e.fRight, aEntry);
+		else
+			e.fLeft = insert(e.fLeft, aEntry);
+		return balance(e);
+		}
+
+	/**
+	* Unlinks the entry with this key and sequence: the entries are the
+	* rows, so one with two children is replaced by its successor entry
+	* rather than taking on the successor's order
+	*/
+	private static <T> Entry<T> remove(Entry<T> e, long aKey, long aSeq)
+		{
+		int comparison = e.compareTo(aKey, aSeq);
+		if (comparison < 0)
+			e.fRight = remove(e.fRight, aKey, aSeq);
+		else if (comparison > 0)
+			e.fLeft = remove(e.fLeft, aKey, aSeq);
+		else
+			{
+			Entry<T> it = e;
+			if (e.fLeft == null || e.fRight == null)
+				e = (e.fLeft != null)? e.fLeft : e.fRight;
+			else
+				{
+				Entry<T> next = e.fRight;
+				while (next.fLeft != null)
+					next = next.fLeft;
+				next.fRight = removeFirst(e.fRight);
+				next.fLeft = e.fLeft;
+				e = next;
+				}
+			it.fLeft = it.fRight = null;
+			if (e == null)
+				return null;
+			}
+		return balance(e);
+		}
+
+	private static <T> Entry<T> removeFirst(Entry<T> e)
+		{
+		if (e.fLeft == null)
+			return e.fRight;
+		e.fLeft = removeFirst(e.fLeft);
+		return balance(e);
+		}
+
+	/** Copies the orders of the subtree in row order from aRows[r] on */
+	private static int copy(Entry<?> e, Object[] aRows, int r, int aCount)
+		{
+		while (e != null && r < aCount)
+			{
+			r = copy(e.fLeft, aRows, r, aCount);
+			if (r < aCount)
+				aRows[r++] = e.fOrder;
+			e = e.fRight;
+			}
+		return r;
+		}
+
+	@Override public final synchronized void orderAdded(T aOrder)
+		{
+		if (fEntries.containsKey(aOrder) || !fFilter.test(aOrder))
+			return;
+		Entry<T> it = new Entry<T>(aOrder, fKey.applyAsLong(aOrder), fSeq++);
+		fEntries.put(aOrder, it);
+		insert(it);
+		}
+
+	@Override public final synchronized void orderRemoved(T aOrder)
+		{
+		Entry<T> it = fEntries.remove(aOrder);
+		if (it != null)
+			delete(it);
+		}
+
+	/** The order may now pass or fail the filter, or have a new key */
+	@Override public final synchronized void orderChanged(T aOrder)
+		{
+		Entry<T> it = fEntries.get(aOrder);
+		if (it == null)
+			{
+			orderAdded(aOrder);
+			return;
+			}
+		if (!fFilter.test(aOrder))
+			{
+			fEntries.remove(aOrder);
+			delete(it);
+			return;
+			}
+		long key = fKey.applyAsLong(aOrder);
+		if (key == it.fKey)
+			{
+			int r = search(it.fKey, it.fSeq);
+			fireTableRowsUpdated(r, r);
+			return;
+			}
+		delete(it);
+		it.fKey = key;
+		insert(it);
+		}
+
+	@Override public final synchronized void listCleared()
+		{
+		int lastRow = size(fRoot) - 1;
+		fRoot = null;
+		fEntries.clear();
+		if (lastRow >= 0)
+			fireTableRowsDeleted(0, lastRow);
+		}
+
+	@Override protected final int currentRowCount() { return size(fRoot); }
+	@Override protected final Object currentRow(int r) { return entryAt(r).fOrder; }
+
+	/** One in order walk of the tree rather than a descent per row */
+	@Override protected final void copyRows(Object[] aRows, int aCount)
+		{
+		copy(fRoot, aRows, 0, aCount);
+		}
+
+	/** @return the order displayed in the specified table row */
+	@SuppressWarnings("unchecked")
+	public final T getDisplayedRow(int r)
+		{
+		if (!isCoalescing())
+			synchronized (this) { return (r < size(fRoot))? entryAt(r).fOrder : null; }
+		return (T)viewRow(r);
+		}
+
+	/** @return the order in the specified row now */
+	public final synchronized T getRow(int r) { return entryAt(r).fOrder; }
+	public final synchronized int size() { return size(fRoot); }
+
+	public void initColumns(javax.swing.JTable aTable) { fSource.initColumns(aTable); }
+
+	@Override public Object getValueAt(int r, int c)
+		{
+		T order = getDisplayedRow(r);
+		return (order == null)? "" : OrderList.valueOf(order, c);
+		}
+
+	@Override public final int    getColumnCount() { return OrderList.columnNames.length; }
+	@Override public final String getColumnName(int c) { return OrderList.columnNames[c]; }
+	@Override public final int    getRowCount()
+		{
+		if (isCoalescing())
+			return viewSize();
+		synchronized (this) { return size(fRoot); }
+		}
+	}
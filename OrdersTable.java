@@ -10,6 +10,9 @@ package com.wormtrader.broker;
 * 20120509 rts generalized for use with simulators
 * 20120514 rts added popup menu for order cancelation
 * 20130245 rts calls tracker's cancel method
+* 20261018 agent model publishes coalesced changes at DEFAULT_FPS
+* 20261018 agent may show an OrderView of the list
+* 20261018 agent typed models; cancel leaves the repaint to the list's row listener
 *******************************************************/
 import com.shanebow.ui.SBAction;
 import java.awt.event.*;
@@ -27,28 +30,57 @@ public class OrdersTable
 			{
 			@Override public void actionPerformed(ActionEvent e)
 				{
-				OrderList model = (OrderList)getModel();
-				OrderTracker ot = model.getRow(fClickedRow);
-				boolean wasSoft = ot.isSoft();
-				ot.cancel(true);
-				if (!wasSoft) // soft orders are removed from model, so don't update
-					model.fireTableCellUpdated(fClickedRow, OrderList.COL_STATE);
+				OrderTracker ot = displayedRow(fClickedRow);
+				if (ot == null) return;
+				ot.cancel(true); // the list's row listener repaints the row
 				}
 			};
 
-	public void setModel(OrderList aOrders)
+	private OrderTracker displayedRow(int r)
+		{
+		Object model = getModel();
+		return (model instanceof OrderView)? ((OrderView<?>)model).getDisplayedRow(r)
+		                                   : ((OrderList<?>)model).getDisplayedRow(r);
+		}
+
+	public void setModel(OrderView<?> aView)
+		{
+		super.setModel(aView);
+		aView.initColumns(this);
+		if (aView.getPublishRate() == 0)
+			aView.setPublishRate(CoalescingTableModel.DEFAULT_FPS);
+		}
+
+	public OrdersTable(OrderView<?> aView)
+		{
+		super(aView);
+		aView.initColumns(this);
+		if (aView.getPublishRate() == 0)
+			aView.setPublishRate(CoalescingTableModel.DEFAULT_FPS);
+		addPopup();
+		}
+
+	public void setModel(OrderList<?> aOrders)
 		{
 		super.setModel(aOrders);
 		aOrders.initColumns(this);
+		if (aOrders.getPublishRate() == 0)
+			aOrders.setPublishRate(CoalescingTableModel.DEFAULT_FPS);
 		}
 
-	public OrdersTable(OrderList aOrders)
+	public OrdersTable(OrderList<?> aOrders)
 		{
 		super(aOrders);
 		// set up to handle selection events
 //		setSelectionMode ( ListSelectionModel.SINGLE_SELECTION );
 		aOrders.initColumns(this);
+		if (aOrders.getPublishRate() == 0)
+			aOrders.setPublishRate(CoalescingTableModel.DEFAULT_FPS);
+		addPopup();
+		}
 
+	private void addPopup()
+		{
 		//Create the popup menu
 		fPopup = new JPopupMenu();
 		fPopup.add(fActTryCancel);
@@ -65,7 +97,8 @@ public class OrdersTable
 	//		public void mouseReleased (MouseEvent e) { showPopup(e); }
 			private void showPopup (MouseEvent e)
 				{
-				OrderTracker ot = ((OrderList)getModel()).getRow(fClickedRow);
+				OrderTracker ot = displayedRow(fClickedRow);
+				if (ot == null) return;
 				byte state = ot.getState();
 				fActTryCancel.setEnabled(ot.isCancelable());
 				fPopup.show (e.getComponent(), e.getX(), e.getY());
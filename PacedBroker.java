@@ -0,0 +1,305 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)PacedBroker.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* PacedBroker: Keeps the messages sent to a broker within its rate limit.
+* A token bucket allows a burst of messages, then the sustained rate;
+* messages beyond that are queued by priority and sent by a daemon thread
+* as tokens become available:
+*  - cancels first, since every one of them reduces risk
+*  - then stops, the protective ACT_STOP orders and STP orders
+*  - then everything else, in the order placed
+* While the queue is empty and a token is available, a message is sent
+* right away on the caller's thread.
+*
+* Queued messages that have become obsolete collapse: cancelling an order
+* whose placement is still queued drops both and cancels the order here,
+* and a repeated place or cancel of an order already queued is dropped.
+* A place taken from the queue, or sent right away, is in flight until
+* the broker's placeOrder() returns: a cancel of the order meanwhile is
+* held back and sent after it, so it can never reach the broker first.
+*
+* Reports the queue depth and the time messages wait in the queue.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent logs to each order's session log
+* 20261018 agent a cancel waits for its order's place in flight
+*******************************************************/
+import static com.wormtrader.broker.Broker.TYPE_STP;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class PacedBroker
+	extends BrokerFilter
+	{
+	public static final String MODULE="PacedBroker.";
+
+	/** Message priorities: lowest is sent first */
+	private static final byte CANCEL=(byte)0;
+	private static final byte STOP=(byte)1;
+	private static final byte ENTRY=(byte)2;
+
+	private static final class Message
+		implements Comparable<Message>
+		{
+		final byte         fPriority;
+		final long         fSeq;
+		final long         fQueuedNanos;
+		final OrderTracker fOrder;
+
+		Message(byte aPriority, long aSeq, OrderTracker aOrder)
+			{
+			fPriority = aPriority;
+			fSeq = aSeq;
+			fQueuedNanos = System.nanoTime();
+			fOrder = aOrder;
+			}
+
+		@Override public int compareTo(Message aOther)
+			{
+			return (fPriority != aOther.fPriority)? fPriority - aOther.fPriority
+			     : Long.compare(fSeq, aOther.fSeq);
+			}
+		}
+
+	private final double fPerNano;   // tokens earned per nanosecond
+	private final double fBurst;     // most tokens saved up
+	private double       fTokens;
+	private long         fRefilled;  // nanoTime of the last refill
+
+	private final PriorityQueue<Message> fQueue = new PriorityQueue<Message>();
+	private final Map<OrderTracker,Message> fQueuedPlace
+	                         = new IdentityHashMap<OrderTracker,Message>();
+	private final Map<OrderTracker,Message> fQueuedCancel
+	                         = new IdentityHashMap<OrderTracker,Message>();
+	/** Places in flight to the broker: TRUE once a cancel is held for one */
+	private final Map<OrderTracker,Boolean> fPlacing
+	                         = new IdentityHashMap<OrderTracker,Boolean>();
+	private long   fSeq;
+	private Thread fSender;
+
+	private final LatencyHistogram fWaits = new LatencyHistogram();
+	private int    fMaxDepth;
+	private long   fSent;
+	private long   fCollapsed;
+
+	/**
+	* @param aBroker the broker to which messages are sent
+	* @param aPerSecond the broker's sustained message rate
+	* @param aBurst the number of messages that may be sent at once
+	*/
+	public PacedBroker(Broker aBroker, double aPerSecond, int aBurst)
+		{
+		super(aBroker);
+		fPerNano = aPerSecond / 1e9;
+		fBurst = Math.max(1, aBurst);
+		fTokens = fBurst;
+		fRefilled = System.nanoTime();
+		}
+
+	@Override public void placeOrder(OrderTracker aTracker)
+		{
+		byte priority = (aTracker.act() == OrderTracker.ACT_STOP
+		              || aTracker.typeCode() == TYPE_STP)? STOP : ENTRY;
+		Message now;
+		synchronized (this)
+			{
+			if (fQueuedPlace.containsKey(aTracker) || fPlacing.containsKey(aTracker))
+				{
+				++fCollapsed;
+				return;
+				}
+			now = sendNow(priority, aTracker, fQueuedPlace);
+			}
+		if (now != null)
+			send(now);
+		}
+
+	@Override public void cancelOrder(OrderTracker aTracker)
+		{
+		Message now;
+		synchronized (this)
+			{
+			Message place = fQueuedPlace.remove(aTracker);
+			if (place != null) // never reached the broker
+				{
+				fQueue.remove(place);
+				fCollapsed += 2;
+				aTracker.setState(OrderTracker.CANCELED);
+				if (getLogOrders())
+					aTracker.getSession().getLog().log(MODULE + "cancel before sent %s", aTracker);
+				return;
+				}
+			Boolean held = fPlacing.get(aTracker);
+			if (held != null) // in flight: sent once it is placed
+				{
+				if (held)
+					++fCollapsed;
+				else
+					fPlacing.put(aTracker, Boolean.TRUE);
+				return;
+				}
+			if (fQueuedCancel.containsKey(aTracker))
+				{
+				++fCollapsed;
+				return;
+				}
+			now = sendNow(CANCEL, aTracker, fQueuedCancel);
+			}
+		if (now != null)
+			send(now);
+		}
+
+	/** Paced one at a time, so that cancels can overtake entries */
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		for (OrderTracker ot : aTrackers)
+			placeOrder(ot);
+		}
+
+	@Override public void cancelOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		for (OrderTracker ot : aTrackers)
+			cancelOrder(ot);
+		}
+
+	/**
+	* Takes a token for a new message if it may go right away, otherwise
+	* queues it. Called holding the lock.
+	* @return the message to send now, or null if it was queued
+	*/
+	private Message sendNow(byte aPriority, OrderTracker aTracker,
+		Map<OrderTracker,Message> aQueued)
+		{
+		Message it = new Message(aPriority, fSeq++, aTracker);
+		if (fQueue.isEmpty() && takeToken())
+			{
+			fWaits.record(0);
+			if (aPriority != CANCEL)
+				fPlacing.put(aTracker, Boolean.FALSE);
+			return it;
+			}
+		fQueue.add(it);
+		aQueued.put(aTracker, it);
+		if (fQueue.size() > fMaxDepth)
+			fMaxDepth = fQueue.size();
+		if (fSender == null)
+			startSender();
+		notifyAll();
+		return null;
+		}
+
+	private void send(Message aMessage)
+		{
+		OrderTracker order = aMessage.fOrder;
+		if (aMessage.fPriority == CANCEL)
+			fBroker.cancelOrder(order);
+		else try { fBroker.placeOrder(order); }
+		finally { placed(order); }
+		synchronized (this) { ++fSent; }
+		}
+
+	/**
+	* The order's place has been handed to the broker: a cancel held back
+	* meanwhile now goes the usual way
+	*/
+	private void placed(OrderTracker aTracker)
+		{
+		boolean held;
+		synchronized (this) { held = (fPlacing.remove(aTracker) == Boolean.TRUE); }
+		if (held)
+			cancelOrder(aTracker);
+		}
+
+	/** @return nanos until a token is available: 0 if one is */
+	private long refill()
+		{
+		long now = System.nanoTime();
+		fTokens = Math.min(fBurst, fTokens + (now - fRefilled) * fPerNano);
+		fRefilled = now;
+		return (fTokens >= 1.0)? 0 : (long)Math.ceil((1.0 - fTokens) / fPerNano);
+		}
+
+	private boolean takeToken()
+		{
+		if (refill() > 0)
+			return false;
+		fTokens -= 1.0;
+		return true;
+		}
+
+	private void startSender()
+		{
+		fSender = new Thread(new Runnable()
+			{
+			@Override public void run()
+				{
+				for (;;)
+					{
+					Message next;
+					try { next = nextMessage(); }
+					catch (InterruptedException e) { return; }
+					try { send(next); }
+					catch (RuntimeException e)
+						{
+						next.fOrder.getSession().getLog().log(MODULE + "send failed %s: %s",
+							next.fOrder, e.toString());
+						}
+					}
+				}
+			}, MODULE + "sender");
+		fSender.setDaemon(true);
+		fSender.start();
+		}
+
+	/** Waits for a message and a token to send it with */
+	private synchronized Message nextMessage()
+		throws InterruptedException
+		{
+		for (;;)
+			{
+			if (fQueue.isEmpty())
+				{
+				wait();
+				continue;
+				}
+			long nanos = refill();
+			if (nanos > 0)
+				{
+				wait(nanos / 1000000L, (int)(nanos % 1000000L));
+				continue;
+				}
+			fTokens -= 1.0;
+			Message it = fQueue.poll();
+			(it.fPriority == CANCEL? fQueuedCancel : fQueuedPlace).remove(it.fOrder);
+			if (it.fPriority != CANCEL)
+				fPlacing.put(it.fOrder, Boolean.FALSE);
+			fWaits.record(System.nanoTime() - it.fQueuedNanos);
+			return it;
+			}
+		}
+
+	/** @return the number of messages waiting to be sent */
+	public final synchronized int getQueueDepth() { return fQueue.size(); }
+	public final synchronized int getMaxQueueDepth() { return fMaxDepth; }
+
+	/** @return the messages sent to the broker */
+	public final synchronized long getSent() { return fSent; }
+
+	/** @return the messages dropped as obsolete before being sent */
+	public final synchronized long getCollapsed() { return fCollapsed; }
+
+	/** @return the time messages waited to be sent, including those that did not */
+	public final LatencyHistogram getWaitTimes() { return fWaits; }
+
+	@Override public synchronized String toString()
+		{
+		return "PacedBroker depth " + fQueue.size() + " max " + fMaxDepth
+		     + " sent " + fSent + " collapsed " + fCollapsed + " wait " + fWaits;
+		}
+	}
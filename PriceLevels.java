@@ -0,0 +1,218 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)PriceLevels.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* PriceLevels: SimBroker's queue model for one leg: for each price that
+* has traded or had an order queued at it, the cumulative volume traded
+* there and the simulated orders queued there. Keys and values are in
+* parallel arrays (open addressing, linear probing, as IntMap), so a tick
+* costs a probe or two and no allocation. Levels are only dropped by
+* clear(): a day's distinct prices are few. Not synchronized.
+*
+* Each queued order holds a Place in its level's queue, a doubly linked
+* list in the order queued. A place starts at its mark, the volume mark
+* past which the order fills, and spans the order's shares: its mark is
+* the later of its floor (the volume traded there plus the shares ahead
+* when it was queued) and the end of the place before it. An order that
+* is cancelled or reduced gives its shares up, and the marks of the
+* places behind it move forward as far as their floors allow.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.Arrays;
+
+final class PriceLevels
+	{
+	private static final int MIN_CAPACITY = 64;
+
+	private int[]     fPrices;
+	private boolean[] fUsed;
+	private long[]    fVolume; // traded at the price so far
+	private Place[]   fLast;   // the last order queued at the price, or null
+	private int       fSize;
+
+	/** A simulated order's place in the queue at its price */
+	static final class Place
+		{
+		final OrderTracker fOrder;
+		final int          fPrice;
+		final long         fFloor; // earliest mark: volume traded & shares ahead when queued
+		long               fMark;  // filled as the volume traded passes this
+		long               fQty;   // shares, positive
+		long               fBase;  // SimBroker: shares the order had filled when queued
+		Place              fPrev;
+		Place              fNext;
+
+		Place(OrderTracker aOrder, int aPrice, long aFloor, long aQty)
+			{
+			fOrder = aOrder;
+			fPrice = aPrice;
+			fFloor = aFloor;
+			fQty = aQty;
+			}
+
+		long end() { return fMark + fQty; }
+		}
+
+	PriceLevels()
+		{
+		fPrices = new int[MIN_CAPACITY];
+		fUsed = new boolean[MIN_CAPACITY];
+		fVolume = new long[MIN_CAPACITY];
+		fLast = new Place[MIN_CAPACITY];
+		}
+
+	private static int hash(int aKey)
+		{
+		int h = aKey * 0x9E3779B9;
+		return h ^ (h >>> 16);
+		}
+
+	/** @return the slot of the level at aPrice, creating it if need be */
+	private int level(int aPrice)
+		{
+		int mask = fPrices.length - 1;
+		int i = hash(aPrice) & mask;
+		while (fUsed[i])
+			{
+			if (fPrices[i] == aPrice)
+				return i;
+			i = (i + 1) & mask;
+			}
+		if (2 * (fSize + 1) > fPrices.length)
+			{
+			rehash(2 * fPrices.length);
+			return level(aPrice);
+			}
+		fUsed[i] = true;
+		fPrices[i] = aPrice;
+		fVolume[i] = 0;
+		fLast[i] = null;
+		++fSize;
+		return i;
+		}
+
+	private void rehash(int aCapacity)
+		{
+		int[]     prices = fPrices;
+		boolean[] used = fUsed;
+		long[]    volume = fVolume;
+		Place[]   last = fLast;
+		fPrices = new int[aCapacity];
+		fUsed = new boolean[aCapacity];
+		fVolume = new long[aCapacity];
+		fLast = new Place[aCapacity];
+		int mask = aCapacity - 1;
+		for (int j = 0; j < prices.length; j++)
+			if (used[j])
+				{
+				int i = hash(prices[j]) & mask;
+				while (fUsed[i])
+					i = (i + 1) & mask;
+				fUsed[i] = true;
+				fPrices[i] = prices[j];
+				fVolume[i] = volume[j];
+				fLast[i] = last[j];
+				}
+		}
+
+	int size() { return fSize; }
+
+	/** @return the volume traded at the price, once this trade is added */
+	long trade(int aPrice, long aVolume)
+		{
+		int i = level(aPrice); // first: it may grow the arrays
+		return fVolume[i] += aVolume;
+		}
+
+	long volume(int aPrice)
+		{
+		int i = level(aPrice);
+		return fVolume[i];
+		}
+
+	/**
+	* Queues aQty shares of the order at the price behind aAhead shares
+	* that were there already and behind any simulated orders queued before
+	* @return the order's place: it is filled as the volume traded at the
+	* price passes the place's mark
+	*/
+	Place enqueue(OrderTracker aOrder, int aPrice, long aAhead, long aQty)
+		{
+		int i = level(aPrice);
+		Place it = new Place(aOrder, aPrice, fVolume[i] + aAhead, aQty);
+		Place last = fLast[i];
+		it.fMark = (last == null)? it.fFloor : Math.max(it.fFloor, last.end());
+		it.fPrev = last;
+		if (last != null)
+			last.fNext = it;
+		fLast[i] = it;
+		return it;
+		}
+
+	/**
+	* Takes the place out of its queue, the places behind it moving
+	* forward into the shares it gives up: for an order cancelled or
+	* moved to another price
+	*/
+	void release(Place aPlace)
+		{
+		Place next = aPlace.fNext;
+		unlink(aPlace);
+		advance(next);
+		}
+
+	/**
+	* Takes the place of a filled order out of its queue: the volume has
+	* passed it, so the places behind it stay where they are
+	*/
+	void leave(Place aPlace) { unlink(aPlace); }
+
+	/**
+	* Shrinks the place to aQty shares, the places behind it moving forward
+	* into the shares given up: for an order whose quantity was reduced,
+	* which keeps its place
+	*/
+	void resize(Place aPlace, long aQty)
+		{
+		aPlace.fQty = aQty;
+		advance(aPlace.fNext);
+		}
+
+	private void unlink(Place aPlace)
+		{
+		if (aPlace.fPrev != null)
+			aPlace.fPrev.fNext = aPlace.fNext;
+		if (aPlace.fNext != null)
+			aPlace.fNext.fPrev = aPlace.fPrev;
+		else
+			{
+			int i = level(aPlace.fPrice);
+			if (fLast[i] == aPlace)
+				fLast[i] = aPlace.fPrev;
+			}
+		aPlace.fPrev = aPlace.fNext = null;
+		}
+
+	/** Brings the marks from aPlace back to the queue, down to their floors */
+	private static void advance(Place aPlace)
+		{
+		for (Place p = aPlace; p != null; p = p.fNext)
+			{
+			long mark = (p.fPrev == null)? p.fFloor : Math.max(p.fFloor, p.fPrev.end());
+			if (mark == p.fMark)
+				return; // the rest of the queue is unchanged
+			p.fMark = mark;
+			}
+		}
+
+	void clear()
+		{
+		Arrays.fill(fUsed, false);
+		Arrays.fill(fLast, null);
+		fSize = 0;
+		}
+	}
@@ -0,0 +1,62 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)RiskBroker.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* RiskBroker: Checks every order against a RiskEngine before passing it
+* on to the broker, whether it comes from OrderTracker.send(), DlgOrder
+* or a strategy. A rejected order is never sent: it is put in the ERROR
+* state with the reason as its status, as a broker's rejection would be.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class RiskBroker
+	extends BrokerFilter
+	{
+	public static final String MODULE="RiskBroker.";
+
+	private final RiskEngine fEngine;
+
+	public RiskBroker(Broker aBroker, RiskEngine aEngine)
+		{
+		super(aBroker);
+		fEngine = aEngine;
+		}
+
+	public final RiskEngine getEngine() { return fEngine; }
+
+	@Override public void placeOrder(OrderTracker aTracker)
+		{
+		if (approve(aTracker))
+			fBroker.placeOrder(aTracker);
+		}
+
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		List<OrderTracker> approved = new ArrayList<OrderTracker>(aTrackers.size());
+		for (OrderTracker ot : aTrackers)
+			if (approve(ot))
+				approved.add(ot);
+		if (!approved.isEmpty())
+			fBroker.placeOrders(approved);
+		}
+
+	private boolean approve(OrderTracker aTracker)
+		{
+		String why = fEngine.approve(aTracker);
+		if (why == null)
+			return true;
+		aTracker.setStatus("Risk", why);
+		aTracker.setState(OrderTracker.ERROR);
+		OrderLog log = aTracker.getSession().getLog();
+		if (getLogOrders() || log.isEnabled())
+			log.log(MODULE + "rejected %s: %s", aTracker, why);
+		return false;
+		}
+	}
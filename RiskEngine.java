@@ -0,0 +1,203 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)RiskEngine.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* RiskEngine: Pre-trade risk checks in constant time. Rather than summing
+* the order list and the legs for every new order, the engine keeps
+* running totals that it adjusts as each tracked order changes state or
+* fills:
+*  - the gross and net notional of the working orders and the positions
+*  - per leg, the position and the open buy and sell quantities
+*  - the rate of orders approved per second
+* Each order carries the quantities the engine last booked for it, so an
+* update only applies the difference.
+*
+* Positions are valued at the price of the leg's last fill, as reported
+* with OrderTracker.setFilled(int,int), or at the order's valuation price
+* if the broker did not report one. Working orders are valued at their
+* limit, or at the leg's last price for market orders.
+*
+* RiskBroker puts an engine in front of a broker. A limit of zero is not
+* checked.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RiskEngine
+	implements OrderStateListener
+	{
+	private static final long NANOS_PER_SEC = 1000000000L;
+
+	/** Running totals for one leg */
+	private static final class Exposure
+		{
+		long fPosition;  // filled shares, signed
+		int  fMark;      // price of the last fill, cents
+		long fOpenBuy;   // unfilled shares of working buys
+		long fOpenSell;  // unfilled shares of working sells, positive
+		long positionNotional() { return fPosition * fMark; }
+		}
+
+	private final Map<PositionLeg,Exposure> fExposures
+	                               = new HashMap<PositionLeg,Exposure>();
+	private long fGross;      // cents: |working orders| + |positions|
+	private long fNet;        // cents: signed
+	private long fWindowStart = System.nanoTime();
+	private int  fThisWindow; // orders approved in the current second...
+	private int  fLastWindow; // ...and in the one before
+
+	private long fMaxGross;
+	private long fMaxNet;
+	private long fMaxPosition;
+	private int  fMaxPerSecond;
+
+	/** @param aCents the most gross notional, working and filled, or 0 */
+	public final synchronized void setMaxGross(long aCents) { fMaxGross = aCents; }
+	/** @param aCents the most net notional either way, or 0 */
+	public final synchronized void setMaxNet(long aCents) { fMaxNet = aCents; }
+	/** @param aShares the largest position a leg could reach if every working order filled, or 0 */
+	public final synchronized void setMaxPosition(long aShares) { fMaxPosition = aShares; }
+	/** @param aOrders the most orders approved per second, or 0 */
+	public final synchronized void setMaxPerSecond(int aOrders) { fMaxPerSecond = aOrders; }
+
+	public final synchronized long getGross() { return fGross; }
+	public final synchronized long getNet() { return fNet; }
+
+	/** @return the leg's filled position, in shares */
+	public final synchronized long getPosition(PositionLeg aLeg)
+		{
+		Exposure it = fExposures.get(aLeg);
+		return (it == null)? 0 : it.fPosition;
+		}
+
+	/** @return the leg's working quantity: buys less sells */
+	public final synchronized long getOpenQty(PositionLeg aLeg)
+		{
+		Exposure it = fExposures.get(aLeg);
+		return (it == null)? 0 : it.fOpenBuy - it.fOpenSell;
+		}
+
+	/** @return the orders approved over about the last second */
+	public final synchronized int getOrdersPerSecond() { return rate(System.nanoTime()); }
+
+	/** @return the price at which the order's exposure is valued */
+	protected int priceOf(OrderTracker aOrder)
+		{
+		int lmt = aOrder.getLmt();
+		return (lmt != 0)? lmt : aOrder.leg().getLast().cents();
+		}
+
+	private Exposure exposure(PositionLeg aLeg)
+		{
+		Exposure it = fExposures.get(aLeg);
+		if (it == null)
+			fExposures.put(aLeg, it = new Exposure());
+		return it;
+		}
+
+	/** Sliding estimate: the last window weighted by how much of it is in the last second */
+	private int rate(long aNow)
+		{
+		long elapsed = aNow - fWindowStart;
+		if (elapsed >= 2 * NANOS_PER_SEC)
+			{
+			fLastWindow = fThisWindow = 0;
+			fWindowStart = aNow;
+			elapsed = 0;
+			}
+		else if (elapsed >= NANOS_PER_SEC)
+			{
+			fLastWindow = fThisWindow;
+			fThisWindow = 0;
+			fWindowStart += NANOS_PER_SEC;
+			elapsed -= NANOS_PER_SEC;
+			}
+		return fThisWindow
+		     + (int)(fLastWindow * (NANOS_PER_SEC - elapsed) / NANOS_PER_SEC);
+		}
+
+	/**
+	* Checks a new order against the limits and if it passes, counts it and
+	* starts tracking it: the caller should then send the order.
+	* @return null if the order is approved, or why it is rejected
+	*/
+	public synchronized String approve(OrderTracker aOrder)
+		{
+		long qty = aOrder.qty() - aOrder.getFilled();
+		long notional = qty * priceOf(aOrder);
+		long now = System.nanoTime();
+		if (fMaxPerSecond > 0 && rate(now) >= fMaxPerSecond)
+			return "over " + fMaxPerSecond + " orders/sec";
+		if (fMaxGross > 0 && fGross + Math.abs(notional) > fMaxGross)
+			return "gross notional over " + fMaxGross;
+		if (fMaxNet > 0 && Math.abs(fNet + notional) > fMaxNet)
+			return "net notional over " + fMaxNet;
+		if (fMaxPosition > 0)
+			{
+			Exposure e = fExposures.get(aOrder.leg());
+			long position = (e == null)? 0 : e.fPosition;
+			long worst = (qty > 0)? position + qty + ((e == null)? 0 : e.fOpenBuy)
+			                      : position + qty - ((e == null)? 0 : e.fOpenSell);
+			if (Math.abs(worst) > fMaxPosition)
+				return "position could reach " + worst;
+			}
+		++fThisWindow;
+		aOrder.addStateListener(this);
+		book(aOrder);
+		return null;
+		}
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		synchronized (this) { book(aOrder); }
+		if (aTo == OrderTracker.FILLED || aTo == OrderTracker.CANCELED
+		||  aTo == OrderTracker.ERROR)
+			aOrder.removeStateListener(this);
+		}
+
+	/** Brings the totals up to date with the order: holding the lock */
+	private void book(OrderTracker aOrder)
+		{
+		Exposure e = exposure(aOrder.leg());
+		int price = priceOf(aOrder);
+
+		int filled = aOrder.getFilled();
+		int newFill = filled - aOrder.fRiskFilled;
+		if (newFill != 0)
+			{
+			long before = e.positionNotional();
+			int fillPrice = aOrder.getFillPrice();
+			e.fPosition += newFill;
+			e.fMark = (fillPrice != 0)? fillPrice : price;
+			long after = e.positionNotional();
+			fGross += Math.abs(after) - Math.abs(before);
+			fNet += after - before;
+			aOrder.fRiskFilled = filled;
+			}
+
+		byte state = aOrder.getState();
+		boolean working = aOrder.isAtBroker() || state == OrderTracker.PART_FILL;
+		int open = working? aOrder.qty() - filled : 0;
+		long notional = (long)open * price;
+		fGross += Math.abs(notional) - Math.abs(aOrder.fRiskNotional);
+		fNet += notional - aOrder.fRiskNotional;
+		if (aOrder.fRiskOpen > 0) e.fOpenBuy -= aOrder.fRiskOpen;
+		else e.fOpenSell += aOrder.fRiskOpen;
+		if (open > 0) e.fOpenBuy += open;
+		else e.fOpenSell -= open;
+		aOrder.fRiskOpen = open;
+		aOrder.fRiskNotional = notional;
+		}
+
+	@Override public synchronized String toString()
+		{
+		return "Risk gross " + fGross + " net " + fNet + " legs " + fExposures.size()
+		     + " orders/sec " + rate(System.nanoTime());
+		}
+	}
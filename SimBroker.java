@@ -0,0 +1,437 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)SimBroker.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* SimBroker: A Broker for backtests that matches MKT, LMT and STP orders
+* against a stream of ticks. The resting orders of each leg are kept in a
+* TriggerBook so a tick only visits the orders it crosses, and nothing is
+* allocated per tick, so a day of ticks replays in a few seconds.
+*
+* Orders are acknowledged (OPEN) as soon as they are placed. A market
+* order fills at the leg's last price if one has been seen, otherwise on
+* the next tick. A stop order fills at the price of the first tick that
+* crosses it. A resting limit order fills at its limit, never at a better
+* price than it asked for, even when a tick gaps through it. Executions are tallied by symbol and strategy
+* in an ExecsTally.
+*
+* With the queue model on, a limit order that is only touched fills no
+* faster than the volume traded at its price could reach it: it joins
+* the back of the queue at its price, behind getQueueAhead() shares (or
+* what queueAhead() estimates) and behind the simulated orders queued
+* there before it, and each trade at the price moves the queue forward
+* by the trade's volume, filling the order in parts (PART_FILL) once it
+* is at the front. A trade through the limit fills the rest at the
+* limit. Ticks must then carry their volume: see tick(leg,price,volume).
+* A cancelled order gives up its place to the orders queued behind it.
+*
+* A limit order that is marketable when placed, or when modified, fills
+* at once at the leg's last price: with the queue model, one at the last
+* price joins the queue instead. The broker listens to its working
+* orders, so a modified order moves in its book, and in the queue model
+* keeps its place if only its quantity was reduced, or else goes to the
+* back of the queue at its new price.
+*
+* Orders are logged, when logging is on, to the log of their own
+* BrokerSession, so that backtests running side by side keep apart. The
+* broker keeps its own OrderLatency, which a BrokerSession created for it
+* records its orders' transitions in.
+*
+* With an OrderPool set, orders are removed from the order list as soon
+* as they fill or are cancelled, and recycled: strategies then create
+* their orders with getPool().acquire() and forget them once done.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent rejects orders of TYPE_OTHER
+* 20261018 agent order logging through the OrderLog ring
+* 20261018 agent logs to each order's session log, keeps its own OrderLatency
+* 20261018 agent optional OrderPool: done orders leave the list and recycle
+* 20261018 agent an order whose cancel was requested before it arrived is cancelled
+* 20261018 agent reports the fill price with each fill
+* 20261018 agent optional queue position model for partial limit fills, requeued on modify
+* 20261018 agent marketable limits fill when placed or modified
+* 20261018 agent resting limits fill at the limit, with or without the queue model
+* 20261018 agent typed getOrderList()
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SimBroker
+	implements Broker
+	{
+	public static final String MODULE="SimBroker.";
+
+	private final OrderList<OrderTracker> fOrders = new OrderList<OrderTracker>();
+	private final ExecsTally fExecs = new ExecsTally();
+	private final OrderLatency fLatency = new OrderLatency();
+	private final Map<PositionLeg, RestingBook> fBooks
+	                                = new HashMap<PositionLeg, RestingBook>();
+	private PositionLeg fTickLeg;  // leg of the most recent tick...
+	private RestingBook fTickBook; // ...and its book, to skip the map lookup
+	private long        fTime;
+	private boolean     fLogOrders;
+	private int         fNextID = 1;
+	private OrderPool   fPool;
+	private boolean     fQueueModel;
+	private long        fQueueAhead;
+
+	@Override public void setTime(long aTime) { fTime = aTime; }
+	@Override public long time() { return fTime; }
+
+	@Override public boolean getLogOrders() { return fLogOrders; }
+	@Override public void setLogOrders(boolean on) { fLogOrders = on; }
+
+	@Override public OrderList<OrderTracker> getOrderList() { return fOrders; }
+	public final ExecsSummary getExecsSummary() { return fExecs.snapshot(); }
+	public final ExecsTally getExecsTally() { return fExecs; }
+
+	/** @return the latency of the orders of the sessions created for this broker */
+	@Override public OrderLatency getOrderLatency() { return fLatency; }
+
+	/** Opts in to recycling orders through aPool, or out if null */
+	public final void setPool(OrderPool aPool)
+		{
+		fPool = aPool;
+		fOrders.setPool(aPool);
+		}
+	public final OrderPool getPool() { return fPool; }
+
+	/**
+	* Turns the queue position model on or off for the orders placed from
+	* now on: off, a limit order fills in full when a tick touches it
+	*/
+	public final void setQueueModel(boolean on) { fQueueModel = on; }
+	public final boolean isQueueModel() { return fQueueModel; }
+
+	/** @param aShares the shares assumed to be queued ahead of a new limit order */
+	public final void setQueueAhead(long aShares) { fQueueAhead = Math.max(0, aShares); }
+	public final long getQueueAhead() { return fQueueAhead; }
+
+	/**
+	* Override to estimate, for instance from market depth, the shares
+	* queued at the price ahead of a new limit order
+	*/
+	protected long queueAhead(OrderTracker aTracker, int aPrice) { return fQueueAhead; }
+
+	/** Follows the working orders' modifications until they are done */
+	private final OrderStateListener fWatcher = new OrderStateListener()
+		{
+		@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+			{
+			if (aTo == OrderTracker.FILLED || aTo == OrderTracker.CANCELED
+			||  aTo == OrderTracker.ERROR)
+				aOrder.removeStateListener(this);
+			}
+
+		@Override public void orderModified(OrderTracker aOrder) { modified(aOrder); }
+		};
+
+	/** Clears all orders, executions and books for a new run */
+	public void reset()
+		{
+		for (RestingBook book : fBooks.values())
+			book.clear();
+		fBooks.clear();
+		fTickLeg = null;
+		fTickBook = null;
+		fOrders.clear();
+		fExecs.reset();
+		fLatency.reset();
+		fNextID = 1;
+		}
+
+	private RestingBook book(PositionLeg aLeg)
+		{
+		if (aLeg == fTickLeg)
+			return fTickBook;
+		RestingBook book = fBooks.get(aLeg);
+		if (book == null)
+			{
+			book = new RestingBook();
+			fBooks.put(aLeg, book);
+			}
+		fTickLeg = aLeg;
+		fTickBook = book;
+		return book;
+		}
+
+	@Override public void placeOrder(OrderTracker aTracker)
+		{
+		aTracker.setID(fNextID++);
+		aTracker.transition(OrderTracker.SENT); // unless already sent
+		if (aTracker.getState() != OrderTracker.SENT) // cancelled on the way
+			{
+			if (!aTracker.transition(OrderTracker.CANCELED))
+				return;
+			if (fLogOrders)
+				aTracker.getSession().getLog().log(MODULE + "cancel before placed %s", aTracker);
+			fOrders.add(aTracker);
+			retire(aTracker);
+			return;
+			}
+		if (aTracker.typeCode() == TYPE_OTHER)
+			{
+			aTracker.setStatus("Rejected", aTracker.type() + " orders are not simulated");
+			aTracker.setState(OrderTracker.ERROR);
+			fOrders.add(aTracker);
+			retire(aTracker);
+			return;
+			}
+		aTracker.setState(OrderTracker.OPEN);
+		fOrders.add(aTracker);
+		if (fLogOrders)
+			aTracker.getSession().getLog().log(MODULE + "place %s", aTracker);
+		RestingBook book = book(aTracker.leg());
+		if (isMarketable(aTracker, book))
+			{
+			fill(aTracker, book.fLast);
+			retire(aTracker);
+			}
+		else
+			{
+			if (fQueueModel && aTracker.typeCode() == TYPE_LMT)
+				enqueue(aTracker, book);
+			book.add(aTracker);
+			aTracker.addStateListener(fWatcher);
+			}
+		}
+
+	/**
+	* @return true if the order fills at the leg's last price now: a market
+	* order, or a limit order through the last price, or at it unless the
+	* queue model has it wait its turn
+	*/
+	private boolean isMarketable(OrderTracker aTracker, RestingBook aBook)
+		{
+		int last = aBook.fLast;
+		if (last == 0)
+			return false;
+		byte type = aTracker.typeCode();
+		if (type == TYPE_MKT)
+			return true;
+		int lmt = aTracker.getLmt();
+		if (type != TYPE_LMT || (fQueueModel && last == lmt))
+			return false;
+		return (aTracker.qty() > 0)? last <= lmt : last >= lmt;
+		}
+
+	/** Queues the unfilled shares of a limit order at the back of its price */
+	private void enqueue(OrderTracker aTracker, RestingBook aBook)
+		{
+		int lmt = aTracker.getLmt();
+		long filled = Math.abs(aTracker.getFilled());
+		PriceLevels.Place place = aBook.fLevels.enqueue(aTracker, lmt,
+			queueAhead(aTracker, lmt), Math.abs(aTracker.qty()) - filled);
+		place.fBase = filled;
+		aTracker.fQueuePlace = place;
+		}
+
+	/** Gives up the order's place in the queue, if it has one */
+	private static void dequeue(OrderTracker aTracker, RestingBook aBook)
+		{
+		PriceLevels.Place place = aTracker.fQueuePlace;
+		if (place == null)
+			return;
+		aBook.fLevels.release(place);
+		aTracker.fQueuePlace = null;
+		}
+
+	/**
+	* A working order was modified: it keeps its place in the queue if only
+	* its quantity went down, else goes to the back of the queue at its
+	* price; it fills at once if now marketable, or moves in the book
+	*/
+	private void modified(OrderTracker aTracker)
+		{
+		byte state = aTracker.getState();
+		if (!aTracker.isAtBroker() && state != OrderTracker.PART_FILL)
+			return;
+		RestingBook book = book(aTracker.leg());
+		PriceLevels.Place place = aTracker.fQueuePlace;
+		long unfilled = Math.abs(aTracker.qty()) - Math.abs(aTracker.getFilled());
+		if (place != null)
+			{
+			long qty = unfilled + Math.abs(aTracker.getFilled()) - place.fBase;
+			if (aTracker.typeCode() == TYPE_LMT && aTracker.getLmt() == place.fPrice
+			&&  qty <= place.fQty)
+				book.fLevels.resize(place, qty);
+			else
+				dequeue(aTracker, book);
+			}
+		if (fQueueModel && aTracker.fQueuePlace == null && aTracker.typeCode() == TYPE_LMT)
+			enqueue(aTracker, book);
+		if (isMarketable(aTracker, book) && unfilled > 0)
+			{
+			book.remove(aTracker);
+			dequeue(aTracker, book);
+			fill(aTracker, book.fLast);
+			retire(aTracker);
+			}
+		else
+			book.reprice(aTracker);
+		}
+
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		fOrders.beginBatch();
+		try
+			{
+			for (OrderTracker ot : aTrackers)
+				placeOrder(ot);
+			}
+		finally { fOrders.endBatch(); }
+		}
+
+	@Override public void cancelOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		fOrders.beginBatch();
+		try
+			{
+			for (OrderTracker ot : aTrackers)
+				cancelOrder(ot);
+			}
+		finally { fOrders.endBatch(); }
+		}
+
+	@Override public void cancelOrder(OrderTracker aTracker)
+		{
+		RestingBook book = book(aTracker.leg());
+		book.remove(aTracker);
+		dequeue(aTracker, book);
+		byte state = aTracker.getState();
+		if (state == OrderTracker.FILLED || state == OrderTracker.CANCELED)
+			return;
+		aTracker.setState(OrderTracker.CANCELED);
+		if (fLogOrders)
+			aTracker.getSession().getLog().log(MODULE + "cancel %s", aTracker);
+		fOrders.updated(aTracker);
+		retire(aTracker);
+		}
+
+	/** With a pool, removes a done order from the list to be recycled */
+	private void retire(OrderTracker aTracker)
+		{
+		if (fPool != null)
+			fOrders.remove(aTracker);
+		}
+
+	/**
+	* Feeds a trade to the broker, filling the resting orders on aLeg that
+	* are crossed by aPrice: with the queue model, a trade of no volume.
+	* @return the number of orders filled
+	*/
+	public final int tick(PositionLeg aLeg, int aPrice)
+		{
+		return tick(aLeg, aPrice, 0);
+		}
+
+	/**
+	* Feeds a trade of aVolume shares to the broker, filling the resting
+	* orders on aLeg that are crossed by aPrice, or with the queue model,
+	* the parts of the orders at aPrice that the volume reaches.
+	* @return the number of orders filled completely
+	*/
+	public final int tick(PositionLeg aLeg, int aPrice, long aVolume)
+		{
+		RestingBook book = book(aLeg);
+		book.fLast = aPrice;
+		book.fTraded = book.fLevels.trade(aPrice, aVolume);
+		int filled = book.trigger(aPrice);
+		if (fPool != null)
+			for (int i = 0; i < filled; i++)
+				fOrders.remove(book.getTriggered(i));
+		return filled;
+		}
+
+	/**
+	* Fills the unfilled part of the order at the specified price and
+	* tallies the execution
+	*/
+	protected void fill(OrderTracker aTracker, int aPrice)
+		{
+		fill(aTracker, aTracker.qty() - aTracker.getFilled(), aPrice);
+		}
+
+	/**
+	* Fills part of the order at the specified price and tallies the
+	* execution
+	* @param aQty signed quantity of this execution
+	*/
+	protected void fill(OrderTracker aTracker, int aQty, int aPrice)
+		{
+		int qty = aQty;
+		aTracker.setFilled(aTracker.getFilled() + qty, aPrice);
+		PriceLevels.Place place = aTracker.fQueuePlace;
+		if (place != null && aTracker.getState() == OrderTracker.FILLED)
+			{
+			book(aTracker.leg()).fLevels.leave(place); // passed by the volume
+			aTracker.fQueuePlace = null;
+			}
+		fExecs.record(aTracker, qty, aPrice);
+		if (fLogOrders)
+			aTracker.getSession().getLog().log(MODULE + "fill %d @ %d %s", qty, aPrice, aTracker);
+		fOrders.updated(aTracker);
+		filled(aTracker, qty, aPrice);
+		}
+
+	/**
+	* Hook for the simulator to update positions when an order is filled.
+	* @param aQty signed quantity of this execution
+	*/
+	protected void filled(OrderTracker aTracker, int aQty, int aPrice) {}
+
+	/**
+	* The resting orders for one leg, filled when crossed by a tick
+	*/
+	private final class RestingBook
+		extends TriggerBook<OrderTracker>
+		{
+		int  fLast;   // last trade price seen for the leg
+		long fTraded; // volume traded at fLast, this tick included
+		final PriceLevels fLevels = new PriceLevels();
+
+		@Override protected boolean onTrigger(OrderTracker aTracker, int aPrice)
+			{
+			byte state = aTracker.getState();
+			if (!aTracker.isAtBroker() && state != OrderTracker.PART_FILL)
+				return true;
+			PriceLevels.Place place = aTracker.fQueuePlace;
+			if (place == null)
+				fill(aTracker, fillPrice(aTracker, aPrice));
+			else if (aPrice != place.fPrice) // traded through
+				fill(aTracker, place.fPrice);
+			else // touched: fill as far as the volume reaches
+				{
+				int qty = aTracker.qty();
+				long reached = place.fBase
+				             + Math.min(place.fQty, Math.max(0, fTraded - place.fMark));
+				int due = (int)reached - Math.abs(aTracker.getFilled());
+				if (due > 0)
+					fill(aTracker, (qty > 0)? due : -due, aPrice);
+				}
+			return aTracker.getState() == OrderTracker.FILLED;
+			}
+
+		/**
+		* @return the price a triggered order fills at: a limit order's
+		* limit or the trade's price, whichever is worse for the order
+		*/
+		private int fillPrice(OrderTracker aTracker, int aPrice)
+			{
+			if (aTracker.typeCode() != TYPE_LMT)
+				return aPrice;
+			int lmt = aTracker.getLmt();
+			return (aTracker.qty() > 0)? Math.max(aPrice, lmt) : Math.min(aPrice, lmt);
+			}
+
+		@Override public void clear()
+			{
+			super.clear();
+			fLevels.clear();
+			}
+		}
+	}
@@ -0,0 +1,281 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TickFile.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TickFile: A compact binary file of trade ticks, read through memory
+* maps so that a replay neither parses nor copies: each tick is a fixed
+* 20 byte record read in place.
+*
+* The file is little endian:
+*  - header: int magic "WTTK", int version, long tick count, long offset
+*    of the symbol table, 8 bytes reserved
+*  - the ticks from byte 32: long time (broker time), int symbol (index
+*    into the symbol table), int price (cents), int volume
+*  - the symbol table: int count, then per symbol a short byte count and
+*    its UTF-8 bytes: the underlying, then a space and the option
+*    description for an option
+* Large files are mapped a chunk at a time, each chunk a whole number of
+* ticks.
+*
+* convert() writes a tick file from CSV lines of time,symbol,price[,volume]
+* with the price in dollars, such as 1349872200,IBM,203.45,300, which
+* must be in time order.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class TickFile
+	implements Closeable
+	{
+	public static final String MODULE="TickFile.";
+	public static final int MAGIC = 0x4B545457; // "WTTK" little endian
+	public static final int VERSION = 1;
+	static final int HEADER = 32;
+	static final int RECORD = 20;
+	private static final int CHUNK_BITS = 26;  // ticks per mapped chunk: 2^26
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private final RandomAccessFile fFile;
+	private final FileChannel fChannel;
+	private final long        fSize;
+	private final String[]    fSymbols;
+	private final MappedByteBuffer[] fChunks;
+
+	/** Opens and maps an existing tick file for reading */
+	public TickFile(File aFile)
+		throws IOException
+		{
+		fFile = new RandomAccessFile(aFile, "r");
+		fChannel = fFile.getChannel();
+		ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(header, 0);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+			throw new IOException(MODULE + aFile + " is not a version "
+			                      + VERSION + " tick file");
+		fSize = header.getLong(8);
+		long symbolsAt = header.getLong(16);
+		if (symbolsAt != HEADER + fSize * RECORD || symbolsAt > fChannel.size())
+			throw new IOException(MODULE + aFile + " is truncated");
+
+		ByteBuffer table = ByteBuffer.allocate((int)(fChannel.size() - symbolsAt))
+		                             .order(ByteOrder.LITTLE_ENDIAN);
+		readFully(table, symbolsAt);
+		fSymbols = new String[table.getInt()];
+		for (int i = 0; i < fSymbols.length; i++)
+			{
+			byte[] utf8 = new byte[table.getShort()];
+			table.get(utf8);
+			fSymbols[i] = new String(utf8, StandardCharsets.UTF_8);
+			}
+		fChunks = new MappedByteBuffer[(int)((fSize + CHUNK_MASK) >>> CHUNK_BITS)];
+		}
+
+	private void readFully(ByteBuffer aBuffer, long aAt)
+		throws IOException
+		{
+		while (aBuffer.hasRemaining())
+			if (fChannel.read(aBuffer, aAt + aBuffer.position()) < 0)
+				throw new IOException(MODULE + "unexpected end of file");
+		aBuffer.flip();
+		}
+
+	/** @return the ticks in the file */
+	public long size() { return fSize; }
+
+	public int getSymbolCount() { return fSymbols.length; }
+	public String getSymbol(int aIndex) { return fSymbols[aIndex]; }
+
+	/**
+	* @return the mapped chunk holding tick i, whose record starts at
+	* offset(i) in it: mapped on first use
+	*/
+	ByteBuffer chunk(long i)
+		{
+		int c = (int)(i >>> CHUNK_BITS);
+		MappedByteBuffer it = fChunks[c];
+		if (it == null)
+			{
+			long first = (long)c << CHUNK_BITS;
+			long ticks = Math.min(fSize - first, 1L << CHUNK_BITS);
+			try
+				{
+				it = fChannel.map(FileChannel.MapMode.READ_ONLY,
+				                  HEADER + first * RECORD, ticks * RECORD);
+				}
+			catch (IOException e)
+				{
+				throw new IllegalStateException(MODULE + "cannot map ticks from " + first, e);
+				}
+			it.order(ByteOrder.LITTLE_ENDIAN);
+			fChunks[c] = it;
+			}
+		return it;
+		}
+
+	/** @return the offset of tick i's record in its chunk */
+	static int offset(long i) { return ((int)i & CHUNK_MASK) * RECORD; }
+
+	public long time(long i)   { return chunk(i).getLong(offset(i)); }
+	public int  symbol(long i) { return chunk(i).getInt(offset(i) + 8); }
+	public int  price(long i)  { return chunk(i).getInt(offset(i) + 12); }
+	public int  volume(long i) { return chunk(i).getInt(offset(i) + 16); }
+
+	/** @return the first tick at or after the broker time: ticks are in time order */
+	public long find(long aTime)
+		{
+		long lo = 0;
+		long hi = fSize;
+		while (lo < hi)
+			{
+			long mid = (lo + hi) >>> 1;
+			if (time(mid) < aTime)
+				lo = mid + 1;
+			else
+				hi = mid;
+			}
+		return lo;
+		}
+
+	@Override public void close()
+		throws IOException
+		{
+		fFile.close();
+		}
+
+	/**
+	* Writes a tick file from CSV lines of time,symbol,price[,volume], the
+	* price in dollars, in time order. Blank lines and lines starting with #
+	* are skipped.
+	* @return the number of ticks written
+	* @throws IOException if a line cannot be parsed, giving its number
+	*/
+	public static long convert(File aCSV, File aTicks)
+		throws IOException
+		{
+		Map<String,Integer> symbols = new HashMap<String,Integer>();
+		List<String> names = new ArrayList<String>();
+		ByteBuffer out = ByteBuffer.allocateDirect(RECORD << 14).order(ByteOrder.LITTLE_ENDIAN);
+		long count = 0;
+		int lineNo = 0;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+		                         new FileInputStream(aCSV), StandardCharsets.UTF_8), 1 << 16);
+		     RandomAccessFile file = new RandomAccessFile(aTicks, "rw"))
+			{
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			long at = HEADER;
+			long last = Long.MIN_VALUE;
+			for (String line; (line = in.readLine()) != null; )
+				{
+				++lineNo;
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '#')
+					continue;
+				String[] fields = line.split(",");
+				if (fields.length < 3)
+					throw new IOException(MODULE + aCSV + " line " + lineNo + ": " + line);
+				try
+					{
+					String symbol = fields[1].trim();
+					Integer index = symbols.get(symbol);
+					if (index == null)
+						{
+						index = names.size();
+						names.add(symbol);
+						symbols.put(symbol, index);
+						}
+					long time = Long.parseLong(fields[0].trim());
+					if (time < last)
+						throw new IOException(MODULE + aCSV + " line " + lineNo
+						                      + ": out of time order: " + line);
+					last = time;
+					out.putLong(time);
+					out.putInt(index);
+					out.putInt(toCents(fields[2].trim()));
+					out.putInt((fields.length > 3)? Integer.parseInt(fields[3].trim()) : 0);
+					}
+				catch (NumberFormatException e)
+					{
+					throw new IOException(MODULE + aCSV + " line " + lineNo + ": " + line, e);
+					}
+				++count;
+				if (!out.hasRemaining())
+					at = write(channel, out, at);
+				}
+			at = write(channel, out, at);
+
+			ByteBuffer table = ByteBuffer.allocate(4 + names.size() * 66)
+			                             .order(ByteOrder.LITTLE_ENDIAN);
+			table.putInt(names.size());
+			for (String name : names)
+				{
+				byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+				if (table.remaining() < 2 + utf8.length)
+					{
+					ByteBuffer bigger = ByteBuffer.allocate(2 * table.capacity() + utf8.length)
+					                              .order(ByteOrder.LITTLE_ENDIAN);
+					table.flip();
+					table = bigger.put(table);
+					}
+				table.putShort((short)utf8.length);
+				table.put(utf8);
+				}
+			long symbolsAt = at;
+			write(channel, table, at);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(symbolsAt).putLong(0);
+			write(channel, header, 0);
+			channel.force(true);
+			}
+		return count;
+		}
+
+	/** Writes what is in the buffer at the file position and empties it */
+	private static long write(FileChannel aChannel, ByteBuffer aBuffer, long aAt)
+		throws IOException
+		{
+		aBuffer.flip();
+		while (aBuffer.hasRemaining())
+			aAt += aChannel.write(aBuffer, aAt);
+		aBuffer.clear();
+		return aAt;
+		}
+
+	/** @return cents for a dollar amount such as 12, 12.5 or -0.07, rounded to the cent */
+	static int toCents(String aDollars)
+		{
+		int dot = aDollars.indexOf('.');
+		if (dot < 0)
+			return Math.multiplyExact(Integer.parseInt(aDollars), 100);
+		boolean negative = aDollars.startsWith("-");
+		String whole = aDollars.substring(negative? 1 : 0, dot);
+		String fraction = aDollars.substring(dot + 1) + "000";
+		for (int i = 0; i < 3; i++)
+			if (!Character.isDigit(fraction.charAt(i)))
+				throw new NumberFormatException(aDollars);
+		long cents = (whole.isEmpty()? 0 : Long.parseLong(whole)) * 100
+		           + Integer.parseInt(fraction.substring(0, 2))
+		           + ((fraction.charAt(2) >= '5')? 1 : 0);
+		return Math.toIntExact(negative? -cents : cents);
+		}
+	}
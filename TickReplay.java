@@ -0,0 +1,266 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TickReplay.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TickReplay: Drives a backtest from a TickFile. Each tick, in file
+* order:
+*  - moves the broker to the tick's time with setTime(), when it changes,
+*    so that a TifBroker expires orders on schedule
+*  - fills the resting orders of a SimBroker with tick(leg,price,volume)
+*  - triggers the leg's soft orders, sending those crossed to the replay's
+*    broker rather than the session's broker for the leg
+*  - passes the tick to the TickSink, if one is set, for the strategy
+* Symbols are mapped to legs with setLeg(), or resolveLegs() for the legs
+* alone; ticks of a symbol with no leg only move the time.
+*
+* The replay keeps a soft book, a TriggerBook, per leg: it is filled with
+* the leg's soft and disabled orders when the leg is mapped, and soft
+* orders made during the replay, for instance by the TickSink, join it
+* through add(). The book follows its orders: a modified order is
+* repriced, and a cancelled one leaves.
+*
+* Ticks are read in place from the mapped file, a batch at a time with
+* replay(n), so a replay allocates nothing per tick and is bounded by the
+* brokers and books it feeds rather than by the file. Not synchronized:
+* replay from one thread.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import com.wormtrader.positions.PositionLeg;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TickReplay
+	{
+	public static final String MODULE="TickReplay.";
+
+	/** Receives each tick after the brokers and books have seen it */
+	public interface TickSink
+		{
+		/**
+		* @param aSymbol index into the TickFile's symbols
+		* @param aPrice in cents
+		*/
+		public void tick(long aTime, int aSymbol, int aPrice, int aVolume);
+		}
+
+	private final TickFile       fTicks;
+	private final Broker         fBroker;
+	private final SimBroker      fSim;   // fBroker if it is one, or null
+	private final PositionLeg[]  fLegs;  // by symbol
+	private final SoftBook[]     fBooks; // by symbol
+	private final Map<PositionLeg, SoftBook> fByLeg
+	                                  = new HashMap<PositionLeg, SoftBook>();
+	private TickSink             fSink;
+	private long                 fNext;  // the next tick to replay
+	private long                 fTime = Long.MIN_VALUE;
+
+	/**
+	* @param aBroker receives setTime(), and tick() if it is a SimBroker:
+	* to feed a SimBroker through a filter, set the two with the other
+	* constructor
+	*/
+	public TickReplay(TickFile aTicks, Broker aBroker)
+		{
+		this(aTicks, aBroker, (aBroker instanceof SimBroker)? (SimBroker)aBroker : null);
+		}
+
+	/**
+	* @param aBroker receives setTime(), such as a TifBroker over aSim
+	* @param aSim receives tick(), or null for none
+	*/
+	public TickReplay(TickFile aTicks, Broker aBroker, SimBroker aSim)
+		{
+		fTicks = aTicks;
+		fBroker = aBroker;
+		fSim = aSim;
+		fLegs = new PositionLeg[aTicks.getSymbolCount()];
+		fBooks = new SoftBook[aTicks.getSymbolCount()];
+		}
+
+	public final TickFile getTicks() { return fTicks; }
+
+	/**
+	* Sends the symbol's ticks to the leg, building its soft book from the
+	* leg's orders unless another symbol already did
+	*/
+	public final void setLeg(int aSymbol, PositionLeg aLeg)
+		{
+		fLegs[aSymbol] = aLeg;
+		fBooks[aSymbol] = (aLeg == null)? null : bookFor(aLeg);
+		}
+
+	public final PositionLeg getLeg(int aSymbol) { return fLegs[aSymbol]; }
+
+	/** @return the soft orders of the symbol's leg, or null if it has none */
+	public final TriggerBook<OrderTracker> getSoftOrders(int aSymbol) { return fBooks[aSymbol]; }
+
+	private SoftBook bookFor(PositionLeg aLeg)
+		{
+		SoftBook book = fByLeg.get(aLeg);
+		if (book == null)
+			{
+			book = new SoftBook();
+			fByLeg.put(aLeg, book);
+			for (OrderTracker ot : aLeg.getOrders())
+				add(book, ot);
+			}
+		return book;
+		}
+
+	/**
+	* Adds a soft order made during the replay to its leg's book, so that
+	* the replay triggers it
+	* @return false if its leg is not replayed, or it is no longer soft
+	*/
+	public final boolean add(OrderTracker aOrder)
+		{
+		SoftBook book = fByLeg.get(aOrder.leg());
+		return (book != null) && add(book, aOrder);
+		}
+
+	private boolean add(SoftBook aBook, OrderTracker aOrder)
+		{
+		byte state = aOrder.getState();
+		if (state != OrderTracker.SOFT && state != OrderTracker.SIGNAL)
+			return false;
+		if (aBook.add(aOrder) == aOrder) // not merged into another
+			aOrder.addStateListener(aBook);
+		return true;
+		}
+
+	/**
+	* Looks up the leg of each symbol without one: a symbol is the
+	* underlying, then a space and the option description for an option
+	* @return the number of symbols still without a leg
+	*/
+	public final int resolveLegs(LegResolver aResolver)
+		{
+		int missing = 0;
+		for (int s = 0; s < fLegs.length; s++)
+			{
+			if (fLegs[s] != null)
+				continue;
+			String symbol = fTicks.getSymbol(s);
+			int space = symbol.indexOf(' ');
+			setLeg(s, (space < 0)? aResolver.find(symbol, "")
+			       : aResolver.find(symbol.substring(0, space), symbol.substring(space + 1)));
+			if (fLegs[s] == null)
+				++missing;
+			}
+		return missing;
+		}
+
+	public final void setSink(TickSink aSink) { fSink = aSink; }
+
+	/** @return the index of the next tick to replay */
+	public final long getPosition() { return fNext; }
+	public final boolean isDone() { return fNext >= fTicks.size(); }
+
+	/** Continues the replay from the first tick at or after the broker time */
+	public final void seek(long aTime)
+		{
+		fNext = fTicks.find(aTime);
+		fTime = Long.MIN_VALUE;
+		}
+
+	/**
+	* Replays up to aMax ticks from the current position
+	* @return the number replayed: 0 at the end of the file
+	*/
+	public final int replay(int aMax)
+		{
+		long start = fNext;
+		long end = Math.min(fTicks.size(), start + Math.max(aMax, 0));
+		long i = start;
+		while (i < end)
+			{
+			ByteBuffer chunk = fTicks.chunk(i);
+			int at = TickFile.offset(i);
+			int n = (int)Math.min(end - i, (chunk.limit() - at) / TickFile.RECORD);
+			for (int stop = at + n * TickFile.RECORD; at < stop; at += TickFile.RECORD)
+				tick(chunk.getLong(at), chunk.getInt(at + 8), chunk.getInt(at + 12),
+				     chunk.getInt(at + 16));
+			i += n;
+			fNext = i;
+			}
+		return (int)(i - start);
+		}
+
+	/**
+	* Replays the rest of the file
+	* @return the number of ticks replayed
+	*/
+	public final long replay()
+		{
+		long total = 0;
+		for (int n; (n = replay(1 << 20)) > 0; )
+			total += n;
+		return total;
+		}
+
+	private void tick(long aTime, int aSymbol, int aPrice, int aVolume)
+		{
+		if (aTime != fTime)
+			{
+			fTime = aTime;
+			fBroker.setTime(aTime);
+			}
+		PositionLeg leg = fLegs[aSymbol];
+		if (leg != null)
+			{
+			if (fSim != null)
+				fSim.tick(leg, aPrice, aVolume);
+			SoftBook book = fBooks[aSymbol];
+			if (book != null)
+				book.softTriggered(aPrice);
+			}
+		TickSink sink = fSink;
+		if (sink != null)
+			sink.tick(aTime, aSymbol, aPrice, aVolume);
+		}
+
+	@Override public String toString()
+		{
+		return "TickReplay at " + fNext + " of " + fTicks.size();
+		}
+
+	/**
+	* A leg's soft orders: sends those triggered to the replay's broker,
+	* and follows its orders until they leave the soft states
+	*/
+	private final class SoftBook
+		extends TriggerBook<OrderTracker>
+		implements OrderStateListener
+		{
+		@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+			{
+			byte state = aOrder.getState();
+			if (state == OrderTracker.SIGNAL)
+				return false; // held until enabled
+			if (state == OrderTracker.SOFT)
+				aOrder.send(fBroker);
+			return true;
+			}
+
+		@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+			{
+			if (aTo == OrderTracker.SIGNAL || aTo == OrderTracker.SOFT)
+				return;
+			aOrder.removeStateListener(this);
+			if (aTo == OrderTracker.CANCELED)
+				remove(aOrder);
+			}
+
+		@Override public void orderModified(OrderTracker aOrder)
+			{
+			byte state = aOrder.getState();
+			if (state == OrderTracker.SIGNAL || state == OrderTracker.SOFT)
+				reprice(aOrder);
+			}
+		}
+	}
@@ -0,0 +1,58 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TifBroker.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TifBroker: Enforces time in force for the orders placed through it,
+* with a TifScheduler driven by the broker's own clock: each setTime()
+* passed on to the broker also advances the scheduler, which cancels the
+* DAY, GTD and IOC orders that are due through this filter. The same
+* filter in front of a SimBroker expires orders in simulated time.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.Collection;
+
+public class TifBroker
+	extends BrokerFilter
+	{
+	public static final String MODULE="TifBroker.";
+
+	private final TifScheduler fScheduler;
+
+	public TifBroker(Broker aBroker)
+		{
+		super(aBroker);
+		fScheduler = new TifScheduler(aBroker.time())
+			{
+			@Override protected Broker brokerFor(OrderTracker aOrder)
+				{
+				return TifBroker.this;
+				}
+			};
+		}
+
+	public final TifScheduler getScheduler() { return fScheduler; }
+
+	@Override public void setTime(long aTime)
+		{
+		fBroker.setTime(aTime);
+		fScheduler.advance(aTime);
+		}
+
+	/** Scheduled once placed, so that an order filled at once is not */
+	@Override public void placeOrder(OrderTracker aTracker)
+		{
+		fBroker.placeOrder(aTracker);
+		fScheduler.schedule(aTracker);
+		}
+
+	@Override public void placeOrders(Collection<? extends OrderTracker> aTrackers)
+		{
+		fBroker.placeOrders(aTrackers);
+		for (OrderTracker ot : aTrackers)
+			fScheduler.schedule(ot);
+		}
+	}
@@ -0,0 +1,328 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TifScheduler.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TifScheduler: Enforces the time in force of orders against broker time,
+* so that expiry works the same live and in a backtest:
+*  - DAY orders expire at the day end set with setDayEnd()
+*  - GTD orders expire at their getExpiry()
+*  - IOC orders expire as soon as broker time moves past the time they
+*    were scheduled: whatever did not fill at that time is cancelled
+*  - GTC orders, and orders with no TIF, are never scheduled
+* An expired order is cancelled: a soft order at once, and one at the
+* broker through cancelOrder(). Its status says why. An order that cannot
+* be cancelled when it expires, because a cancel is already on its way,
+* is tried again on the next step until it is done.
+*
+* The pending expiries are kept in a hierarchical timer wheel: four
+* levels of 64 slots, each level's slot spanning 64 of the level below,
+* so that times up to 64^4 units ahead are placed in O(1) and further
+* ones wait in an overflow list. Each slot is a doubly linked list, so
+* an order that fills or is cancelled first leaves the wheel in O(1).
+* advance() steps the wheel to the new time, moving the timers of a
+* higher level slot down as it is reached, and jumps across stretches in
+* which the lower levels are empty, so an overnight gap in a backtest
+* costs a few steps. Time is in the units of Broker.time().
+*
+* TifBroker schedules the orders placed through it and advances the
+* wheel on each setTime().
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import java.util.ArrayList;
+import java.util.List;
+
+public class TifScheduler
+	implements OrderStateListener
+	{
+	public static final String MODULE="TifScheduler.";
+
+	/** Times in force */
+	public static final String DAY="DAY";
+	public static final String GTD="GTD";
+	public static final String IOC="IOC";
+	public static final String GTC="GTC";
+
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	private static final int OVERFLOW = LEVELS * SLOTS; // index of the overflow list
+
+	/** An order waiting to expire: a node in one slot's list */
+	static final class Timer
+		{
+		final OrderTracker fOrder;
+		final long         fExpiry;
+		Timer              fPrev;
+		Timer              fNext;
+		int                fSlot;
+
+		Timer(OrderTracker aOrder, long aExpiry)
+			{
+			fOrder = aOrder;
+			fExpiry = aExpiry;
+			}
+		}
+
+	private final Timer[] fSlots = new Timer[OVERFLOW + 1];
+	private final int[]   fCounts = new int[LEVELS + 1]; // timers per level
+	private long          fNow;      // the wheel has expired everything up to here
+	private long          fDayEnd;
+	private int           fPending;
+	private long          fExpired;
+	private final List<OrderTracker> fDue = new ArrayList<OrderTracker>();
+
+	/** @param aNow the current broker time */
+	public TifScheduler(long aNow) { fNow = aNow; }
+
+	/** @param aTime the broker time at which DAY orders placed from now on expire */
+	public final synchronized void setDayEnd(long aTime) { fDayEnd = aTime; }
+	public final synchronized long getDayEnd() { return fDayEnd; }
+
+	public final synchronized int getPending() { return fPending; }
+	public final synchronized long getExpired() { return fExpired; }
+
+	/**
+	* @return the broker time at which the order expires by its time in
+	* force, or -1 if it does not
+	*/
+	public synchronized long expiryOf(OrderTracker aOrder)
+		{
+		String tif = aOrder.getTIF();
+		if (DAY.equals(tif))
+			return (fDayEnd > 0)? fDayEnd : -1;
+		if (GTD.equals(tif))
+			return (aOrder.getExpiry() > 0)? aOrder.getExpiry() : -1;
+		if (IOC.equals(tif))
+			return fNow + 1;
+		return -1;
+		}
+
+	/**
+	* Starts timing the order by its time in force, unless it is done or
+	* already scheduled
+	* @return false if the order does not expire
+	*/
+	public final boolean schedule(OrderTracker aOrder)
+		{
+		long expiry = expiryOf(aOrder);
+		return (expiry >= 0) && schedule(aOrder, expiry);
+		}
+
+	/**
+	* Starts timing the order to expire at the specified broker time,
+	* unless it is done or already scheduled: a time already past expires
+	* it on the next advance()
+	*/
+	public boolean schedule(OrderTracker aOrder, long aExpiry)
+		{
+		synchronized (this)
+			{
+			if (aOrder.fTifTimer != null || isDone(aOrder.getState()))
+				return false;
+			Timer it = new Timer(aOrder, aExpiry);
+			aOrder.fTifTimer = it;
+			place(it, fNow + 1);
+			++fPending;
+			}
+		aOrder.addStateListener(this);
+		if (isDone(aOrder.getState())) // done while being scheduled
+			unschedule(aOrder);
+		return true;
+		}
+
+	/** Stops timing the order */
+	public final void unschedule(OrderTracker aOrder)
+		{
+		synchronized (this)
+			{
+			Timer it = aOrder.fTifTimer;
+			if (it == null)
+				return;
+			unlink(it);
+			aOrder.fTifTimer = null;
+			--fPending;
+			}
+		aOrder.removeStateListener(this);
+		}
+
+	private static boolean isDone(byte aState)
+		{
+		return aState == OrderTracker.FILLED || aState == OrderTracker.CANCELED
+		    || aState == OrderTracker.ERROR;
+		}
+
+	@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+		{
+		if (isDone(aTo))
+			unschedule(aOrder);
+		}
+
+	/**
+	* Puts the timer in the slot that is reached when it is due, or at
+	* aEarliest if it is overdue: holding the lock
+	*/
+	private void place(Timer aTimer, long aEarliest)
+		{
+		long expiry = Math.max(aTimer.fExpiry, aEarliest);
+		long delta = expiry - fNow;
+		int slot = OVERFLOW;
+		for (int level = 0; level < LEVELS; level++)
+			if (delta < (1L << (BITS * (level + 1))))
+				{
+				slot = level * SLOTS + (int)((expiry >>> (BITS * level)) & MASK);
+				break;
+				}
+		aTimer.fSlot = slot;
+		aTimer.fPrev = null;
+		aTimer.fNext = fSlots[slot];
+		if (aTimer.fNext != null)
+			aTimer.fNext.fPrev = aTimer;
+		fSlots[slot] = aTimer;
+		++fCounts[slot / SLOTS];
+		}
+
+	private void unlink(Timer aTimer)
+		{
+		if (aTimer.fPrev != null)
+			aTimer.fPrev.fNext = aTimer.fNext;
+		else
+			fSlots[aTimer.fSlot] = aTimer.fNext;
+		if (aTimer.fNext != null)
+			aTimer.fNext.fPrev = aTimer.fPrev;
+		aTimer.fPrev = aTimer.fNext = null;
+		--fCounts[aTimer.fSlot / SLOTS];
+		}
+
+	/** Takes every timer out of the slot: holding the lock */
+	private Timer takeSlot(int aSlot)
+		{
+		Timer head = fSlots[aSlot];
+		fSlots[aSlot] = null;
+		for (Timer t = head; t != null; t = t.fNext)
+			--fCounts[aSlot / SLOTS];
+		return head;
+		}
+
+	/**
+	* Moves the wheel to the broker time, expiring the orders that are due
+	* @return the number of orders expired: cancelled, or their cancel sent
+	*/
+	public int advance(long aTime)
+		{
+		List<OrderTracker> due;
+		long retry;
+		synchronized (this)
+			{
+			while (fNow < aTime)
+				{
+				if (fPending == 0)
+					{
+					fNow = aTime;
+					break;
+					}
+				skipEmpty(aTime);
+				if (fNow < aTime)
+					step();
+				}
+			if (fDue.isEmpty())
+				return 0;
+			due = new ArrayList<OrderTracker>(fDue);
+			fDue.clear();
+			retry = fNow + 1;
+			}
+		int expired = 0;
+		for (OrderTracker ot : due)
+			{
+			if (expire(ot))
+				++expired;
+			else if (!isDone(ot.getState()))
+				schedule(ot, retry);
+			}
+		synchronized (this) { fExpired += expired; }
+		return expired;
+		}
+
+	/**
+	* While the lowest levels are empty nothing happens before the next
+	* slot of the first level that is not: jumps to just before it
+	*/
+	private void skipEmpty(long aTime)
+		{
+		int level = 0;
+		while (level < LEVELS && fCounts[level] == 0)
+			++level;
+		if (level == 0)
+			return;
+		long span = 1L << (BITS * level);
+		long before = (fNow | (span - 1)); // the last time before the boundary
+		if (before > fNow)
+			fNow = Math.min(aTime, before);
+		}
+
+	/**
+	* Expires the timers due at fNow + 1, first moving down the timers of
+	* each higher slot reached at that time, highest level first
+	*/
+	private void step()
+		{
+		long t = ++fNow;
+		int top = 0;
+		while (top < LEVELS && (t & ((1L << (BITS * (top + 1))) - 1)) == 0)
+			++top;
+		for (int level = top; level > 0; level--)
+			{
+			int slot = (level == LEVELS)? OVERFLOW
+			         : level * SLOTS + (int)((t >>> (BITS * level)) & MASK);
+			for (Timer next, it = takeSlot(slot); it != null; it = next)
+				{
+				next = it.fNext;
+				place(it, t);
+				}
+			}
+		for (Timer next, it = takeSlot((int)(t & MASK)); it != null; it = next)
+			{
+			next = it.fNext;
+			it.fPrev = it.fNext = null;
+			it.fOrder.fTifTimer = null;
+			--fPending;
+			fDue.add(it.fOrder);
+			}
+		}
+
+	/**
+	* Cancels an order whose time in force is up: not holding the lock
+	* @return false if the order could not be cancelled now, in which case
+	* it is tried again on the next step unless it is done
+	*/
+	protected boolean expire(OrderTracker aOrder)
+		{
+		aOrder.removeStateListener(this);
+		String tif = aOrder.getTIF();
+		switch (aOrder.claimCancel())
+			{
+			case OrderTracker.CANCELED: aOrder.setStatus("Expired", tif);
+			                            aOrder.leg().remove(aOrder);
+			                            return true;
+			case OrderTracker.CAN_REQ:  aOrder.setStatus("Expired", tif);
+			                            brokerFor(aOrder).cancelOrder(aOrder);
+			                            return true;
+			default:                    return false;
+			}
+		}
+
+	/** @return the broker to send an expired order's cancel to */
+	protected Broker brokerFor(OrderTracker aOrder)
+		{
+		return aOrder.getSession().brokerFor(aOrder.leg());
+		}
+
+	@Override public synchronized String toString()
+		{
+		return "TifScheduler at " + fNow + " pending " + fPending + " expired " + fExpired;
+		}
+	}
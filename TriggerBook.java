@@ -0,0 +1,490 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TriggerBook.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TriggerBook: Price indexed book of the soft orders monitored by a
+* PositionLeg. Replaces calling softTriggered() on every order for every
+* new last price: the orders are kept on two sides sorted by getLmt() so
+* that a tick only visits the orders that it actually crosses.
+*
+* The rising side holds buy stops and sell limits (triggered when the
+* price is at or above the limit), the falling side holds buy limits and
+* sell stops (triggered at or below the limit). Each side is sorted so the
+* next order to trigger is at the tail, making a tick O(log n + k) with no
+* allocation. Market orders and orders with no quantity trigger at any
+* price and are kept on their own.
+*
+* Orders in the SIGNAL state, and orders of TYPE_OTHER which never
+* trigger, are parked apart where no tick visits them. The book listens
+* to its SIGNAL orders, and the next tick after one is enabled (or
+* cancelled) moves it to its side (or drops it). Orders that have left
+* the soft states (sent or cancelled elsewhere) are dropped the next time
+* a tick crosses them. Orders added, removed or repriced while a tick is
+* being processed (by the broker or the leg in response to a send) are
+* applied once the tick is done, in the order they were made.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent reprice deferred during a tick
+* 20261018 agent SIGNAL orders parked until enabled
+* 20261018 agent order types compared by code, TYPE_OTHER parked
+*******************************************************/
+import static com.wormtrader.broker.Broker.TYPE_LMT;
+import static com.wormtrader.broker.Broker.TYPE_OTHER;
+import static com.wormtrader.broker.Broker.TYPE_STP;
+import java.util.Arrays;
+
+public class TriggerBook<T extends OrderTracker>
+	{
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** Sides of the book */
+	private static final byte ANY=(byte)0;     // triggers at any price
+	private static final byte RISING=(byte)1;  // triggers at price >= lmt
+	private static final byte FALLING=(byte)2; // triggers at price <= lmt
+	private static final byte PARKED=(byte)3;  // never visited by a tick
+
+	/** Changes deferred while a tick is being processed */
+	private static final byte ADD=(byte)0;
+	private static final byte REMOVE=(byte)1;
+	private static final byte REPRICE=(byte)2;
+
+	private final Side fRising = new Side(RISING);
+	private final Side fFalling = new Side(FALLING);
+	private final Side fAny = new Side(ANY);
+	private final Side fParked = new Side(PARKED);
+
+	private Object[] fTriggered = new Object[INITIAL_CAPACITY];
+	private int      fNumTriggered;
+
+	private boolean  fWalking;  // true while a tick is being processed
+	private Object[] fDeferred = new Object[INITIAL_CAPACITY];
+	private byte[]   fDeferredKind = new byte[INITIAL_CAPACITY];
+	private int      fNumDeferred;
+
+	/** Set by any thread when a parked SIGNAL order leaves that state */
+	private volatile boolean fUnparked;
+	private final OrderStateListener fSignalWatcher = new OrderStateListener()
+		{
+		@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+			{
+			if (aFrom == OrderTracker.SIGNAL)
+				fUnparked = true;
+			}
+		};
+
+	/**
+	* @return the side of the book on which the order belongs based on its
+	* type and the sign of its quantity
+	*/
+	private Side sideOf(OrderTracker aOrder)
+		{
+		int qty = aOrder.qty();
+		byte type = aOrder.typeCode();
+		if (type == TYPE_OTHER || aOrder.getState() == OrderTracker.SIGNAL)
+			return fParked;
+		if (qty == 0)
+			return fAny;
+		if (type == TYPE_STP)
+			return (qty > 0)? fRising : fFalling;
+		if (type == TYPE_LMT)
+			return (qty > 0)? fFalling : fRising;
+		return fAny;
+		}
+
+	/**
+	* Adds an order to the book, first trying to merge it with an order
+	* already in the book at the same price, as OrderList does.
+	* @return the order that now holds aOrder's quantity: aOrder itself,
+	* the order that it merged into, or null if the merge netted the
+	* quantity to zero and the surviving order was removed from the book
+	*/
+	public T add(T aOrder)
+		{
+		if (fWalking)
+			{
+			defer(aOrder, ADD);
+			return aOrder;
+			}
+		T merged = fRising.merge(aOrder);
+		if (merged == null)
+			merged = fFalling.merge(aOrder);
+		if (merged == null)
+			merged = fAny.merge(aOrder);
+		if (merged == null)
+			merged = fParked.merge(aOrder);
+		if (merged == null)
+			{
+			place(aOrder);
+			return aOrder;
+			}
+		remove(merged); // the merge may have moved it to the other side
+		if (merged.qty() == 0)
+			return null;
+		place(merged);
+		return merged;
+		}
+
+	/** Inserts the order on its side, watching it if it is parked awaiting a signal */
+	private void place(T aOrder)
+		{
+		Side side = sideOf(aOrder);
+		side.insert(aOrder);
+		if (side == fParked && aOrder.getState() == OrderTracker.SIGNAL)
+			{
+			aOrder.addStateListener(fSignalWatcher);
+			if (aOrder.getState() != OrderTracker.SIGNAL) // enabled meanwhile
+				fUnparked = true;
+			}
+		}
+
+	/**
+	* Removes the specified order from the book, for instance when it is
+	* cancelled or repriced by the leg.
+	* @return true if the order was in the book
+	*/
+	public boolean remove(T aOrder)
+		{
+		if (fWalking)
+			{
+			defer(aOrder, REMOVE);
+			return true;
+			}
+		Side side = sideOf(aOrder);
+		if ((side != fParked && side.remove(aOrder))
+		||  fRising.remove(aOrder)
+		||  fFalling.remove(aOrder)
+		||  fAny.remove(aOrder))
+			return true;
+		if (!fParked.remove(aOrder))
+			return false;
+		aOrder.removeStateListener(fSignalWatcher);
+		return true;
+		}
+
+	/**
+	* Call after modifying an order's type, quantity or price so that it is
+	* moved to its new place in the book. During a tick the move is made
+	* once the tick is done, as one step, so the order never leaves the
+	* book.
+	*/
+	public final void reprice(T aOrder)
+		{
+		if (fWalking)
+			defer(aOrder, REPRICE);
+		else if (remove(aOrder))
+			place(aOrder);
+		}
+
+	public final int size()
+		{
+		return fRising.fSize + fFalling.fSize + fAny.fSize + fParked.fSize;
+		}
+
+	public final boolean isEmpty() { return size() == 0; }
+
+	@SuppressWarnings("unchecked")
+	public void clear()
+		{
+		fRising.clear();
+		fFalling.clear();
+		fAny.clear();
+		for (int i = 0; i < fParked.fSize; i++)
+			((T)fParked.fOrders[i]).removeStateListener(fSignalWatcher);
+		fParked.clear();
+		Arrays.fill(fTriggered, 0, fNumTriggered, null);
+		fNumTriggered = 0;
+		Arrays.fill(fDeferred, 0, fNumDeferred, null);
+		fNumDeferred = 0;
+		}
+
+	/**
+	* A PositionLeg calls this method every time a new "last" price is
+	* received by the leg, in place of calling softTriggered() on each of
+	* its orders. The orders that were triggered (sent to the broker or
+	* found to be no longer soft) are removed from the book and may be
+	* retrieved with getTriggered() until the next call.
+	* @return the number of orders triggered at the specified price
+	*/
+	public final int softTriggered(int aPrice)
+		{
+		return trigger(aPrice);
+		}
+
+	/**
+	* Processes a tick: calls onTrigger() for each order crossed by the
+	* price, removing the ones for which it returns true.
+	* @return the number of orders removed
+	*/
+	public final int trigger(int aPrice)
+		{
+		Arrays.fill(fTriggered, 0, fNumTriggered, null);
+		fNumTriggered = 0;
+		if (fUnparked)
+			unpark();
+		fWalking = true;
+		try
+			{
+			fAny.pop(aPrice);
+			fRising.pop(aPrice);
+			fFalling.pop(aPrice);
+			}
+		finally { fWalking = false; }
+		if (fNumDeferred > 0)
+			applyDeferred();
+		return fNumTriggered;
+		}
+
+	/**
+	* Moves the parked orders that have left the SIGNAL state: to their
+	* side if enabled, or out of the book, as triggered, if no longer soft
+	*/
+	@SuppressWarnings("unchecked")
+	private void unpark()
+		{
+		fUnparked = false;
+		Side parked = fParked;
+		for (int i = parked.fSize; i-- > 0; )
+			{
+			T order = (T)parked.fOrders[i];
+			byte state = order.getState();
+			if (state == OrderTracker.SIGNAL
+			|| (state == OrderTracker.SOFT && order.typeCode() == TYPE_OTHER))
+				continue;
+			parked.removeAt(i);
+			order.removeStateListener(fSignalWatcher);
+			if (state == OrderTracker.SOFT)
+				place(order);
+			else
+				triggered(order);
+			}
+		}
+
+	private void defer(Object aOrder, byte aKind)
+		{
+		if (fNumDeferred == fDeferred.length)
+			{
+			fDeferred = Arrays.copyOf(fDeferred, 2 * fNumDeferred);
+			fDeferredKind = Arrays.copyOf(fDeferredKind, 2 * fNumDeferred);
+			}
+		fDeferred[fNumDeferred] = aOrder;
+		fDeferredKind[fNumDeferred++] = aKind;
+		}
+
+	@SuppressWarnings("unchecked")
+	private void applyDeferred()
+		{
+		for (int i = 0; i < fNumDeferred; i++)
+			{
+			T order = (T)fDeferred[i];
+			fDeferred[i] = null;
+			switch (fDeferredKind[i])
+				{
+				case ADD:     add(order);
+				              break;
+				case REMOVE:  remove(order);
+				              break;
+				case REPRICE: reprice(order);
+				              break;
+				}
+			}
+		fNumDeferred = 0;
+		}
+
+	@SuppressWarnings("unchecked")
+	public final T getTriggered(int i)
+		{
+		if (i >= fNumTriggered)
+			throw new IndexOutOfBoundsException(i + " >= " + fNumTriggered);
+		return (T)fTriggered[i];
+		}
+
+	/**
+	* Called for each order crossed by a tick.
+	* @return true if the order should leave the book
+	*/
+	protected boolean onTrigger(T aOrder, int aPrice)
+		{
+		byte state = aOrder.getState();
+		if (state == OrderTracker.SIGNAL)
+			return false; // held until enabled
+		if (state == OrderTracker.SOFT)
+			aOrder.send();
+		return true;
+		}
+
+	private void triggered(Object aOrder)
+		{
+		if (fNumTriggered == fTriggered.length)
+			fTriggered = Arrays.copyOf(fTriggered, 2 * fNumTriggered);
+		fTriggered[fNumTriggered++] = aOrder;
+		}
+
+	/**
+	* One side of the book: the orders and a copy of their limit prices
+	* (taken when inserted) kept in parallel arrays sorted so that the
+	* first order to trigger is at the tail. Orders at the same price keep
+	* their arrival order.
+	*/
+	private final class Side
+		{
+		private final byte fDirection;
+		private final boolean fSorted; // by price: the rising & falling sides
+		private Object[] fOrders = new Object[INITIAL_CAPACITY];
+		private int[]    fPrices = new int[INITIAL_CAPACITY];
+		private int      fSize;
+
+		Side(byte aDirection)
+			{
+			fDirection = aDirection;
+			fSorted = (aDirection == RISING || aDirection == FALLING);
+			}
+
+		/** @return true if a tick at price triggers an order at lmt */
+		private boolean crosses(int lmt, int price)
+			{
+			return (fDirection == RISING)? price >= lmt
+			     : (fDirection == FALLING)? price <= lmt
+			     : (fDirection == ANY);
+			}
+
+		/**
+		* Orders are sorted so that the tail holds the first to trigger:
+		* descending for the rising side, ascending for the falling side.
+		* @return true if an order at price a belongs before one at price b
+		*/
+		private boolean before(int a, int b)
+			{
+			return (fDirection == RISING)? a > b
+			     : (fDirection == FALLING)? a < b
+			     : false;
+			}
+
+		/**
+		* @return the index of the first order at aPrice, or where an order
+		* at aPrice would be inserted if none
+		*/
+		private int lowerBound(int aPrice)
+			{
+			int lo = 0;
+			int hi = fSize;
+			while (lo < hi)
+				{
+				int mid = (lo + hi) >>> 1;
+				if (before(fPrices[mid], aPrice))
+					lo = mid + 1;
+				else
+					hi = mid;
+				}
+			return lo;
+			}
+
+		/** @return the index just past the last order at aPrice */
+		private int upperBound(int aPrice)
+			{
+			int lo = 0;
+			int hi = fSize;
+			while (lo < hi)
+				{
+				int mid = (lo + hi) >>> 1;
+				if (before(aPrice, fPrices[mid]))
+					hi = mid;
+				else
+					lo = mid + 1;
+				}
+			return lo;
+			}
+
+		void insert(T aOrder)
+			{
+			int lmt = aOrder.getLmt();
+			int at = fSorted? lowerBound(lmt) : 0; // newest furthest from tail
+			if (fSize == fOrders.length)
+				{
+				fOrders = Arrays.copyOf(fOrders, 2 * fSize);
+				fPrices = Arrays.copyOf(fPrices, 2 * fSize);
+				}
+			System.arraycopy(fOrders, at, fOrders, at + 1, fSize - at);
+			System.arraycopy(fPrices, at, fPrices, at + 1, fSize - at);
+			fOrders[at] = aOrder;
+			fPrices[at] = lmt;
+			++fSize;
+			}
+
+		@SuppressWarnings("unchecked")
+		T merge(T aOrder)
+			{
+			int lmt = aOrder.getLmt();
+			int from = fSorted? lowerBound(lmt) : 0;
+			int to = fSorted? upperBound(lmt) : fSize;
+			for (int i = from; i < to; i++)
+				{
+				T test = (T)fOrders[i];
+				if (test != aOrder && test.merge(aOrder))
+					return test;
+				}
+			return null;
+			}
+
+		boolean remove(T aOrder)
+			{
+			int lmt = aOrder.getLmt();
+			int from = fSorted? lowerBound(lmt) : 0;
+			int to = fSorted? upperBound(lmt) : fSize;
+			for (int i = from; i < to; i++)
+				if (fOrders[i] == aOrder)
+					return removeAt(i);
+			for (int i = fSize; i-- > 0; ) // limit changed while in the book
+				if (fOrders[i] == aOrder)
+					return removeAt(i);
+			return false;
+			}
+
+		private boolean removeAt(int i)
+			{
+			int tail = fSize - i - 1;
+			System.arraycopy(fOrders, i + 1, fOrders, i, tail);
+			System.arraycopy(fPrices, i + 1, fPrices, i, tail);
+			fOrders[--fSize] = null;
+			return true;
+			}
+
+		/**
+		* Walks in from the tail while the tick crosses, removing the orders
+		* that leave the book and sliding the ones held back to the tail.
+		*/
+		@SuppressWarnings("unchecked")
+		void pop(int aPrice)
+			{
+			int kept = fSize;
+			int i = fSize;
+			while (i > 0 && crosses(fPrices[i - 1], aPrice))
+				{
+				Object order = fOrders[--i];
+				if (onTrigger((T)order, aPrice))
+					triggered(order);
+				else
+					{
+					--kept;
+					fOrders[kept] = order;
+					fPrices[kept] = fPrices[i];
+					}
+				}
+			int removed = kept - i;
+			if (removed == 0)
+				return;
+			System.arraycopy(fOrders, kept, fOrders, i, fSize - kept);
+			System.arraycopy(fPrices, kept, fPrices, i, fSize - kept);
+			Arrays.fill(fOrders, fSize - removed, fSize, null);
+			fSize -= removed;
+			}
+
+		void clear()
+			{
+			Arrays.fill(fOrders, 0, fSize, null);
+			fSize = 0;
+			}
+		}
+	}
@@ -0,0 +1,13 @@
+package com.shanebow.ui;
+/** Stand-in: look and feel helpers */
+public class LAF
+	{
+	public static javax.swing.JComponent titled(java.awt.Component aComponent, String aTitle)
+		{
+		javax.swing.JPanel it = new javax.swing.JPanel(new java.awt.BorderLayout());
+		it.setBorder(javax.swing.BorderFactory.createTitledBorder(aTitle));
+		it.add(aComponent);
+		return it;
+		}
+	public static void addUISwitchListener(java.awt.Component aComponent) {}
+	}
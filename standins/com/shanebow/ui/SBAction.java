@@ -0,0 +1,11 @@
+package com.shanebow.ui;
+/** Stand-in: an action with a name, mnemonic, tool tip and icon */
+public abstract class SBAction
+	extends javax.swing.AbstractAction
+	{
+	public SBAction(String aName, char aMnemonic, String aToolTip, javax.swing.Icon aIcon)
+		{
+		super(aName, aIcon);
+		putValue(SHORT_DESCRIPTION, aToolTip);
+		}
+	}
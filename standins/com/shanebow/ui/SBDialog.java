@@ -0,0 +1,10 @@
+package com.shanebow.ui;
+/** Stand-in: message dialogs, reported to stderr */
+public class SBDialog
+	{
+	public static boolean inputError(String aMessage)
+		{
+		System.err.println(aMessage);
+		return false;
+		}
+	}
@@ -0,0 +1,16 @@
+package com.shanebow.ui;
+/** Stand-in: a row of radio buttons, one per choice */
+public class SBRadioPanel<T>
+	extends javax.swing.JPanel
+	{
+	private final T[] fChoices;
+	private T fSelected;
+	public SBRadioPanel(int aColumns, T[] aChoices)
+		{
+		fChoices = aChoices;
+		fSelected = (aChoices.length > 0)? aChoices[0] : null;
+		}
+	public void addActionListener(java.awt.event.ActionListener aListener) {}
+	public T getSelected() { return fSelected; }
+	public void select(T aChoice) { fSelected = aChoice; }
+	}
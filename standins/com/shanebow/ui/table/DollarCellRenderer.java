@@ -0,0 +1,8 @@
+package com.shanebow.ui.table;
+/** Stand-in: renders an amount in cents as dollars */
+public class DollarCellRenderer
+	extends javax.swing.table.DefaultTableCellRenderer
+	{
+	private static final DollarCellRenderer INSTANCE = new DollarCellRenderer();
+	public static DollarCellRenderer getInstance() { return INSTANCE; }
+	}
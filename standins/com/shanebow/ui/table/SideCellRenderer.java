@@ -0,0 +1,8 @@
+package com.shanebow.ui.table;
+/** Stand-in: renders a buy or sell side */
+public class SideCellRenderer
+	extends javax.swing.table.DefaultTableCellRenderer
+	{
+	private static final SideCellRenderer INSTANCE = new SideCellRenderer();
+	public static SideCellRenderer getInstance() { return INSTANCE; }
+	}
@@ -0,0 +1,5 @@
+package com.shanebow.util;
+/** Stand-in: dates and times */
+public class SBDate
+	{
+	}
@@ -0,0 +1,10 @@
+package com.shanebow.util;
+/** Stand-in: formatting of amounts */
+public class SBFormat
+	{
+	public static String toDollarString(int aCents)
+		{
+		return ((aCents < 0)? "-" : "") + (Math.abs(aCents) / 100) + "."
+		       + String.format("%02d", Math.abs(aCents) % 100);
+		}
+	}
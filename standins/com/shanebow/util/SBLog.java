@@ -0,0 +1,9 @@
+package com.shanebow.util;
+/** Stand-in: the application log, printed to stderr */
+public class SBLog
+	{
+	public static void format(String aFormat, Object... aArgs)
+		{
+		System.err.println(String.format(aFormat, aArgs));
+		}
+	}
@@ -0,0 +1,13 @@
+package com.shanebow.util;
+/** Stand-in: the application properties, all defaulted */
+public class SBProperties
+	{
+	private static final SBProperties INSTANCE = new SBProperties();
+	public static SBProperties getInstance() { return INSTANCE; }
+	public int getInt(String aKey, int aDefault) { return aDefault; }
+	public java.awt.Rectangle getRectangle(String aKey, int x, int y, int w, int h)
+		{
+		return new java.awt.Rectangle(x, y, w, h);
+		}
+	public void setProperty(String aKey, Object aValue) {}
+	}
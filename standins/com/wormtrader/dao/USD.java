@@ -0,0 +1,10 @@
+package com.wormtrader.dao;
+/** Stand-in: an amount in US dollars, held in cents */
+public class USD
+	{
+	private final int fCents;
+	public USD() { this(0); }
+	public USD(int aCents) { fCents = aCents; }
+	public int cents() { return fCents; }
+	@Override public String toString() { return com.shanebow.util.SBFormat.toDollarString(fCents); }
+	}
@@ -0,0 +1,9 @@
+package com.wormtrader.dao;
+/** Stand-in: a spinner of dollar amounts */
+public class USDSpinner
+	extends javax.swing.JSpinner
+	{
+	private int fCents;
+	public int getCents() { return fCents; }
+	public void setCents(int aCents) { fCents = aCents; }
+	}
@@ -0,0 +1,6 @@
+package com.wormtrader.positions;
+/** Stand-in: the open legs, none of them loaded */
+public class LegsList
+	{
+	public static PositionLeg find(String aUnderlying, String aOptDesc) { return null; }
+	}
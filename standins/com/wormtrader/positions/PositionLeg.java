@@ -0,0 +1,56 @@
+package com.wormtrader.positions;
+/**
+* Stand-in: a position in one stock or option, which keeps the orders
+* added to it, such as its soft orders, in getOrders()
+*/
+import com.wormtrader.broker.OrderTracker;
+import com.wormtrader.dao.USD;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PositionLeg
+	implements Comparable<PositionLeg>
+	{
+	private final String   fUnderlying;
+	private final String   fOptDesc;
+	private final Strategy fStrategy;
+	private final List<OrderTracker> fOrders = new ArrayList<OrderTracker>();
+	private boolean fAutoTraded = true;
+	private int     fQty;
+	private int     fLast;
+
+	public PositionLeg(String aUnderlying) { this(aUnderlying, "", null); }
+
+	public PositionLeg(String aUnderlying, String aOptDesc, com.wormtrader.broker.Broker aBroker)
+		{
+		fUnderlying = aUnderlying;
+		fOptDesc = aOptDesc;
+		fStrategy = new Strategy("strategy", new Trader(aBroker));
+		}
+
+	public String   getUnderlying() { return fUnderlying; }
+	public String   getOptDesc() { return fOptDesc; }
+	public Strategy getStrategy() { return fStrategy; }
+	public Trader   getTrader() { return fStrategy.getTrader(); }
+	public boolean  isAutoTraded() { return fAutoTraded; }
+	public void     setAutoTraded(boolean on) { fAutoTraded = on; }
+	public int      getQty() { return fQty; }
+	public void     setQty(int aQty) { fQty = aQty; }
+	public USD      getLast() { return new USD(fLast); }
+	public void     setLast(int aCents) { fLast = aCents; }
+
+	public synchronized void add(OrderTracker aOrder) { fOrders.add(aOrder); }
+	public synchronized void remove(OrderTracker aOrder) { fOrders.remove(aOrder); }
+	public synchronized List<OrderTracker> getOrders() { return new ArrayList<OrderTracker>(fOrders); }
+
+	@Override public int compareTo(PositionLeg aOther)
+		{
+		int it = fUnderlying.compareTo(aOther.fUnderlying);
+		return (it != 0)? it : fOptDesc.compareTo(aOther.fOptDesc);
+		}
+
+	@Override public String toString()
+		{
+		return fOptDesc.isEmpty()? fUnderlying : fUnderlying + " " + fOptDesc;
+		}
+	}
@@ -0,0 +1,10 @@
+package com.wormtrader.positions;
+/** Stand-in: the strategy trading a leg */
+public class Strategy
+	{
+	private final String fName;
+	private final Trader fTrader;
+	public Strategy(String aName, Trader aTrader) { fName = aName; fTrader = aTrader; }
+	public Trader getTrader() { return fTrader; }
+	@Override public String toString() { return fName; }
+	}
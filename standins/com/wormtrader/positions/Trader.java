@@ -0,0 +1,13 @@
+package com.wormtrader.positions;
+/** Stand-in: the trader, its broker and the broker time */
+public class Trader
+	{
+	/** The broker time returned by time(): set it to move the clock */
+	public static long now;
+	public static long time() { return now; }
+
+	private final com.wormtrader.broker.Broker fBroker;
+	public Trader(com.wormtrader.broker.Broker aBroker) { fBroker = aBroker; }
+	public com.wormtrader.broker.Broker getBroker() { return fBroker; }
+	public int sizePosition(PositionLeg aLeg) { return 100; }
+	}
@@ -0,0 +1,122 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)AsyncBrokerAdapterTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* AsyncBrokerAdapterTest: Placements run on the executor, a cancel of
+* an order whose placement is still queued drops it, and a cancel of an
+* order still SENT does not ack it.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent cancel of an order still SENT does not ack it
+* 20261018 agent submitAll() tickets, latency of the wrapped broker
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+public class AsyncBrokerAdapterTest
+	{
+	/** Runs the queued tasks when told to */
+	static final class Queue
+		implements Executor
+		{
+		final List<Runnable> fTasks = new ArrayList<Runnable>();
+		@Override public void execute(Runnable aTask) { fTasks.add(aTask); }
+		void runAll()
+			{
+			for (Runnable task : fTasks)
+				task.run();
+			fTasks.clear();
+			}
+		}
+
+	private final SimBroker          fSim = new SimBroker();
+	private final Queue              fQueue = new Queue();
+	private final AsyncBrokerAdapter fAsync = new AsyncBrokerAdapter(fSim, fQueue);
+	private final PositionLeg        fLeg = new PositionLeg("IBM", "", fAsync);
+
+	private OrderTracker lmt(int aLmt)
+		{
+		return new OrderTracker(fLeg, Broker.LMT_ORDER, 100, aLmt, 0, 0, "");
+		}
+
+	@Test public void placementRunsOnTheExecutor()
+		{
+		OrderTracker order = lmt(9000);
+		OrderTicket ticket = fAsync.submit(order);
+		assertEquals(OrderTracker.SENT, order.getState());
+		assertFalse(ticket.acked().isDone());
+		fQueue.runAll();
+		assertEquals(OrderTracker.OPEN, order.getState());
+		assertTrue(ticket.acked().isDone());
+		}
+
+	@Test public void cancelDropsAQueuedPlacement()
+		{
+		OrderTracker order = lmt(9000);
+		fAsync.submit(order);
+		assertTrue(fAsync.cancel(order).isDone());
+		assertEquals(OrderTracker.CANCELED, order.getState());
+		fQueue.runAll();
+		assertEquals(OrderTracker.CANCELED, order.getState()); // not reopened
+		assertEquals(0, fSim.getOrderList().size());
+		}
+
+	@Test public void aDoneOrderIsNotPlaced()
+		{
+		OrderTracker order = lmt(9000);
+		assertTrue(order.transition(OrderTracker.CANCELED));
+		fAsync.submit(order);
+		assertTrue(fQueue.fTasks.isEmpty());
+		}
+
+	@Test public void cancelOfASoftOrderRemovesItFromTheLeg()
+		{
+		OrderTracker order = lmt(9000);
+		fLeg.add(order);
+		assertTrue(fAsync.cancel(order).isDone());
+		assertEquals(OrderTracker.CANCELED, order.getState());
+		assertFalse(fLeg.getOrders().contains(order));
+		}
+	
+	@Test public void cancelWhileSentDoesNotAck()
+		{
+		OrderTracker order = lmt(9000);
+		assertTrue(order.transition(OrderTracker.SENT)); // at the broker, no ack yet
+		OrderTicket ticket = new OrderTicket(order);
+		CompletableFuture<OrderTracker> done = fAsync.cancel(order);
+		assertEquals(OrderTracker.CAN_REQ, order.getState());
+		assertFalse(ticket.acked().isDone());
+		assertFalse(done.isDone());
+		fQueue.runAll();
+		assertEquals(OrderTracker.CANCELED, order.getState());
+		assertTrue(done.isDone());
+		}
+	
+	@Test public void submitAllReturnsATicketPerOrder()
+		{
+		OrderTracker a = lmt(9000);
+		OrderTracker b = lmt(8900);
+		List<OrderTicket> tickets = fAsync.submitAll(Arrays.asList(a, b));
+		assertEquals(2, tickets.size());
+		assertSame(a, tickets.get(0).order());
+		assertSame(b, tickets.get(1).order());
+		assertEquals(1, fQueue.fTasks.size()); // one batch
+		fQueue.runAll();
+		assertTrue(tickets.get(0).acked().isDone());
+		assertTrue(tickets.get(1).acked().isDone());
+		}
+
+	@Test public void latencyIsTheWrappedBrokers()
+		{
+		assertSame(fSim.getOrderLatency(), fAsync.getOrderLatency());
+		}
+	}
@@ -0,0 +1,214 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)CoalescingTableModelTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* CoalescingTableModelTest: The events a table is sent for a frame of
+* changes, and the view it sees while each is handled.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import org.junit.Test;
+
+public class CoalescingTableModelTest
+	{
+	/** A list of strings, one per row */
+	static final class Rows
+		extends CoalescingTableModel
+		{
+		private final List<String> fRows = new ArrayList<String>();
+
+		synchronized void add(int r, String aRow)
+			{
+			fRows.add(r, aRow);
+			fireTableRowsInserted(r, r);
+			}
+
+		synchronized void remove(int r)
+			{
+			fRows.remove(r);
+			fireTableRowsDeleted(r, r);
+			}
+
+		synchronized void update(int r) { fireTableRowsUpdated(r, r); }
+
+		@Override protected int currentRowCount() { return fRows.size(); }
+		@Override protected Object currentRow(int r) { return fRows.get(r); }
+		@Override public int getColumnCount() { return 1; }
+		@Override public int getRowCount()
+			{
+			if (isCoalescing())
+				return viewSize();
+			synchronized (this) { return fRows.size(); }
+			}
+		@Override public Object getValueAt(int r, int c)
+			{
+			if (isCoalescing())
+				return viewRow(r);
+			synchronized (this) { return fRows.get(r); }
+			}
+		}
+
+	/** Records the events, checking each against the rows the table sees */
+	static final class Recorder
+		implements TableModelListener
+		{
+		final List<String> fEvents = new ArrayList<String>();
+		final Rows fModel;
+		Recorder(Rows aModel) { fModel = aModel; aModel.addTableModelListener(this); }
+
+		@Override public void tableChanged(TableModelEvent e)
+			{
+			int rows = fModel.getRowCount();
+			switch (e.getType())
+				{
+				case TableModelEvent.INSERT:
+					assertTrue(e.getLastRow() < rows);
+					fEvents.add("+" + e.getFirstRow() + ".." + e.getLastRow());
+					break;
+				case TableModelEvent.DELETE:
+					assertTrue(e.getFirstRow() <= rows);
+					fEvents.add("-" + e.getFirstRow() + ".." + e.getLastRow());
+					break;
+				default:
+					fEvents.add((e.getLastRow() == Integer.MAX_VALUE)? "all"
+					           : ("~" + e.getFirstRow() + ".." + e.getLastRow()));
+				}
+			}
+
+		/** @return the events sent by the next frame with any */
+		List<String> frame()
+			throws Exception
+			{
+			long giveUp = System.currentTimeMillis() + 5000;
+			while (System.currentTimeMillis() < giveUp)
+				{
+				Thread.sleep(20);
+				final List<String> got = new ArrayList<String>();
+				SwingUtilities.invokeAndWait(new Runnable()
+					{
+					@Override public void run()
+						{
+						got.addAll(fEvents);
+						fEvents.clear();
+						}
+					});
+				if (!got.isEmpty())
+					return got;
+				}
+			fail("no frame published");
+			return null;
+			}
+		}
+
+	private static Rows rows(int aCount)
+		{
+		Rows model = new Rows();
+		for (int r = 0; r < aCount; r++)
+			model.add(r, "r" + r);
+		return model;
+		}
+
+	private static void assertView(final Rows aModel)
+		throws Exception
+		{
+		SwingUtilities.invokeAndWait(new Runnable()
+			{
+			@Override public void run()
+				{
+				synchronized (aModel)
+					{
+					assertEquals(aModel.fRows.size(), aModel.viewSize());
+					for (int r = 0; r < aModel.viewSize(); r++)
+						assertSame(aModel.fRows.get(r), aModel.viewRow(r));
+					}
+				}
+			});
+		}
+
+	@Test public void insertsAndDeletesAreReplayedInOrder()
+		throws Exception
+		{
+		Rows model = rows(100);
+		Recorder recorder = new Recorder(model);
+		model.setPublishRate(100);
+		assertEquals("[all]", recorder.frame().toString());
+		synchronized (model)
+			{
+			model.add(10, "a");
+			model.add(11, "b");  // merges with the insert before
+			model.add(90, "c");
+			model.remove(50);
+			model.remove(50);    // merges with the delete before
+			model.remove(0);
+			}
+		assertEquals("[+10..11, +90..90, -50..51, -0..0]", recorder.frame().toString());
+		assertView(model);
+		model.setPublishRate(0);
+		}
+
+	@Test public void farApartUpdatesKeepTheirOwnEvents()
+		throws Exception
+		{
+		Rows model = rows(200);
+		Recorder recorder = new Recorder(model);
+		model.setPublishRate(100);
+		recorder.frame();
+		synchronized (model)
+			{
+			model.update(3);
+			model.update(5);     // near 3: shares its event
+			model.update(150);
+			model.add(0, "x");   // moves the updated rows down one
+			model.remove(100);
+			}
+		assertEquals("[+0..0, -100..100, ~4..6, ~150..150]", recorder.frame().toString());
+		assertView(model);
+		model.setPublishRate(0);
+		}
+
+	@Test public void aFrameOfTooManyStepsReloads()
+		throws Exception
+		{
+		Rows model = rows(300);
+		Recorder recorder = new Recorder(model);
+		model.setPublishRate(100);
+		recorder.frame();
+		synchronized (model)
+			{
+			for (int r = 0; r < 100; r++)
+				model.remove(2 * r); // every other row: no two merge
+			}
+		assertEquals("[all]", recorder.frame().toString());
+		assertView(model);
+		model.setPublishRate(0);
+		}
+
+	@Test public void aBatchSendsOneEventPerRunOfUpdates()
+		{
+		Rows model = rows(100);
+		final List<String> events = new ArrayList<String>();
+		model.addTableModelListener(new TableModelListener()
+			{
+			@Override public void tableChanged(TableModelEvent e)
+				{
+				events.add(e.getFirstRow() + ".." + e.getLastRow());
+				}
+			});
+		model.beginBatch();
+		model.update(1);
+		model.update(2);
+		model.update(80);
+		assertTrue(events.isEmpty());
+		model.endBatch();
+		assertEquals("[1..2, 80..80]", events.toString());
+		}
+	}
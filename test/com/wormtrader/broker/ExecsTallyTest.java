@@ -0,0 +1,161 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)ExecsTallyTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* ExecsTallyTest: Fills recorded from many threads all count, cents go
+* beyond the range of an int, the symbol and strategy breakdowns add up,
+* and a snapshot never sees half an execution.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class ExecsTallyTest
+	{
+	private static final int THREADS = 8;
+	private static final int FILLS = 20000; // per thread
+
+	/** Starts THREADS threads running aTask, and waits for them all */
+	private static void race(final Runnable aTask)
+		throws InterruptedException
+		{
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++)
+			{
+			threads[t] = new Thread(new Runnable()
+				{
+				@Override public void run()
+					{
+					try { start.await(); }
+					catch (InterruptedException e) { return; }
+					aTask.run();
+					}
+				});
+			threads[t].start();
+			}
+		start.countDown();
+		for (Thread t : threads)
+			t.join();
+		}
+
+	@Test public void concurrentFillsAllCount()
+		throws InterruptedException
+		{
+		final ExecsTally tally = new ExecsTally();
+		race(new Runnable()
+			{
+			@Override public void run()
+				{
+				for (int i = 0; i < FILLS; i++)
+					tally.record("IBM", "s1", (i & 1) == 0 ? 100 : -50, 1000);
+				}
+			});
+		ExecsSummary sum = tally.snapshot();
+		int each = THREADS * FILLS / 2;
+		assertEquals(each, sum.m_botTrades);
+		assertEquals(each, sum.m_sldTrades);
+		assertEquals(100 * each, sum.m_botQty);
+		assertEquals(50 * each, sum.m_sldQty);
+		assertEquals(100L * 1000 * each, sum.m_botCents);
+		assertEquals(50L * 1000 * each, sum.m_sldCents);
+		}
+
+	@Test public void centsBeyondTheRangeOfAnInt()
+		{
+		ExecsTally tally = new ExecsTally();
+		for (int i = 0; i < 3; i++)
+			tally.record("BRK", null, 1000000, 50000000); // $500,000 a share
+		tally.record("BRK", null, -1000000, 50000100);
+		ExecsSummary sum = tally.snapshot();
+		assertEquals(3L * 1000000 * 50000000, sum.m_botCents);
+		assertEquals(1000000L * 50000100, sum.m_sldCents);
+		assertEquals(1000000L * 50000100 - 3L * 1000000 * 50000000, sum.netCents());
+		assertTrue(sum.m_botCents > Integer.MAX_VALUE);
+		}
+
+	@Test public void bySymbolAndByStrategy()
+		{
+		ExecsTally tally = new ExecsTally();
+		Object s1 = "s1";
+		Object s2 = "s2";
+		tally.record("IBM", s1, 100, 10000);
+		tally.record("IBM", s2, -40, 10100);
+		tally.record("MSFT", s1, 200, 3000);
+		tally.record(null, s2, 10, 500);   // no symbol: total and strategy only
+		tally.record("MSFT", null, -200, 3100); // no strategy
+
+		ExecsSummary ibm = tally.snapshot("IBM");
+		assertEquals(1, ibm.m_botTrades);
+		assertEquals(1, ibm.m_sldTrades);
+		assertEquals(40L * 10100 - 100L * 10000, ibm.netCents());
+		ExecsSummary msft = tally.snapshot("MSFT");
+		assertEquals(400, msft.totalQty());
+		assertEquals(200L * 100, msft.netCents());
+		assertEquals(0, tally.snapshot("AAPL").totalNumTrades());
+
+		ExecsSummary first = tally.snapshotStrategy(s1);
+		assertEquals(2, first.m_botTrades);
+		assertEquals(300, first.m_botQty);
+		ExecsSummary second = tally.snapshotStrategy(s2);
+		assertEquals(2, second.totalNumTrades());
+		assertEquals(50, second.totalQty());
+
+		Map<String, ExecsSummary> bySymbol = tally.bySymbol();
+		assertEquals(2, bySymbol.size());
+		assertEquals(ibm.netCents(), bySymbol.get("IBM").netCents());
+		Map<Object, ExecsSummary> byStrategy = tally.byStrategy();
+		assertEquals(2, byStrategy.size());
+		assertEquals(5, tally.snapshot().totalNumTrades());
+
+		tally.reset();
+		assertEquals(0, tally.snapshot().totalNumTrades());
+		assertTrue(tally.bySymbol().isEmpty());
+		}
+
+	/**
+	* Every execution is 100 shares at $10.00, so in any snapshot taken
+	* while they are recorded the shares and cents must agree with the
+	* trades
+	*/
+	@Test public void snapshotsNeverSeeHalfAnExecution()
+		throws InterruptedException
+		{
+		final ExecsTally tally = new ExecsTally();
+		final AtomicBoolean torn = new AtomicBoolean();
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		Thread reader = new Thread(new Runnable()
+			{
+			@Override public void run()
+				{
+				while (writing.get())
+					{
+					ExecsSummary sum = tally.snapshot();
+					if (sum.m_botQty != 100 * sum.m_botTrades
+					||  sum.m_botCents != 1000L * sum.m_botQty)
+						torn.set(true);
+					}
+				}
+			});
+		reader.start();
+		race(new Runnable()
+			{
+			@Override public void run()
+				{
+				for (int i = 0; i < FILLS; i++)
+					tally.record("IBM", null, 100, 1000);
+				}
+			});
+		writing.set(false);
+		reader.join();
+		assertFalse(torn.get());
+		assertEquals(THREADS * FILLS, tally.snapshot().m_botTrades);
+		}
+	}
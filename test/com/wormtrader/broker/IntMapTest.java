@@ -0,0 +1,100 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)IntMapTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* IntMapTest: The open addressing map of OrderList's id index, above all
+* removal, which shifts the entries that probed past the removed one.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class IntMapTest
+	{
+	@Test public void putGetRemove()
+		{
+		IntMap<String> map = new IntMap<String>();
+		assertNull(map.put(1, "one"));
+		assertNull(map.put(-1, "minus one"));
+		assertNull(map.put(0, "zero"));
+		assertEquals("one", map.put(1, "uno"));
+		assertEquals(3, map.size());
+		assertEquals("uno", map.get(1));
+		assertEquals("zero", map.get(0));
+		assertTrue(map.containsKey(-1));
+		assertEquals("minus one", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertFalse(map.containsKey(-1));
+		assertEquals(2, map.size());
+		}
+
+	/** Removing from a run of colliding keys must leave the rest findable */
+	@Test public void deleteInsideAProbeRun()
+		{
+		IntMap<Integer> map = new IntMap<Integer>(8); // 16 slots
+		int[] keys = new int[6];
+		int n = 0;
+		for (int key = 0; n < keys.length; key++) // keys sharing a home slot
+			if ((hash(key) & 15) == 5)
+				{
+				keys[n++] = key;
+				map.put(key, key);
+				}
+		map.remove(keys[1]);
+		map.remove(keys[3]);
+		for (int i = 0; i < keys.length; i++)
+			assertEquals((i == 1 || i == 3)? null : Integer.valueOf(keys[i]), map.get(keys[i]));
+		assertEquals(4, map.size());
+		}
+
+	/** A copy of IntMap's hash, to build colliding keys */
+	private static int hash(int aKey)
+		{
+		int h = aKey * 0x9E3779B9;
+		return h ^ (h >>> 16);
+		}
+
+	@Test public void removeValue()
+		{
+		IntMap<String> map = new IntMap<String>();
+		String it = "it";
+		map.put(42, it);
+		map.put(43, "other");
+		assertTrue(map.removeValue(it));
+		assertFalse(map.removeValue(it));
+		assertNull(map.get(42));
+		assertEquals("other", map.get(43));
+		}
+
+	@Test public void matchesHashMapOverRandomOperations()
+		{
+		IntMap<Integer> map = new IntMap<Integer>();
+		Map<Integer,Integer> expected = new HashMap<Integer,Integer>();
+		Random random = new Random(20261018);
+		for (int i = 0; i < 200000; i++)
+			{
+			int key = random.nextInt(2000) - 1000;
+			switch (random.nextInt(3))
+				{
+				case 0: assertEquals(expected.put(key, i), map.put(key, i)); break;
+				case 1: assertEquals(expected.remove(key), map.remove(key)); break;
+				case 2: assertEquals(expected.get(key), map.get(key)); break;
+				}
+			assertEquals(expected.size(), map.size());
+			if (i % 50000 == 0)
+				{
+				map.clear();
+				expected.clear();
+				}
+			}
+		for (Map.Entry<Integer,Integer> e : expected.entrySet())
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+	}
@@ -0,0 +1,73 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)LatencyHistogramTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* LatencyHistogramTest: Values land in buckets within their resolution,
+* percentiles follow the counts, and reset() clears everything.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+	{
+	/**
+	* Each value, recorded below a much larger one, is reported as the top
+	* of its bucket: exact under 16, otherwise within a sixteenth above it
+	*/
+	@Test public void bucketsWithinResolution()
+		{
+		LatencyHistogram it = new LatencyHistogram();
+		for (long v = 0; v < (1L << 50); v = v * 3 / 2 + 1)
+			{
+			it.reset();
+			it.record(v);
+			it.record(Long.MAX_VALUE / 2);
+			long reported = it.percentile(50.0);
+			if (v < 16)
+				assertEquals(v, reported);
+			else
+				assertTrue(v + " reported " + reported,
+				           reported >= v && reported <= v + v / 16);
+			}
+		}
+
+	@Test public void percentilesFollowTheCounts()
+		{
+		LatencyHistogram it = new LatencyHistogram();
+		assertEquals(0, it.p50());
+		for (int i = 1; i <= 1000; i++)
+			it.record(i < 990? 10 : 5000);
+		it.record(-5); // counted as zero
+		assertEquals(1001, it.count());
+		assertEquals(5000, it.max());
+		assertEquals(0, it.percentile(0.0));
+		assertEquals(10, it.p50());
+		assertEquals(5000, it.p999());     // capped at the max
+		assertEquals(5000, it.percentile(100.0));
+		assertEquals((989 * 10 + 11 * 5000) / 1001, it.mean());
+		}
+
+	@Test public void resetClears()
+		{
+		LatencyHistogram it = new LatencyHistogram();
+		it.record(123456);
+		it.reset();
+		assertEquals(0, it.count());
+		assertEquals(0, it.max());
+		assertEquals(0, it.mean());
+		assertEquals(0, it.p99());
+		}
+
+	@Test public void formatsInReadableUnits()
+		{
+		assertEquals("9999ns", LatencyHistogram.format(9999));
+		assertEquals("10us", LatencyHistogram.format(10000));
+		assertEquals("10ms", LatencyHistogram.format(10000000L));
+		assertEquals("10s", LatencyHistogram.format(10000000000L));
+		}
+	}
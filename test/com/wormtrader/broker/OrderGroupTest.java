@@ -0,0 +1,127 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderGroupTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderGroupTest: OCO and bracket groups against a SimBroker, the
+* members leaving the group once done, and a bracket's stop shrinking as
+* its target fills in parts.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent a partial target fill shrinks the stop
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import org.junit.Test;
+
+public class OrderGroupTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fLeg = new PositionLeg("IBM", "", fSim);
+
+	private OrderTracker lmt(int aQty, int aLmt)
+		{
+		return new OrderTracker(fLeg, Broker.LMT_ORDER, aQty, aLmt, 0, 0, "");
+		}
+
+	@Test public void firstFillCancelsTheOthers()
+		{
+		OrderTracker buy = lmt(100, 9000);
+		OrderTracker sell = lmt(-100, 11000);
+		OrderGroup group = OrderGroup.oco(buy, sell);
+		fSim.placeGroup(group);
+		assertEquals(OrderTracker.OPEN, sell.getState());
+		fSim.tick(fLeg, 9000);
+		assertEquals(OrderTracker.FILLED, buy.getState());
+		assertEquals(OrderTracker.CANCELED, sell.getState());
+		assertTrue(group.isDone());
+		assertTrue(group.getOrders().isEmpty());
+		}
+
+	@Test public void aSentMemberIsCancelledAtTheBroker()
+		{
+		PacedBroker paced = new PacedBroker(fSim, 0.01, 1);
+		OrderTracker buy = lmt(100, 9000);
+		OrderTracker sell = lmt(-100, 11000);
+		OrderGroup group = OrderGroup.oco(buy, sell);
+		assertTrue(sell.transition(OrderTracker.SENT));
+		paced.placeGroup(group);   // places buy, the only soft member
+		paced.placeOrder(sell);    // no token left: queued
+		assertEquals(1, paced.getQueueDepth());
+		fSim.tick(fLeg, 9000);
+		assertEquals(OrderTracker.CANCELED, sell.getState());
+		assertEquals(0, paced.getQueueDepth());
+		assertTrue(group.isDone());
+		}
+
+	@Test public void cancelledMembersLeaveAndTheRestStay()
+		{
+		OrderTracker a = lmt(100, 9000);
+		OrderTracker b = lmt(100, 8900);
+		OrderTracker c = lmt(-100, 11000);
+		OrderGroup group = OrderGroup.oco(a, b, c);
+		fSim.placeGroup(group);
+		assertTrue(b.cancel(false));
+		assertEquals(2, group.getOrders().size());
+		assertFalse(group.getOrders().contains(b));
+		fSim.tick(fLeg, 11000);
+		assertEquals(OrderTracker.FILLED, c.getState());
+		assertEquals(OrderTracker.CANCELED, a.getState());
+		assertTrue(group.isDone());
+		}
+
+	@Test public void bracketProtectsTheFillThenClosesOut()
+		{
+		OrderTracker entry = new OrderTracker(fLeg, Broker.LMT_ORDER, 100, 9000, 0, 8500, "");
+		OrderGroup group = OrderGroup.bracket(entry, 9500);
+		fSim.placeGroup(group);
+		fSim.tick(fLeg, 9000);
+		assertNull(group.getEntry()); // filled: left the group
+		assertEquals(2, group.getOrders().size());
+		OrderTracker stop = group.getOrders().get(0);
+		OrderTracker target = group.getOrders().get(1);
+		assertEquals(-100, stop.qty());
+		assertEquals(8500, stop.getLmt());
+		assertEquals(OrderTracker.OPEN, target.getState());
+		fSim.tick(fLeg, 9500);
+		assertEquals(OrderTracker.FILLED, target.getState());
+		assertEquals(OrderTracker.CANCELED, stop.getState());
+		assertTrue(group.isDone());
+		}
+	
+	@Test public void partialTargetFillShrinksTheStop()
+		{
+		fSim.setQueueModel(true);
+		OrderTracker entry = new OrderTracker(fLeg, Broker.LMT_ORDER, 100, 9000, 0, 8500, "");
+		OrderGroup group = OrderGroup.bracket(entry, 9500);
+		fSim.placeGroup(group);
+		fSim.tick(fLeg, 9000, 100);
+		assertEquals(OrderTracker.FILLED, entry.getState());
+		OrderTracker stop = group.getOrders().get(0);
+		OrderTracker target = group.getOrders().get(1);
+		fSim.tick(fLeg, 9500, 30);
+		assertEquals(OrderTracker.PART_FILL, target.getState());
+		assertEquals(-30, target.getFilled());
+		assertEquals(-70, stop.qty()); // covers what the target left open
+		assertEquals(OrderTracker.OPEN, stop.getState());
+		fSim.tick(fLeg, 9500, 70);
+		assertEquals(OrderTracker.FILLED, target.getState());
+		assertEquals(OrderTracker.CANCELED, stop.getState());
+		assertTrue(group.isDone());
+		}
+
+	@Test public void ocoStillCancelsOnAPartialFill()
+		{
+		fSim.setQueueModel(true);
+		OrderTracker buy = lmt(100, 9000);
+		OrderTracker sell = lmt(-100, 11000);
+		OrderGroup group = OrderGroup.oco(buy, sell);
+		fSim.placeGroup(group);
+		fSim.tick(fLeg, 9000, 40);
+		assertEquals(OrderTracker.PART_FILL, buy.getState());
+		assertEquals(OrderTracker.CANCELED, sell.getState());
+		assertEquals(100, buy.qty());
+		}
+	}
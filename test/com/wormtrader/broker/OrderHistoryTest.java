@@ -0,0 +1,188 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderHistoryTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderHistoryTest: Orders archived from a list come back from get(r) as
+* they were, on the heap and off it, across the columns doubling; legs,
+* types and reasons are held once each in the dictionaries; and the scans
+* and aggregations add up.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import org.junit.Test;
+
+public class OrderHistoryTest
+	{
+	private static final int ORDERS = 100; // well past the first capacity of 16
+	private static final String[] TYPES = { "LMT", "STP", "MKT", "TRAIL" };
+	private static final String[] REASONS = { "entry", "target", "stop", "exit" };
+
+	private final SimBroker     fSim = new SimBroker();
+	private final PositionLeg[] fLegs = { new PositionLeg("IBM", "", fSim),
+	                                      new PositionLeg("AAPL", "", fSim),
+	                                      new PositionLeg("MSFT", "", fSim) };
+
+	/** The leg changes every third order, so each leg has orders in every state */
+	private PositionLeg leg(int i) { return fLegs[(i / 3) % fLegs.length]; }
+
+	/**
+	* Every third order stays open, the others are filled or cancelled
+	* after a part fill. Reasons are new strings, so only the dictionary
+	* makes them one.
+	*/
+	private OrderTracker order(int i)
+		{
+		int qty = ((i & 1) == 0)? 100 + i : -(100 + i);
+		OrderTracker it = new OrderTracker(1000 + i, leg(i),
+			TYPES[i % TYPES.length], qty, 10000 + i, 50 + i, 9000 + i,
+			new String(REASONS[i % REASONS.length]));
+		switch (i % 3)
+			{
+			case 0: it.setFilled(qty); break;
+			case 1: it.setFilled(qty / 2); it.setState(OrderTracker.CANCELED); break;
+			default: break; // open
+			}
+		return it;
+		}
+
+	private OrderHistory archived(boolean aDirect, Map<Integer, OrderTracker> aByID)
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		for (int i = 0; i < ORDERS; i++)
+			{
+			OrderTracker it = order(i);
+			list.add(it);
+			aByID.put(it.id(), it);
+			}
+		OrderHistory history = new OrderHistory(16, aDirect);
+		long bytes = history.getBytes();
+		int finished = history.archive(list);
+		assertEquals(ORDERS - ORDERS / 3, finished);
+		assertEquals(finished, history.size());
+		assertEquals(ORDERS - finished, list.size()); // the open ones stay
+		assertTrue(history.getBytes() > bytes);
+		assertEquals(aDirect, history.isDirect());
+		return history;
+		}
+
+	private void roundTrips(boolean aDirect)
+		{
+		Map<Integer, OrderTracker> byID = new HashMap<Integer, OrderTracker>();
+		OrderHistory history = archived(aDirect, byID);
+		for (int r = 0; r < history.size(); r++)
+			{
+			OrderTracker was = byID.get(history.id(r));
+			OrderTracker is = history.get(r);
+			assertNotSame(was, is);
+			assertEquals(was.id(), is.id());
+			assertSame(was.leg(), is.leg());
+			assertEquals(was.type(), is.type());
+			assertEquals(was.typeCode(), is.typeCode());
+			assertEquals(was.act(), is.act());
+			assertEquals(was.qty(), is.qty());
+			assertEquals(was.getFilled(), is.getFilled());
+			assertEquals(was.getLmt(), is.getLmt());
+			assertEquals(was.getAux(), is.getAux());
+			assertEquals(was.getInitialStop(), is.getInitialStop());
+			assertEquals(was.getReason(), is.getReason());
+			assertEquals(was.getState(), is.getState());
+			assertEquals(was.time(), is.time());
+			}
+		}
+
+	@Test public void roundTripsAcrossAGrowOnTheHeap() { roundTrips(false); }
+
+	@Test public void roundTripsAcrossAGrowOffTheHeap() { roundTrips(true); }
+
+	@Test public void legsTypesAndReasonsAreHeldOnce()
+		{
+		OrderHistory history = archived(false, new HashMap<Integer, OrderTracker>());
+		assertEquals(fLegs.length, history.legCount());
+		assertEquals(REASONS.length, history.reasonCount());
+		for (PositionLeg leg : fLegs)
+			assertSame(leg, history.legOf(history.codeOf(leg)));
+		assertEquals(-1, history.codeOf(new PositionLeg("GOOG", "", fSim)));
+		assertEquals(-1, history.codeOf("nobody's reason"));
+		for (int r = 0; r < history.size(); r++)
+			{
+			int i = history.id(r) - 1000;
+			assertEquals(history.codeOf(leg(i)), history.legCode(r));
+			assertSame(history.reason(r), history.reason(history.select(equalReason(history, r))[0]));
+			assertEquals(REASONS[i % REASONS.length], history.reasonOf(history.reasonCode(r)));
+			assertEquals(OrderTracker.typeCode(TYPES[i % TYPES.length]), history.typeCode(r));
+			assertEquals(TYPES[i % TYPES.length], history.type(r)); // TRAIL kept aside
+			}
+		}
+
+	private static IntPredicate equalReason(final OrderHistory aHistory, final int aRow)
+		{
+		return new IntPredicate()
+			{
+			@Override public boolean test(int r)
+				{
+				return aHistory.reasonCode(r) == aHistory.reasonCode(aRow);
+				}
+			};
+		}
+
+	@Test public void scansAndAggregationsAddUp()
+		{
+		Map<Integer, OrderTracker> byID = new HashMap<Integer, OrderTracker>();
+		final OrderHistory history = archived(true, byID);
+
+		// what the scans should find, from the orders themselves
+		int[] states = new int[OrderTracker.STATE_DESC.length];
+		long[] shares = new long[fLegs.length];
+		int[] reasons = new int[REASONS.length];
+		long filledIBM = 0;
+		for (OrderTracker it : byID.values())
+			{
+			byte state = it.getState();
+			if (state != OrderTracker.FILLED && state != OrderTracker.CANCELED)
+				continue;
+			++states[state];
+			shares[history.codeOf(it.leg())] += it.getFilled();
+			++reasons[history.codeOf(it.getReason())];
+			if (it.leg() == fLegs[0])
+				filledIBM += it.getFilled();
+			}
+		assertArrayEquals(states, history.countByState());
+		assertArrayEquals(shares, history.filledByLeg());
+		assertArrayEquals(reasons, history.countByReason());
+
+		final int ibm = history.codeOf(fLegs[0]);
+		IntPredicate onIBM = new IntPredicate()
+			{
+			@Override public boolean test(int r) { return history.legCode(r) == ibm; }
+			};
+		assertEquals(filledIBM, history.sumFilled(onIBM));
+		final int[] visited = new int[1];
+		int count = history.forEach(onIBM, new IntConsumer()
+			{
+			@Override public void accept(int r)
+				{
+				assertSame(fLegs[0], history.leg(r));
+				++visited[0];
+				}
+			});
+		assertEquals(count, visited[0]);
+		int[] rows = history.select(onIBM);
+		assertEquals(count, rows.length);
+		for (int k = 1; k < rows.length; k++)
+			assertTrue(rows[k - 1] < rows[k]);
+
+		history.clear();
+		assertEquals(0, history.size());
+		assertEquals(0, history.legCount());
+		assertEquals(0, history.sumFilled(onIBM));
+		}
+	}
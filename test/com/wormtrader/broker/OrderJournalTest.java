@@ -0,0 +1,122 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderJournalTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderJournalTest: Orders journaled from an OrderList replay into a new
+* list with their latest state and terms.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderJournalTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fIBM = new PositionLeg("IBM", "", fSim);
+	private final LegResolver fResolver = new LegResolver()
+		{
+		@Override public PositionLeg find(String aUnderlying, String aOptDesc)
+			{
+			return aUnderlying.equals("IBM")? fIBM : null;
+			}
+		};
+	private File fFile;
+
+	@Before public void createFile() throws IOException
+		{
+		fFile = File.createTempFile("orders", ".journal");
+		fFile.deleteOnExit();
+		}
+
+	@After public void deleteFile() { fFile.delete(); }
+
+	private OrderList<OrderTracker> replay() throws IOException
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderJournal journal = new OrderJournal(fFile, 0);
+		try { list.setJournal(journal); journal.replay(list, fResolver); }
+		finally { journal.close(); }
+		return list;
+		}
+
+	@Test public void replaysStateAndModifications() throws IOException
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderJournal journal = new OrderJournal(fFile, 0);
+		list.setJournal(journal);
+		OrderTracker a = new OrderTracker(5, fIBM, "LMT", 100, 10000, 0);
+		OrderTracker b = new OrderTracker(6, fIBM, "LMT", -100, 11000, 0);
+		list.add(a);
+		list.add(b);
+		a.setState(OrderTracker.OPEN);
+		a.modify(200, 9900);           // no explicit journal call: heard as listener
+		a.setInitialStop(9500);
+		a.setReason("dip");
+		a.setFilled(50);
+		list.remove(b);
+		b.setQty(-300);                // removed: no longer journaled
+		journal.close();
+
+		list = replay();
+		assertEquals(1, list.size());
+		OrderTracker it = list.getRow(0);
+		assertEquals(5, it.id());
+		assertEquals(OrderTracker.PART_FILL, it.getState());
+		assertEquals(200, it.qty());
+		assertEquals(9900, it.getLmt());
+		assertEquals(9500, it.getInitialStop());
+		assertEquals(50, it.getFilled());
+		assertTrue(it.getReason().startsWith("dip"));
+		assertSame(it, list.find(5));
+		}
+
+	@Test public void replaysTypeChangeAndMerge() throws IOException
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderJournal journal = new OrderJournal(fFile, 0);
+		list.setJournal(journal);
+		OrderTracker a = new OrderTracker(fIBM, Broker.LMT_ORDER, 100, 10000, 0, 0, "a");
+		list.add(a);
+		list.add(new OrderTracker(fIBM, Broker.LMT_ORDER, 50, 10000, 0, 0, "b"));
+		assertEquals(1, list.size());  // netted into a
+		a.setType(Broker.TYPE_MKT);
+		journal.close();
+
+		list = replay();
+		assertEquals(1, list.size());
+		OrderTracker it = list.getRow(0);
+		assertEquals(150, it.qty());
+		assertEquals(Broker.TYPE_MKT, it.typeCode());
+		assertTrue(it.isSoft());
+		}
+
+	@Test public void replayedOrdersAreJournaled() throws IOException
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderJournal journal = new OrderJournal(fFile, 0);
+		list.setJournal(journal);
+		list.add(new OrderTracker(9, fIBM, "STP", -100, 9000, 0));
+		journal.close();
+
+		list = new OrderList<OrderTracker>();
+		journal = new OrderJournal(fFile, 0);
+		list.setJournal(journal);
+		journal.replay(list, fResolver);
+		list.getRow(0).modify(-100, 8900);
+		list.getRow(0).setState(OrderTracker.CANCELED);
+		journal.close();
+
+		OrderTracker it = replay().getRow(0);
+		assertEquals(8900, it.getLmt());
+		assertEquals(OrderTracker.CANCELED, it.getState());
+		}
+	}
@@ -0,0 +1,163 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderListTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderListTest: Row order, the broker id index, the read only view of
+* the orders, the netting of soft orders and the cached cells.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent netting: offsetting orders, re-keying on modify
+* 20261018 agent cell cache: unchanged rows skip formatting
+*******************************************************/
+import static org.junit.Assert.*;
+import com.shanebow.util.SBFormat;
+import com.wormtrader.positions.PositionLeg;
+import org.junit.Test;
+
+public class OrderListTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fIBM = new PositionLeg("IBM", "", fSim);
+	private final PositionLeg fAAPL = new PositionLeg("AAPL", "", fSim);
+
+	private static OrderTracker sent(int aID, PositionLeg aLeg, int aLmt)
+		{
+		return new OrderTracker(aID, aLeg, "LMT", 100, aLmt, 0);
+		}
+
+	@Test public void rowsAreSortedByLegThenLimitDescending()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = sent(1, fAAPL, 10000);
+		OrderTracker b = sent(2, fIBM, 9000);
+		OrderTracker c = sent(3, fIBM, 11000);
+		OrderTracker d = sent(4, fIBM, 9000);
+		list.add(a);
+		list.add(b);
+		list.add(c);
+		list.add(d);
+		assertSame(c, list.getRow(0));
+		assertSame(b, list.getRow(1));
+		assertSame(d, list.getRow(2)); // same price: in the order added
+		assertSame(a, list.getRow(3));
+		assertEquals(4, list.getRowCount());
+		assertSame(a, list.getDisplayedRow(3));
+		assertNull(list.getDisplayedRow(4));
+		}
+
+	@Test public void findsSentOrdersById()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = sent(7, fIBM, 10000);
+		list.add(a);
+		assertFalse(list.add(sent(7, fIBM, 10000))); // duplicate from the broker
+		assertSame(a, list.find(7));
+		assertEquals(0, list.indexOf(sent(7, fIBM, 10000)));
+		assertSame(a, list.remove(a));
+		assertNull(list.find(7));
+		assertEquals(0, list.size());
+		}
+
+	private static OrderTracker soft(PositionLeg aLeg, int aQty, int aLmt)
+		{
+		OrderTracker it = new OrderTracker(aLeg, Broker.LMT_ORDER, aQty, aLmt, 0, 0, "test");
+		aLeg.add(it);
+		return it;
+		}
+
+	@Test public void offsettingSoftOrdersAreCancelledAndDropped()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker buy = soft(fIBM, 100, 10000);
+		OrderTracker sell = soft(fIBM, -100, 10000);
+		assertTrue(list.add(buy));
+		list.add(sell);
+		assertEquals(0, list.size());
+		assertEquals(OrderTracker.CANCELED, buy.getState());
+		assertEquals(OrderTracker.CANCELED, sell.getState());
+		assertTrue(fIBM.getOrders().isEmpty());
+		list.add(soft(fIBM, 100, 10000)); // nothing left to net with
+		assertEquals(1, list.size());
+		}
+
+	@Test public void modifiedSoftOrdersNetOnTheirNewTerms()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = soft(fIBM, 100, 10000);
+		list.add(a);
+		a.modify(100, 9900);
+		list.add(soft(fIBM, 100, 10000)); // the old terms: a new row
+		assertEquals(2, list.size());
+		assertEquals(100, a.qty());
+		list.add(soft(fIBM, 50, 9900));   // the new terms: nets with a
+		assertEquals(2, list.size());
+		assertEquals(150, a.qty());
+		a.setState(OrderTracker.CANCELED);
+		list.add(soft(fIBM, 50, 9900));   // a is no longer soft
+		assertEquals(150, a.qty());
+		assertEquals(3, list.size());
+		}
+
+	@Test public void removedSoftOrderLeavesTheIndexAfterAModify()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = soft(fIBM, 100, 10000);
+		list.add(a);
+		list.remove(a);
+		a.modify(100, 9900); // no longer in the list
+		OrderTracker b = soft(fIBM, 100, 9900);
+		list.add(b);
+		assertEquals(1, list.size());
+		assertSame(b, list.getRow(0));
+		assertEquals(100, a.qty());
+		}
+
+	@Test public void unchangedRowRepaintsFromItsCachedCells()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = sent(1, fIBM, 10000);
+		list.add(a);
+		Object qty = list.getValueAt(0, OrderList.COL_QTY);
+		Object lmt = list.getValueAt(0, OrderList.COL_LMT);
+		assertEquals("100", qty);
+		Object[] cells = a.fCells;
+		assertNotNull(cells);
+		assertEquals(a.getVersion(), a.fCellsVersion);
+		for (int i = 0; i < 3; i++) // repaint: the same objects, not reformatted
+			{
+			assertSame(qty, list.getValueAt(0, OrderList.COL_QTY));
+			assertSame(lmt, list.getValueAt(0, OrderList.COL_LMT));
+			}
+		assertSame(cells, a.fCells);
+		}
+
+	@Test public void changeOfVersionReformatsTheCells()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = sent(1, fIBM, 10000);
+		list.add(a);
+		Object qty = list.getValueAt(0, OrderList.COL_QTY);
+		int version = a.getVersion();
+		a.setStatus("Submitted", "");
+		assertTrue(a.getVersion() != version);
+		assertTrue(((String)list.getValueAt(0, OrderList.COL_STATUS)).contains("Submitted"));
+		assertNotSame(qty, list.getValueAt(0, OrderList.COL_QTY)); // all reformatted
+		assertEquals(a.getVersion(), a.fCellsVersion);
+
+		a.modify(200, 9900);
+		assertEquals("200", list.getValueAt(0, OrderList.COL_QTY));
+		assertEquals(SBFormat.toDollarString(9900), list.getValueAt(0, OrderList.COL_LMT));
+		}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void getAllIsReadOnly()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		list.add(sent(1, fIBM, 10000));
+		assertEquals(1, list.getAll().size());
+		list.getAll().clear();
+		}
+	}
@@ -0,0 +1,196 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderLogTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderLogTest: The ring wraps around, drops and counts records when it
+* is full, keeps each producer's records in order, formats them on its
+* own thread as the order was when logged, and does nothing at all while
+* disabled. The drain thread is held back, where a test needs the ring
+* to fill, by holding the log's lock, which drain() takes.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderLogTest
+	{
+	/** Keeps the lines the stand-in SBLog prints, and the thread of each */
+	static final class Capture extends PrintStream
+		{
+		final List<String> fLines = new ArrayList<String>();
+		final List<String> fThreads = new ArrayList<String>();
+
+		Capture()
+			{
+			super(new OutputStream() { @Override public void write(int b) {} });
+			}
+
+		@Override public synchronized void println(String aLine)
+			{
+			fLines.add(aLine);
+			fThreads.add(Thread.currentThread().getName());
+			notifyAll();
+			}
+
+		synchronized List<String> await(int aCount)
+			throws InterruptedException
+			{
+			long until = System.currentTimeMillis() + 5000;
+			while (fLines.size() < aCount && System.currentTimeMillis() < until)
+				wait(100);
+			return new ArrayList<String>(fLines);
+			}
+		}
+
+	private PrintStream fErr;
+	private final Capture fCapture = new Capture();
+
+	@Before public void capture()
+		{
+		fErr = System.err;
+		System.setErr(fCapture);
+		}
+
+	@After public void restore() { System.setErr(fErr); }
+
+	@Test public void wrapsAroundTheRing()
+		throws InterruptedException
+		{
+		OrderLog log = new OrderLog(4);
+		for (int lap = 0; lap < 3; lap++)
+			{
+			for (int i = 0; i < 4; i++)
+				log.log("n=%d", 4 * lap + i);
+			log.drain();
+			}
+		List<String> lines = fCapture.await(12);
+		assertEquals(12, lines.size());
+		for (int i = 0; i < 12; i++)
+			assertEquals("n=" + i, lines.get(i));
+		assertEquals(0, log.getDropped());
+		}
+
+	@Test public void fullRingDropsAndCounts()
+		throws InterruptedException
+		{
+		OrderLog log = new OrderLog(4);
+		synchronized (log) // the drainer waits
+			{
+			for (int i = 0; i < 10; i++)
+				log.log("n=%d", i);
+			assertEquals(6, log.getDropped());
+			}
+		log.drain();
+		log.log("n=%d", 10); // room again
+		log.drain();
+		List<String> lines = fCapture.await(5);
+		assertEquals(5, lines.size());
+		assertEquals("n=0", lines.get(0));
+		assertEquals("n=3", lines.get(3));
+		assertEquals("n=10", lines.get(4));
+		assertEquals(6, log.getDropped());
+		}
+
+	@Test public void eachProducersRecordsStayInOrder()
+		throws InterruptedException
+		{
+		final int producers = 4;
+		final int records = 2000;
+		final OrderLog log = new OrderLog(producers * records);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[producers];
+		for (int t = 0; t < producers; t++)
+			{
+			final long id = t;
+			threads[t] = new Thread(new Runnable()
+				{
+				@Override public void run()
+					{
+					try { start.await(); }
+					catch (InterruptedException e) { return; }
+					for (int i = 0; i < records; i++)
+						log.log("%d %d", id, i);
+					}
+				});
+			threads[t].start();
+			}
+		start.countDown();
+		for (Thread t : threads)
+			t.join();
+		List<String> lines = fCapture.await(producers * records);
+		assertEquals(producers * records, lines.size());
+		assertEquals(0, log.getDropped());
+		int[] next = new int[producers];
+		for (String line : lines)
+			{
+			String[] parts = line.split(" ");
+			int producer = Integer.parseInt(parts[0]);
+			assertEquals(next[producer]++, Integer.parseInt(parts[1]));
+			}
+		}
+
+	@Test public void formatsOnItsOwnThreadAsTheOrderWas()
+		throws InterruptedException
+		{
+		OrderLog log = new OrderLog(16);
+		OrderTracker order = new OrderTracker(7, new PositionLeg("IBM", "", new SimBroker()),
+		                                      "LMT", 100, 10000, 0);
+		synchronized (log) // not drained until the order has changed
+			{
+			log.log("placed %s", order);
+			order.modify(200, 9900);
+			}
+		List<String> lines = fCapture.await(1);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("placed Order(7) "));
+		assertTrue(lines.get(0), lines.get(0).contains("/100 "));
+		assertFalse(lines.get(0), lines.get(0).contains("/200 "));
+		assertEquals("OrderLog", fCapture.fThreads.get(0));
+		}
+
+	@Test public void disabledLogDoesNoWork()
+		{
+		final OrderLog log = new OrderLog(2);
+		BrokerSession session = new BrokerSession(new SimBroker(), log, new OrderLatency());
+		final OrderTracker[] order = new OrderTracker[1];
+		session.run(new Runnable()
+			{
+			@Override public void run()
+				{
+				order[0] = new OrderTracker(7, new PositionLeg("IBM", "", new SimBroker()),
+				                            "LMT", 100, 10000, 0);
+				}
+			});
+		synchronized (log) // a record written would stay, and fill the ring
+			{
+			for (int i = 0; i < 100; i++)
+				{
+				order[0].log("n=%d", i);
+				order[0].log("n=%d %d", i, i);
+				}
+			assertEquals(0, log.getDropped());
+			}
+		assertEquals(0, log.drain());
+		assertTrue(fCapture.fLines.isEmpty());
+
+		log.setEnabled(true);
+		synchronized (log)
+			{
+			order[0].log("n=%d", 1);
+			assertEquals(1, log.drain());
+			}
+		assertEquals(1, fCapture.fLines.size());
+		}
+	}
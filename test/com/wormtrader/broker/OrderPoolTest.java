@@ -0,0 +1,72 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderPoolTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderPoolTest: Recycling, the guard against orders still listened to,
+* and interning limited to the pool's own orders.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import org.junit.Test;
+
+public class OrderPoolTest
+	{
+	private final PositionLeg fIBM = new PositionLeg("IBM");
+	private final OrderPool   fPool = new OrderPool(4);
+
+	private OrderTracker cancelled()
+		{
+		OrderTracker it = fPool.acquire(fIBM, Broker.TYPE_LMT, 100, 10000, 0, 0, "test");
+		assertTrue(it.transition(OrderTracker.CANCELED));
+		return it;
+		}
+
+	@Test public void recyclesAndBumpsTheGeneration()
+		{
+		OrderTracker it = cancelled();
+		int generation = it.getGeneration();
+		assertTrue(fPool.release(it));
+		assertFalse(fPool.release(it)); // twice
+		OrderTracker again = fPool.acquire(fIBM, Broker.TYPE_STP, -50, 9000, 0, 0, "stop");
+		assertSame(it, again);
+		assertEquals(generation + 1, again.getGeneration());
+		assertEquals(OrderTracker.SOFT, again.getState());
+		assertEquals(-50, again.qty());
+		assertEquals(1, fPool.getReused());
+		}
+
+	@Test public void refusesOrdersStillListenedTo()
+		{
+		OrderTracker it = cancelled();
+		OrderStateListener listener = new OrderStateListener()
+			{
+			@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo) {}
+			};
+		it.addStateListener(listener);
+		assertFalse(fPool.release(it));
+		assertEquals(1, fPool.getRefused());
+		assertEquals(0, fPool.getFree());
+		it.removeStateListener(listener);
+		assertTrue(fPool.release(it));
+		}
+
+	@Test public void internsOnlyThePoolsOrders()
+		{
+		OrderTracker pooled = cancelled();
+		pooled.setStatus(new String("Expired"), null);
+		OrderTracker other = cancelled();
+		String status = new String("Expired");
+		other.setStatus(status, null);
+		assertSame(pooled.statusOnly(), other.statusOnly());
+
+		OrderTracker plain = new OrderTracker(fIBM, Broker.LMT_ORDER, 100, 10000, 0, 0, "test");
+		String mine = new String("Expired");
+		plain.setStatus(mine, null);
+		assertSame(mine, plain.statusOnly());
+		}
+	}
@@ -0,0 +1,171 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderTrackerStateTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderTrackerStateTest: The LEGAL table of state transitions, and the
+* atomic transition(), compareAndSetState() and claimCancel() built on it.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static com.wormtrader.broker.OrderTracker.*;
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class OrderTrackerStateTest
+	{
+	private static final PositionLeg LEG = new PositionLeg("IBM");
+
+	/** The states each state may move to, in the order of the state codes */
+	private static final byte[][] EXPECTED =
+		{
+		/* SIGNAL    */ { SOFT, SENT, OPEN, CANCELED, PART_FILL, FILLED, ERROR },
+		/* SOFT      */ { SENT, OPEN, CANCELED, PART_FILL, FILLED, ERROR },
+		/* SENT      */ { OPEN, CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR },
+		/* OPEN      */ { CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR },
+		/* CAN_REQ   */ { OPEN, CANCELED, PART_FILL, FILLED, ERROR },
+		/* CANCELED  */ {},
+		/* PART_FILL */ { CAN_REQ, CANCELED, PART_FILL, FILLED, ERROR },
+		/* FILLED    */ {},
+		/* ERROR     */ {},
+		};
+
+	/** The legal path from a new soft order to each state */
+	private static final byte[][] PATH =
+		{
+		/* SIGNAL    */ null,
+		/* SOFT      */ {},
+		/* SENT      */ { SENT },
+		/* OPEN      */ { SENT, OPEN },
+		/* CAN_REQ   */ { SENT, OPEN, CAN_REQ },
+		/* CANCELED  */ { CANCELED },
+		/* PART_FILL */ { SENT, OPEN, PART_FILL },
+		/* FILLED    */ { SENT, OPEN, FILLED },
+		/* ERROR     */ { ERROR },
+		};
+
+	private static OrderTracker order(byte aState)
+		{
+		if (aState == SIGNAL)
+			{
+			PositionLeg leg = new PositionLeg("IBM");
+			leg.setAutoTraded(false);
+			return new OrderTracker(leg, ACT_BUY, Broker.LMT_ORDER, 10000, 0, "test");
+			}
+		OrderTracker it = new OrderTracker(LEG, Broker.LMT_ORDER, 100, 10000, 0, 0, "test");
+		for (byte state : PATH[aState])
+			assertTrue(it.transition(state));
+		assertEquals(aState, it.getState());
+		return it;
+		}
+
+	@Test public void tableMatchesTheLifecycle()
+		{
+		for (byte from = SIGNAL; from <= ERROR; from++)
+			for (byte to = SIGNAL; to <= ERROR; to++)
+				{
+				boolean expected = false;
+				for (byte state : EXPECTED[from])
+					expected |= (state == to);
+				assertEquals(STATE_DESC[from] + " -> " + STATE_DESC[to],
+				             expected, isLegal(from, to));
+				}
+		assertFalse(isLegal((byte)-1, OPEN));
+		assertFalse(isLegal(OPEN, (byte)9));
+		}
+
+	@Test public void transitionFollowsTheTable()
+		{
+		for (byte from = SIGNAL; from <= ERROR; from++)
+			for (byte to = SIGNAL; to <= ERROR; to++)
+				{
+				OrderTracker ot = order(from);
+				assertEquals(isLegal(from, to), ot.transition(to));
+				assertEquals(isLegal(from, to)? to : from, ot.getState());
+				}
+		}
+
+	@Test public void lateStatusCannotUndoAFill()
+		{
+		OrderTracker ot = order(OPEN);
+		ot.setFilled(100);
+		assertEquals(FILLED, ot.getState());
+		ot.setState(OPEN);
+		assertEquals(FILLED, ot.getState());
+		}
+
+	@Test public void compareAndSetStateNeedsTheExpectedState()
+		{
+		OrderTracker ot = order(OPEN);
+		assertFalse(ot.compareAndSetState(SENT, CANCELED));
+		assertEquals(OPEN, ot.getState());
+		assertTrue(ot.compareAndSetState(OPEN, CAN_REQ));
+		assertEquals(CAN_REQ, ot.getState());
+		}
+
+	@Test public void listenersSeeEachTransition()
+		{
+		OrderTracker ot = order(SOFT);
+		final StringBuilder seen = new StringBuilder();
+		ot.addStateListener(new OrderStateListener()
+			{
+			@Override public void stateChanged(OrderTracker aOrder, byte aFrom, byte aTo)
+				{
+				seen.append(aFrom).append(aTo).append(' ');
+				}
+			});
+		ot.transition(SENT);
+		ot.transition(OPEN);
+		ot.transition(SOFT); // illegal: not reported
+		ot.setFilled(100);
+		assertEquals("12 23 37 ", seen.toString());
+		}
+
+	@Test public void claimCancel()
+		{
+		assertEquals(CANCELED, order(SIGNAL).claimCancel());
+		assertEquals(CANCELED, order(SOFT).claimCancel());
+		assertEquals(CAN_REQ, order(SENT).claimCancel());
+		assertEquals(CAN_REQ, order(OPEN).claimCancel());
+		assertEquals(CAN_REQ, order(PART_FILL).claimCancel());
+		assertEquals(-1, order(CAN_REQ).claimCancel());
+		assertEquals(-1, order(FILLED).claimCancel());
+		assertEquals(-1, order(CANCELED).claimCancel());
+		}
+
+	/** Threads racing to fill and cancel an order: exactly one wins */
+	@Test public void racingTransitionsHaveOneWinner()
+		throws InterruptedException
+		{
+		for (int round = 0; round < 1000; round++)
+			{
+			final OrderTracker ot = order(OPEN);
+			final AtomicInteger wins = new AtomicInteger();
+			final CountDownLatch go = new CountDownLatch(1);
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++)
+				{
+				final byte to = ((t & 1) == 0)? FILLED : CANCELED;
+				threads[t] = new Thread()
+					{
+					@Override public void run()
+						{
+						try { go.await(); } catch (InterruptedException e) { return; }
+						if (ot.transition(to))
+							wins.incrementAndGet();
+						}
+					};
+				threads[t].start();
+				}
+			go.countDown();
+			for (Thread thread : threads)
+				thread.join();
+			assertEquals(1, wins.get());
+			}
+		}
+	}
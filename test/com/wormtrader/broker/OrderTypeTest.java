@@ -0,0 +1,86 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderTypeTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderTypeTest: The order type codes, including TYPE_OTHER for the types
+* that brokers supply beyond MKT, LMT and STP.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent OrderHistory keeps the type name
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import org.junit.Test;
+
+public class OrderTypeTest
+	{
+	private static final PositionLeg LEG = new PositionLeg("IBM");
+
+	@Test public void codesOfTheKnownTypes()
+		{
+		assertEquals(Broker.TYPE_MKT, OrderTracker.typeCode("MKT"));
+		assertEquals(Broker.TYPE_LMT, OrderTracker.typeCode(new String("LMT")));
+		assertEquals(Broker.TYPE_STP, OrderTracker.typeCode("STP"));
+		}
+
+	@Test public void otherTypesKeepTheirName()
+		{
+		assertEquals(Broker.TYPE_OTHER, OrderTracker.typeCode("TRAIL"));
+		assertEquals(Broker.TYPE_OTHER, OrderTracker.typeCode(null));
+		OrderTracker ot = new OrderTracker(7, LEG, "STP LMT", 100, 10000, 9900);
+		assertEquals(Broker.TYPE_OTHER, ot.typeCode());
+		assertEquals("STP LMT", ot.type());
+		assertFalse(ot.triggered(10000));
+		ot.modify("TRAIL", 200, 10000, 50);
+		assertEquals("TRAIL", ot.type());
+		ot.setType(Broker.LMT_ORDER);
+		assertEquals(Broker.TYPE_LMT, ot.typeCode());
+		assertEquals("LMT", ot.type());
+		ot.setType("TRAIL LIMIT");
+		ot.setType(Broker.TYPE_STP);
+		assertEquals("STP", ot.type());
+		}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setTypeChecksTheCode()
+		{
+		new OrderTracker(LEG, "LMT", 100, 10000, 0, 0, "test").setType(Broker.TYPE_OTHER);
+		}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void poolChecksTheCode()
+		{
+		new OrderPool().acquire(LEG, (byte)9, 100, 10000, 0, 0, "test");
+		}
+
+	@Test public void otherTypesMergeOnlyWithTheSameName()
+		{
+		OrderTracker a = new OrderTracker(LEG, "TRAIL", 100, 10000, 0, 0, "a");
+		OrderTracker b = new OrderTracker(LEG, "STP LMT", 100, 10000, 0, 0, "b");
+		OrderTracker c = new OrderTracker(LEG, "TRAIL", 100, 10000, 0, 0, "c");
+		assertFalse(a.merge(b));
+		assertTrue(a.merge(c));
+		assertEquals(200, a.qty());
+		}
+
+	@Test public void simBrokerRejectsOtherTypes()
+		{
+		SimBroker sim = new SimBroker();
+		OrderTracker ot = new OrderTracker(LEG, "TRAIL", 100, 10000, 0, 0, "test");
+		sim.placeOrder(ot);
+		assertEquals(OrderTracker.ERROR, ot.getState());
+		}
+
+	@Test public void historyKeepsTheName()
+		{
+		OrderHistory history = new OrderHistory();
+		OrderTracker ot = new OrderTracker(3, LEG, "TRAIL", 100, 10000, 50);
+		ot.setState(OrderTracker.CANCELED);
+		int r = history.add(ot);
+		assertEquals("TRAIL", history.type(r));
+		assertEquals("TRAIL", history.get(r).type());
+		}
+	}
@@ -0,0 +1,119 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)OrderViewTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* OrderViewTest: The view's rows against a sorted copy through random
+* adds, changes and removals, and views kept up to date by transitions
+* and modifications that the broker does not report to the list.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import org.junit.Test;
+
+public class OrderViewTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fIBM = new PositionLeg("IBM", "", fSim);
+
+	private static final Predicate<OrderTracker> ALL = new Predicate<OrderTracker>()
+		{
+		@Override public boolean test(OrderTracker aOrder) { return true; }
+		};
+
+	private static final ToLongFunction<OrderTracker> BY_QTY = new ToLongFunction<OrderTracker>()
+		{
+		@Override public long applyAsLong(OrderTracker aOrder) { return aOrder.qty(); }
+		};
+
+	private static void assertRows(List<OrderTracker> aExpected, OrderView<OrderTracker> aView)
+		{
+		assertEquals(aExpected.size(), aView.size());
+		for (int r = 0; r < aExpected.size(); r++)
+			assertSame("row " + r, aExpected.get(r), aView.getRow(r));
+		}
+
+	@Test public void rowsStaySortedThroughRandomChanges()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderView<OrderTracker> view = new OrderView<OrderTracker>(list, ALL, BY_QTY);
+		List<OrderTracker> expected = new ArrayList<OrderTracker>();
+		Random random = new Random(19);
+		int id = 1;
+		for (int i = 0; i < 3000; i++)
+			{
+			int op = random.nextInt(3);
+			if (op == 0 || expected.isEmpty())
+				{
+				OrderTracker it = new OrderTracker(id++, fIBM, "LMT", 1 + random.nextInt(50), 10000, 0);
+				list.add(it);
+				expected.add(it); // after the equal keys: added last
+				}
+			else if (op == 1)
+				{
+				OrderTracker it = expected.remove(random.nextInt(expected.size()));
+				list.remove(it);
+				}
+			else
+				{
+				OrderTracker it = expected.get(random.nextInt(expected.size()));
+				it.setQty(1 + random.nextInt(50)); // the list hears of it itself
+				}
+			// stable sort by qty keeps the order in which they were added
+			List<OrderTracker> sorted = new ArrayList<OrderTracker>(expected);
+			sorted.sort(new Comparator<OrderTracker>()
+				{
+				@Override public int compare(OrderTracker a, OrderTracker b)
+					{
+					return (a.qty() != b.qty())? Integer.compare(a.qty(), b.qty())
+					     : Integer.compare(a.id(), b.id());
+					}
+				});
+			assertRows(sorted, view);
+			}
+		}
+
+	@Test public void transitionsUpdateFilteredViews()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderView<OrderTracker> working = new OrderView<OrderTracker>(list,
+			new Predicate<OrderTracker>()
+				{
+				@Override public boolean test(OrderTracker aOrder) { return aOrder.isAtBroker(); }
+				}, OrderView.BY_TIME);
+		OrderTracker a = new OrderTracker(1, fIBM, "LMT", 100, 10000, 0);
+		list.add(a);
+		assertEquals(1, working.size());
+		assertTrue(a.transition(OrderTracker.CANCELED)); // no updated() call
+		assertEquals(0, working.size());
+		assertEquals(1, list.size());
+		}
+
+	@Test public void modifiedLimitMovesTheRow()
+		{
+		OrderList<OrderTracker> list = new OrderList<OrderTracker>();
+		OrderTracker a = new OrderTracker(1, fIBM, "LMT", 100, 10000, 0);
+		OrderTracker b = new OrderTracker(2, fIBM, "LMT", 100, 9000, 0);
+		list.add(a);
+		list.add(b);
+		assertSame(a, list.getRow(0));
+		a.modify(100, 8000);
+		assertSame(b, list.getRow(0));
+		assertSame(a, list.getRow(1));
+		assertEquals(1, list.indexOf(a));
+		list.remove(a);
+		a.modify(100, 12000); // no longer in the list: not heard
+		assertSame(b, list.getRow(0));
+		assertEquals(1, list.size());
+		}
+	}
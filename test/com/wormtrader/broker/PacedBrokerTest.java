@@ -0,0 +1,109 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)PacedBrokerTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* PacedBrokerTest: Messages beyond the burst wait in the queue, a
+* cancel of an order whose placement is still queued drops both, and a
+* cancel of an order whose place is in flight waits for it.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent a cancel racing its place in flight
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PacedBrokerTest
+	{
+	@Test public void cancelOfAQueuedPlacementCollapses()
+		{
+		SimBroker sim = new SimBroker();
+		PacedBroker paced = new PacedBroker(sim, 0.01, 1); // one now, then one per 100s
+		PositionLeg leg = new PositionLeg("IBM", "", paced);
+		OrderTracker first = new OrderTracker(leg, Broker.LMT_ORDER, 100, 9000, 0, 0, "");
+		OrderTracker second = new OrderTracker(leg, Broker.LMT_ORDER, 100, 8000, 0, 0, "");
+		assertTrue(first.send());
+		assertTrue(second.send());
+		assertEquals(OrderTracker.OPEN, first.getState());
+		assertEquals(OrderTracker.SENT, second.getState());
+		assertEquals(1, paced.getQueueDepth());
+
+		assertTrue(second.isCancelable());
+		assertTrue(second.cancel(false));
+		assertEquals(OrderTracker.CANCELED, second.getState());
+		assertEquals(0, paced.getQueueDepth());
+		assertEquals(2, paced.getCollapsed());
+		assertEquals(1, sim.getOrderList().size()); // never reached the broker
+		}
+
+	@Test public void aCancelledOrderPlacedLateIsNotReopened()
+		{
+		SimBroker sim = new SimBroker();
+		PositionLeg leg = new PositionLeg("IBM", "", sim);
+		OrderTracker order = new OrderTracker(leg, Broker.LMT_ORDER, 100, 9000, 0, 0, "");
+		assertTrue(order.transition(OrderTracker.SENT));
+		assertEquals(OrderTracker.CAN_REQ, order.claimCancel());
+		sim.placeOrder(order); // arrives after its cancel was requested
+		assertEquals(OrderTracker.CANCELED, order.getState());
+		assertEquals(0, sim.tick(leg, 8000));
+		}
+	
+	/** Records the calls that reach the broker, holding placeOrder() until released */
+	static final class SlowBroker
+		extends BrokerFilter
+		{
+		final List<String> fCalls = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch fPlacing = new CountDownLatch(1);
+		final CountDownLatch fRelease = new CountDownLatch(1);
+
+		SlowBroker(Broker aBroker) { super(aBroker); }
+
+		@Override public void placeOrder(OrderTracker aTracker)
+			{
+			fCalls.add("place");
+			fPlacing.countDown();
+			try { fRelease.await(); }
+			catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+			super.placeOrder(aTracker);
+			}
+
+		@Override public void cancelOrder(OrderTracker aTracker)
+			{
+			fCalls.add("cancel");
+			super.cancelOrder(aTracker);
+			}
+		}
+
+	@Test public void cancelWaitsForItsPlaceInFlight()
+		throws InterruptedException
+		{
+		SimBroker sim = new SimBroker();
+		final SlowBroker slow = new SlowBroker(sim);
+		final PacedBroker paced = new PacedBroker(slow, 1000, 10); // tokens to spare
+		PositionLeg leg = new PositionLeg("IBM", "", paced);
+		final OrderTracker order = new OrderTracker(leg, Broker.LMT_ORDER, 100, 9000, 0, 0, "");
+		assertTrue(order.transition(OrderTracker.SENT));
+		Thread placer = new Thread(new Runnable()
+			{
+			@Override public void run() { paced.placeOrder(order); }
+			});
+		placer.start();
+		assertTrue(slow.fPlacing.await(5, TimeUnit.SECONDS));
+		assertEquals(OrderTracker.CAN_REQ, order.claimCancel());
+		paced.cancelOrder(order); // its place is still on the way
+		assertEquals(Collections.singletonList("place"), slow.fCalls);
+		slow.fRelease.countDown();
+		placer.join(5000);
+		assertEquals(2, slow.fCalls.size());
+		assertEquals("cancel", slow.fCalls.get(1));
+		assertEquals(OrderTracker.CANCELED, order.getState());
+		}
+	}
@@ -0,0 +1,47 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)RiskEngineTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* RiskEngineTest: Working orders booked at their price, and positions
+* marked at the price they filled at.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent fills through a stop, as limits now fill at the limit
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import org.junit.Test;
+
+public class RiskEngineTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fIBM = new PositionLeg("IBM", "", fSim);
+	private final RiskEngine  fEngine = new RiskEngine();
+
+	@Test public void positionIsMarkedAtTheFillPrice()
+		{
+		OrderTracker buy = new OrderTracker(fIBM, Broker.STP_ORDER, 100, 10000, 0, 0, "test");
+		assertNull(fEngine.approve(buy));
+		fSim.placeOrder(buy);
+		assertEquals(100L * 10000, fEngine.getGross()); // working, at its stop
+		fSim.tick(fIBM, 10200); // gaps through the stop: fills at 102.00
+		assertEquals(OrderTracker.FILLED, buy.getState());
+		assertEquals(10200, buy.getFillPrice());
+		assertEquals(100, fEngine.getPosition(fIBM));
+		assertEquals(100L * 10200, fEngine.getGross());
+		assertEquals(100L * 10200, fEngine.getNet());
+		}
+
+	@Test public void fillWithoutAPriceIsMarkedAtTheLimit()
+		{
+		OrderTracker sell = new OrderTracker(7, fIBM, "LMT", -100, 10000, 0);
+		assertNull(fEngine.approve(sell));
+		sell.setFilled(-100);
+		assertEquals(-100, fEngine.getPosition(fIBM));
+		assertEquals(100L * 10000, fEngine.getGross());
+		assertEquals(-100L * 10000, fEngine.getNet());
+		}
+	}
@@ -0,0 +1,184 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)SimBrokerTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* SimBrokerTest: Placement, fills and cancels of simulated orders, and
+* the latency kept by the broker for the sessions created for it.
+* limit orders.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+* 20261018 agent marketable limits, queue places on cancel and modify
+* 20261018 agent a gap through a resting limit fills at the limit
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+
+public class SimBrokerTest
+	{
+	/** Records the price of the last fill */
+	private static class Recorder
+		extends SimBroker
+		{
+		int fFills;
+		int fPrice;
+		@Override protected void filled(OrderTracker aTracker, int aQty, int aPrice)
+			{
+			++fFills;
+			fPrice = aPrice;
+			}
+		}
+
+	private final Recorder      fSim = new Recorder();
+	private final BrokerSession fSession = new BrokerSession(fSim);
+	private final PositionLeg   fIBM = new PositionLeg("IBM", "", fSim);
+
+	private OrderTracker placed(String aType, int aQty, int aLmt)
+		{
+		OrderTracker it = new OrderTracker(fIBM, aType, aQty, aLmt, 0, 0, "test");
+		fSim.placeOrder(it);
+		return it;
+		}
+
+	@Test public void marketOrderFillsAtTheLastPrice()
+		{
+		OrderTracker early = placed(Broker.MKT_ORDER, 100, 0); // no price yet
+		assertEquals(OrderTracker.OPEN, early.getState());
+		assertEquals(1, fSim.tick(fIBM, 10000));
+		assertEquals(OrderTracker.FILLED, early.getState());
+		assertEquals(10000, fSim.fPrice);
+
+		OrderTracker late = placed(Broker.MKT_ORDER, -100, 0);
+		assertEquals(OrderTracker.FILLED, late.getState());
+		assertEquals(2, fSim.fFills);
+		}
+
+	@Test public void restingOrdersFillWhenCrossed()
+		{
+		OrderTracker buyLimit = placed(Broker.LMT_ORDER, 100, 9900);
+		OrderTracker sellStop = placed(Broker.STP_ORDER, -100, 9800);
+		assertEquals(0, fSim.tick(fIBM, 10000));
+		assertEquals(1, fSim.tick(fIBM, 9900));
+		assertEquals(OrderTracker.FILLED, buyLimit.getState());
+		assertEquals(OrderTracker.OPEN, sellStop.getState());
+		assertEquals(1, fSim.tick(fIBM, 9750));
+		assertEquals(OrderTracker.FILLED, sellStop.getState());
+		assertEquals(100, buyLimit.getFilled());
+		assertEquals(-100, sellStop.getFilled());
+		}
+
+	@Test public void cancelledOrderDoesNotFill()
+		{
+		OrderTracker it = placed(Broker.LMT_ORDER, 100, 9900);
+		fSim.cancelOrder(it);
+		assertEquals(OrderTracker.CANCELED, it.getState());
+		assertEquals(0, fSim.tick(fIBM, 9800));
+		assertEquals(0, fSim.fFills);
+		}
+
+	/** @return a soft order created in the broker's session */
+	private OrderTracker soft(final String aType, final int aQty, final int aLmt)
+		throws Exception
+		{
+		return fSession.call(new Callable<OrderTracker>()
+			{
+			@Override public OrderTracker call()
+				{
+				return new OrderTracker(fIBM, aType, aQty, aLmt, 0, 0, "test");
+				}
+			});
+		}
+
+	@Test public void sessionRecordsInTheBrokersLatency() throws Exception
+		{
+		assertSame(fSim.getOrderLatency(), fSession.getLatency());
+		long global = OrderLatency.ALL_ORDERS.get(OrderTracker.SENT, OrderTracker.OPEN).count();
+		OrderTracker it = soft(Broker.LMT_ORDER, 100, 10000);
+		fSim.placeOrder(it);
+		assertEquals(OrderTracker.OPEN, it.getState());
+		assertEquals(1, fSim.getOrderLatency().get(OrderTracker.SENT, OrderTracker.OPEN).count());
+		assertEquals(global, OrderLatency.ALL_ORDERS.get(OrderTracker.SENT, OrderTracker.OPEN).count());
+		fSim.reset();
+		assertEquals(0, fSim.getOrderLatency().get(OrderTracker.SENT, OrderTracker.OPEN).count());
+		}
+	
+	/** @return a limit order placed with the simulator */
+	private OrderTracker placed(int aQty, int aLmt) throws Exception
+		{
+		OrderTracker it = soft(Broker.LMT_ORDER, aQty, aLmt);
+		fSim.placeOrder(it);
+		return it;
+		}
+
+	@Test public void marketableLimitFillsWhenPlaced() throws Exception
+		{
+		fSim.tick(fIBM, 9990);
+		OrderTracker buy = placed(100, 10000);
+		assertEquals(OrderTracker.FILLED, buy.getState());
+		assertEquals(9990, buy.getFillPrice());
+		OrderTracker sell = placed(-100, 10000);
+		assertEquals(OrderTracker.OPEN, sell.getState());
+		sell.modify(-100, 9980); // now marketable
+		assertEquals(OrderTracker.FILLED, sell.getState());
+		assertEquals(9990, sell.getFillPrice());
+		}
+
+	@Test public void cancelReleasesQueuePlace() throws Exception
+		{
+		fSim.setQueueModel(true);
+		fSim.tick(fIBM, 10100);
+		OrderTracker first = placed(100, 10000);
+		OrderTracker second = placed(100, 10000);
+		fSim.cancelOrder(first);
+		assertEquals(OrderTracker.CANCELED, first.getState());
+		fSim.tick(fIBM, 10000, 100);
+		assertEquals(OrderTracker.FILLED, second.getState());
+		}
+
+	@Test public void modifyKeepsOrLosesQueuePlace() throws Exception
+		{
+		fSim.setQueueModel(true);
+		fSim.tick(fIBM, 10100);
+		OrderTracker first = placed(100, 10000);
+		OrderTracker second = placed(100, 10000);
+		first.setQty(50); // keeps its place, the second moves up
+		fSim.tick(fIBM, 10000, 50);
+		assertEquals(OrderTracker.FILLED, first.getState());
+		assertEquals(OrderTracker.OPEN, second.getState());
+
+		OrderTracker third = placed(100, 10000);
+		second.modify(100, 9990); // to the back at its new price
+		second.modify(100, 10000); // and back again: behind the third
+		fSim.tick(fIBM, 10000, 100);
+		assertEquals(OrderTracker.FILLED, third.getState());
+		assertEquals(OrderTracker.OPEN, second.getState());
+		fSim.tick(fIBM, 10000, 100);
+		assertEquals(OrderTracker.FILLED, second.getState());
+		}
+	
+	@Test public void gapThroughARestingLimitFillsAtTheLimit() throws Exception
+		{
+		fSim.tick(fIBM, 10100);
+		OrderTracker buy = placed(100, 10000);
+		OrderTracker sell = placed(-100, 10200);
+		fSim.tick(fIBM, 9900); // gaps through the buy
+		assertEquals(OrderTracker.FILLED, buy.getState());
+		assertEquals(10000, buy.getFillPrice());
+		fSim.tick(fIBM, 10300); // and through the sell
+		assertEquals(10200, sell.getFillPrice());
+		}
+
+	@Test public void gapThroughAQueuedLimitFillsAtTheLimit() throws Exception
+		{
+		fSim.setQueueModel(true);
+		fSim.tick(fIBM, 10100);
+		OrderTracker buy = placed(100, 10000);
+		fSim.tick(fIBM, 9900, 100);
+		assertEquals(OrderTracker.FILLED, buy.getState());
+		assertEquals(10000, buy.getFillPrice());
+		}
+	}
@@ -0,0 +1,95 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TickFileTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TickFileTest: Dollar prices parsed to cents, and CSV ticks converted to
+* a tick file that reads back the same.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TickFileTest
+	{
+	private File fCSV;
+	private File fTicks;
+
+	@Before public void createFiles() throws IOException
+		{
+		fCSV = File.createTempFile("ticks", ".csv");
+		fTicks = File.createTempFile("ticks", ".wttk");
+		fCSV.deleteOnExit();
+		fTicks.deleteOnExit();
+		}
+
+	@After public void deleteFiles()
+		{
+		fCSV.delete();
+		fTicks.delete();
+		}
+
+	@Test public void toCents()
+		{
+		assertEquals(1200, TickFile.toCents("12"));
+		assertEquals(1250, TickFile.toCents("12.5"));
+		assertEquals(1234, TickFile.toCents("12.34"));
+		assertEquals(-7, TickFile.toCents("-0.07"));
+		assertEquals(50, TickFile.toCents(".5"));
+		assertEquals(1235, TickFile.toCents("12.345")); // rounded
+		assertEquals(1234, TickFile.toCents("12.3449"));
+		assertEquals(-1235, TickFile.toCents("-12.345"));
+		}
+
+	@Test(expected=NumberFormatException.class) public void toCentsRejectsJunk()
+		{
+		TickFile.toCents("12.x5");
+		}
+
+	@Test public void convertReadsBack() throws IOException
+		{
+		try (PrintWriter out = new PrintWriter(fCSV, "UTF-8"))
+			{
+			out.println("# time,symbol,price,volume");
+			out.println("100,IBM,203.45,300");
+			out.println("");
+			out.println("100,IBM 20121020C205,1.5");
+			out.println("105,IBM,203.5,100");
+			}
+		assertEquals(3, TickFile.convert(fCSV, fTicks));
+		try (TickFile ticks = new TickFile(fTicks))
+			{
+			assertEquals(3, ticks.size());
+			assertEquals(2, ticks.getSymbolCount());
+			assertEquals("IBM", ticks.getSymbol(0));
+			assertEquals("IBM 20121020C205", ticks.getSymbol(1));
+			assertEquals(100, ticks.time(0));
+			assertEquals(0, ticks.symbol(0));
+			assertEquals(20345, ticks.price(0));
+			assertEquals(300, ticks.volume(0));
+			assertEquals(1, ticks.symbol(1));
+			assertEquals(150, ticks.price(1));
+			assertEquals(0, ticks.volume(1));
+			assertEquals(20350, ticks.price(2));
+			assertEquals(2, ticks.find(101));
+			}
+		}
+
+	@Test(expected=IOException.class) public void convertRejectsTimeOrder() throws IOException
+		{
+		try (PrintWriter out = new PrintWriter(fCSV, "UTF-8"))
+			{
+			out.println("105,IBM,203.45");
+			out.println("100,IBM,203.5");
+			}
+		TickFile.convert(fCSV, fTicks);
+		}
+	}
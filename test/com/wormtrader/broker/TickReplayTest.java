@@ -0,0 +1,84 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TickReplayTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TickReplayTest: The replay keeps the legs' soft books and sends the
+* orders they trigger to its own broker.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TickReplayTest
+	{
+	private final SimBroker   fLive = new SimBroker(); // the leg's own broker
+	private final SimBroker   fSim = new SimBroker();  // the replay's
+	private final PositionLeg fIBM = new PositionLeg("IBM", "", fLive);
+	private File     fCSV;
+	private File     fFile;
+	private TickFile fTicks;
+
+	@Before public void createTicks() throws IOException
+		{
+		fCSV = File.createTempFile("ticks", ".csv");
+		fFile = File.createTempFile("ticks", ".wttk");
+		try (PrintWriter out = new PrintWriter(fCSV, "UTF-8"))
+			{
+			out.println("100,IBM,10.10,100");
+			out.println("101,IBM,10.05,100");
+			out.println("102,IBM,9.95,100");
+			}
+		TickFile.convert(fCSV, fFile);
+		fTicks = new TickFile(fFile);
+		}
+
+	@After public void deleteTicks() throws IOException
+		{
+		fTicks.close();
+		fCSV.delete();
+		fFile.delete();
+		}
+
+	@Test public void triggeredOrdersGoToTheReplaysBroker()
+		{
+		OrderTracker held = new OrderTracker(fIBM, Broker.LMT_ORDER, 100, 1000, 0, 0, "test");
+		fIBM.add(held);
+		TickReplay replay = new TickReplay(fTicks, fSim);
+		replay.setLeg(0, fIBM);
+		assertEquals(1, replay.getSoftOrders(0).size()); // from the leg
+		OrderTracker later = new OrderTracker(fIBM, Broker.LMT_ORDER, -100, 1020, 0, 0, "test");
+		assertTrue(replay.add(later));
+		OrderTracker gone = new OrderTracker(fIBM, Broker.LMT_ORDER, 100, 900, 0, 0, "test");
+		assertTrue(replay.add(gone));
+		assertEquals(3, replay.getSoftOrders(0).size());
+
+		assertEquals(1, replay.replay(1)); // 10.10: nothing crossed
+		assertEquals(OrderTracker.SOFT, later.getState());
+		later.modify(-100, 1005);          // repriced in the book
+		assertTrue(gone.cancel(true));     // and dropped from it
+		assertEquals(2, replay.getSoftOrders(0).size());
+
+		assertEquals(1, replay.replay(1)); // 10.05
+		assertEquals(OrderTracker.FILLED, later.getState());
+		assertEquals(1005, later.getFillPrice());
+		assertEquals(OrderTracker.SOFT, held.getState());
+
+		assertEquals(1, replay.replay(1)); // 9.95
+		assertEquals(OrderTracker.FILLED, held.getState());
+		assertEquals(995, held.getFillPrice());
+		assertTrue(replay.isDone());
+		assertEquals(0, replay.getSoftOrders(0).size());
+		assertEquals(2, fSim.getOrderList().size());
+		assertEquals(0, fLive.getOrderList().size());
+		}
+	}
@@ -0,0 +1,105 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TifSchedulerTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TifSchedulerTest: The timer wheel expires each order at its time, not
+* before, across levels and gaps, and retries an order whose cancel is
+* already on its way.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.Random;
+import org.junit.Test;
+
+public class TifSchedulerTest
+	{
+	private final PositionLeg fLeg = new PositionLeg("IBM", "", new SimBroker());
+
+	private OrderTracker gtd(long aExpiry)
+		{
+		OrderTracker it = new OrderTracker(fLeg, Broker.LMT_ORDER, 100, 9000, 0, 0, "");
+		it.setTIF(TifScheduler.GTD);
+		it.setExpiry(aExpiry);
+		return it;
+		}
+
+	@Test public void expiresAtItsTimeNotBefore()
+		{
+		TifScheduler wheel = new TifScheduler(1000);
+		OrderTracker near = gtd(1010);
+		OrderTracker far = gtd(1000 + 64L * 64 * 64 * 64 + 5); // in the overflow list
+		assertTrue(wheel.schedule(near));
+		assertTrue(wheel.schedule(far));
+		assertEquals(0, wheel.advance(1009));
+		assertEquals(OrderTracker.SOFT, near.getState());
+		assertEquals(1, wheel.advance(1010));
+		assertEquals(OrderTracker.CANCELED, near.getState());
+		assertEquals(0, wheel.advance(far.getExpiry() - 1));
+		assertEquals(1, wheel.advance(far.getExpiry()));
+		assertEquals(OrderTracker.CANCELED, far.getState());
+		assertEquals(2, wheel.getExpired());
+		assertEquals(0, wheel.getPending());
+		}
+
+	@Test public void aDoneOrderLeavesTheWheel()
+		{
+		TifScheduler wheel = new TifScheduler(0);
+		OrderTracker order = gtd(100);
+		wheel.schedule(order);
+		assertTrue(order.transition(OrderTracker.FILLED));
+		assertEquals(0, wheel.getPending());
+		assertEquals(0, wheel.advance(200));
+		}
+
+	@Test public void aCancelAlreadyRequestedIsRetriedUntilDone()
+		{
+		TifScheduler wheel = new TifScheduler(0);
+		OrderTracker order = gtd(10);
+		wheel.schedule(order);
+		assertTrue(order.transition(OrderTracker.SENT));
+		assertTrue(order.transition(OrderTracker.CAN_REQ));
+		assertEquals(0, wheel.advance(10));
+		assertEquals(0, wheel.getExpired());
+		assertEquals(1, wheel.getPending()); // back for the next step
+		assertEquals(0, wheel.advance(11));
+		assertEquals(1, wheel.getPending());
+		assertTrue(order.transition(OrderTracker.CANCELED));
+		assertEquals(0, wheel.getPending());
+		}
+
+	@Test public void randomExpiriesAcrossLevels()
+		{
+		Random random = new Random(42);
+		long start = 1349872200L;
+		TifScheduler wheel = new TifScheduler(start);
+		OrderTracker[] orders = new OrderTracker[2000];
+		for (int i = 0; i < orders.length; i++)
+			{
+			long ahead = (i % 3 == 0)? random.nextInt(100)
+			           : (i % 3 == 1)? random.nextInt(100000) : random.nextInt(30000000);
+			orders[i] = gtd(start + 1 + ahead);
+			wheel.schedule(orders[i]);
+			}
+		long expired = 0;
+		for (long now = start; wheel.getPending() > 0; )
+			{
+			now += 1 + random.nextInt(50000);
+			expired += wheel.advance(now);
+			long due = 0;
+			for (OrderTracker ot : orders)
+				{
+				boolean done = ot.getState() == OrderTracker.CANCELED;
+				assertEquals(ot.getExpiry() <= now, done);
+				if (done)
+					++due;
+				}
+			assertEquals(due, expired);
+			}
+		assertEquals(orders.length, wheel.getExpired());
+		}
+	}
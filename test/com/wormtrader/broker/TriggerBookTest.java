@@ -0,0 +1,233 @@
+package com.wormtrader.broker;
+/********************************************************************
+* @(#)TriggerBookTest.java 1.00 20261018
+* Copyright  2026 by the WormTrader authors. All rights reserved.
+*
+* TriggerBookTest: Walking the book on a tick, the changes made during a
+* walk, and the parking of SIGNAL and TYPE_OTHER orders.
+*
+* @author agent
+* @version 1.00
+* 20261018 agent created
+*******************************************************/
+import static org.junit.Assert.*;
+import com.wormtrader.positions.PositionLeg;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TriggerBookTest
+	{
+	private final SimBroker   fSim = new SimBroker();
+	private final PositionLeg fLeg = new PositionLeg("IBM", "", fSim);
+
+	/** A book that records the orders it visits and sends nothing */
+	private static class Recorder
+		extends TriggerBook<OrderTracker>
+		{
+		final List<OrderTracker> fVisited = new ArrayList<OrderTracker>();
+		@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+			{
+			fVisited.add(aOrder);
+			return true;
+			}
+		}
+
+	private OrderTracker order(String aType, int aQty, int aLmt)
+		{
+		return order(aType, aQty, aLmt, 0);
+		}
+
+	/** @param aAux distinguishes orders that would otherwise merge */
+	private OrderTracker order(String aType, int aQty, int aLmt, int aAux)
+		{
+		return new OrderTracker(fLeg, aType, aQty, aLmt, aAux, 0, "test");
+		}
+
+	/** A signal for aQty shares: the leg is not auto traded, so it awaits enabling */
+	private OrderTracker signal(String aType, int aQty, int aLmt)
+		{
+		PositionLeg leg = new PositionLeg("IBM", "", fSim);
+		leg.setAutoTraded(false);
+		byte act = (aQty > 0)? OrderTracker.ACT_BUY : OrderTracker.ACT_SELL;
+		OrderTracker it = new OrderTracker(leg, act, aType, aLmt, 0, "test");
+		assertEquals(aQty, it.qty());
+		return it;
+		}
+
+	@Test public void tickVisitsOnlyTheOrdersItCrosses()
+		{
+		Recorder book = new Recorder();
+		OrderTracker buyStop = order("STP", 100, 10100);
+		OrderTracker sellLimit = order("LMT", -100, 10200);
+		OrderTracker buyLimit = order("LMT", 100, 9900);
+		OrderTracker sellStop = order("STP", -100, 9800);
+		OrderTracker market = order("MKT", 100, 0);
+		for (OrderTracker ot : new OrderTracker[] { buyStop, sellLimit, buyLimit, sellStop, market })
+			book.add(ot);
+		assertEquals(5, book.size());
+
+		assertEquals(1, book.softTriggered(10000)); // only the market order
+		assertSame(market, book.getTriggered(0));
+		assertEquals(1, book.softTriggered(10150));
+		assertEquals(buyStop, book.fVisited.get(1));
+		assertEquals(1, book.softTriggered(10200));
+		assertEquals(2, book.size());
+		assertEquals(0, book.softTriggered(10000));
+		assertEquals(2, book.softTriggered(9700));
+		assertTrue(book.isEmpty());
+		}
+
+	@Test public void ordersAtOnePriceTriggerInArrivalOrder()
+		{
+		Recorder book = new Recorder();
+		OrderTracker first = order("STP", 100, 10100, 1);
+		OrderTracker second = order("STP", 200, 10100, 2);
+		OrderTracker third = order("STP", 300, 10100, 3);
+		book.add(first);
+		book.add(second);
+		book.add(third);
+		assertEquals(3, book.softTriggered(10100));
+		assertEquals(first, book.fVisited.get(0));
+		assertEquals(second, book.fVisited.get(1));
+		assertEquals(third, book.fVisited.get(2));
+		}
+
+	@Test public void addMergesOrdersOnTheSameTerms()
+		{
+		Recorder book = new Recorder();
+		OrderTracker buy = order("STP", 100, 10100);
+		book.add(buy);
+		assertSame(buy, book.add(order("STP", 300, 10100)));
+		assertEquals(400, buy.qty());
+		assertEquals(1, book.size());
+		assertNull(book.add(order("STP", -400, 10100))); // nets to nothing
+		assertTrue(book.isEmpty());
+		}
+
+	@Test public void heldOrdersStayAtTheTail()
+		{
+		TriggerBook<OrderTracker> book = new TriggerBook<OrderTracker>()
+			{
+			@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+				{
+				return aOrder.qty() != 200; // hold the 200
+				}
+			};
+		book.add(order("STP", 100, 10100));
+		book.add(order("STP", 200, 10110));
+		book.add(order("STP", 300, 10120));
+		assertEquals(2, book.softTriggered(10200));
+		assertEquals(1, book.size());
+		assertEquals(0, book.softTriggered(10200));
+		assertEquals(1, book.size());
+		}
+
+	/** An order repriced while the book walks stays in the book */
+	@Test public void repriceDuringAWalkKeepsTheOrder()
+		{
+		final OrderTracker moved = order("STP", 100, 10150);
+		TriggerBook<OrderTracker> book = new TriggerBook<OrderTracker>()
+			{
+			@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+				{
+				if (aOrder != moved)
+					{
+					moved.modify(100, 10300); // trail the stop up
+					reprice(moved);
+					}
+				return true;
+				}
+			};
+		book.add(order("STP", 200, 10100));
+		book.add(moved);
+		assertEquals(1, book.softTriggered(10120));
+		assertEquals(1, book.size());
+		assertEquals(0, book.softTriggered(10200));
+		assertEquals(1, book.softTriggered(10300));
+		assertSame(moved, book.getTriggered(0));
+		}
+
+	@Test public void addAndRemoveDuringAWalkApplyAfter()
+		{
+		final OrderTracker added = order("STP", 100, 10100);
+		final OrderTracker removed = order("STP", 100, 10500);
+		final List<OrderTracker> visited = new ArrayList<OrderTracker>();
+		TriggerBook<OrderTracker> book = new TriggerBook<OrderTracker>()
+			{
+			@Override protected boolean onTrigger(OrderTracker aOrder, int aPrice)
+				{
+				visited.add(aOrder);
+				add(added);
+				remove(removed);
+				return true;
+				}
+			};
+		book.add(order("STP", 200, 10000));
+		book.add(removed);
+		assertEquals(1, book.softTriggered(10200));
+		assertEquals(1, visited.size()); // not the order added meanwhile
+		assertEquals(1, book.size());
+		assertEquals(1, book.softTriggered(10200));
+		assertSame(added, book.getTriggered(0));
+		}
+	
+	@Test public void signalOrdersAreParkedUntilEnabled()
+		{
+		Recorder book = new Recorder();
+		OrderTracker signal = signal("STP", 100, 10100);
+		book.add(signal);
+		assertEquals(1, book.size());
+		assertEquals(0, book.trigger(10200));
+		assertTrue(book.fVisited.isEmpty());
+
+		signal.enable();
+		assertEquals(1, book.trigger(10200));
+		assertSame(signal, book.getTriggered(0));
+		assertTrue(book.isEmpty());
+		}
+
+	@Test public void enabledSignalWaitsForItsPrice()
+		{
+		Recorder book = new Recorder();
+		OrderTracker signal = signal("LMT", 100, 9900);
+		book.add(signal);
+		signal.enable();
+		assertEquals(0, book.trigger(10000));
+		assertEquals(1, book.size());
+		assertEquals(1, book.trigger(9900));
+		}
+
+	@Test public void cancelledSignalIsDropped()
+		{
+		Recorder book = new Recorder();
+		OrderTracker signal = signal("STP", 100, 10100);
+		book.add(signal);
+		assertTrue(signal.cancel(false));
+		assertEquals(1, book.trigger(10000));
+		assertTrue(book.isEmpty());
+		assertTrue(book.fVisited.isEmpty());
+		}
+
+	@Test public void otherTypesAreParked()
+		{
+		Recorder book = new Recorder();
+		OrderTracker trail = order("TRAIL", 100, 10100);
+		book.add(trail);
+		assertEquals(0, book.trigger(10200));
+		assertEquals(1, book.size());
+		trail.setType(Broker.STP_ORDER);
+		book.reprice(trail);
+		assertEquals(1, book.trigger(10200));
+		}
+
+	@Test public void softOrdersAreSentAsMarketOrders()
+		{
+		TriggerBook<OrderTracker> book = new TriggerBook<OrderTracker>();
+		OrderTracker stop = order("STP", 100, 10100);
+		book.add(stop);
+		assertEquals(1, book.softTriggered(10100));
+		assertEquals(Broker.TYPE_MKT, stop.typeCode());
+		assertTrue(stop.isSent());
+		}
+	}